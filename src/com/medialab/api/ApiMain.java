@@ -0,0 +1,94 @@
+package com.medialab.api;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.medialab.services.DeadlineScheduler;
+import com.medialab.services.TaskManager;
+import com.medialab.services.TaskQueries;
+import com.medialab.services.TaskStore;
+
+/**
+ * Headless entry point: serves the TaskManager over HTTP (see {@link ApiServer}) instead of
+ * showing the JavaFX UI. The data is loaded and persisted by the configured TaskStore exactly like
+ * in the app (data.json, journal and autosave, or the H2 database with {@code -Dmedialab.store=h2}),
+ * so both can be used on the same data, one at a time.
+ * <p>
+ * Usage: {@code ApiMain [port]} (default 8080); the server only listens on the loopback interface.
+ */
+public class ApiMain {
+    private static final int DEFAULT_PORT = 8080;
+    // How often unsaved changes are written to data.json in the background
+    private static final Duration AUTOSAVE_INTERVAL = Duration.ofSeconds(10);
+    // How long stopping the server may wait for the last background save
+    private static final Duration CLOSE_SAVE_TIMEOUT = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        TaskStore taskStore = TaskStore.configured();
+        TaskManager taskManager = new TaskManager();
+
+        // The single thread that mutates the TaskManager, like the JavaFX thread in the app
+        ExecutorService mutations = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "mutations"));
+
+        try {
+            mutations.submit(() -> {
+                // Ensure the default priority exists (as the app does on its first ever start)
+                taskManager.addPriority("Default");
+                taskStore.loadData(taskManager);
+                taskStore.open(taskManager, AUTOSAVE_INTERVAL, mutations);
+
+                // Update Tasks whose deadlines have passed -> to Delayed
+                TaskQueries queries = taskStore.queries(taskManager);
+                int delayed = queries.markOverdueTasks(LocalDate.now()).join().length;
+                System.out.printf("Loaded %d tasks (%d newly delayed)%n", queries.countTasks(null, null, null), delayed);
+            }).get();
+        } catch (ExecutionException e) {
+            // Partly loaded data is neither served nor saved
+            e.getCause().printStackTrace();
+            mutations.shutdown();
+            System.exit(1);
+        }
+
+        // Lists, searches and counters are answered by the store (the H2 database has more Tasks than the TaskManager)
+        TaskQueries queries = taskStore.queries(taskManager);
+
+        // Repeat the Delayed check at every midnight
+        DeadlineScheduler deadlineScheduler = new DeadlineScheduler(queries, mutations,
+                delayedIds -> System.out.printf("%d task(s) became delayed%n", delayedIds.length),
+                Clock.systemDefaultZone());
+        deadlineScheduler.start();
+
+        ApiServer server = new ApiServer(taskManager, queries, mutations, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        // Changes that the store can no longer save are refused instead of being lost
+        taskStore.setFailureListener(e -> {
+            System.err.println("The store failed, changes are no longer accepted: " + e);
+            server.refuseChanges("the store failed (" + e.getMessage() + ")");
+        });
+        server.start();
+        System.out.println("Serving on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+
+        // Flush the remaining changes when the process is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            deadlineScheduler.stop();
+            try {
+                mutations.submit(() -> {
+                    // Unsaved changes that miss the timeout are still safe in the journal
+                    taskStore.close(CLOSE_SAVE_TIMEOUT);
+                }).get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+            mutations.shutdown();
+        }, "shutdown"));
+    }
+}
@@ -0,0 +1,714 @@
+package com.medialab.api;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+import com.medialab.services.TaskManager;
+import com.medialab.services.TaskQueries;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * JSON over HTTP access to a TaskManager, for running it as a local service without the UI.
+ * <p>
+ * Every request is handled on its own virtual thread. Changes are run through the
+ * {@code mutationExecutor}, the single thread that mutates the TaskManager (like the JavaFX thread
+ * in the app), together with the checks they depend on. The Tasks are live objects whose fields
+ * only that thread may read, so responses that show Tasks (or Categories, Priorities, Reminders)
+ * are written to JSON on it as well. Lists, searches and counters go through the store's
+ * {@link TaskQueries} on the request's own thread: they run under the TaskManager's lock, or on the
+ * database, and only the requested page is copied.
+ * <p>
+ * Tasks are addressed by their persistent id (saved in data.json), Categories and Priorities by title,
+ * and Reminders by their Task and their own id (also saved, and unique across all Tasks):
+ * <pre>
+ * GET    /tasks?q=&amp;category=&amp;priority=&amp;status=&amp;offset=&amp;limit=   list / search
+ * POST   /tasks                                  create
+ * GET    /tasks/{id}, PUT /tasks/{id}, DELETE /tasks/{id}
+ * GET    /tasks/{id}/reminders, POST /tasks/{id}/reminders
+ * PUT    /tasks/{id}/reminders/{reminderId}, DELETE /tasks/{id}/reminders/{reminderId}
+ * GET    /categories, POST /categories, PUT /categories/{title}, DELETE /categories/{title}
+ * GET    /priorities, POST /priorities, PUT /priorities/{title}, DELETE /priorities/{title}
+ * GET    /reminders                              all Reminders, by date
+ * GET    /summary                                the counters shown in the app
+ * </pre>
+ * PUT only changes the fields present in the body. Task fields use the data.json format
+ * (status labels, category and priority titles, ISO dates).
+ * <p>
+ * Once the store can no longer save the changes ({@link #refuseChanges}), every change is answered
+ * with 503 Service Unavailable, while reads keep working.
+ */
+public class ApiServer {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 10_000;
+
+    static {
+        // Send responses right away: otherwise the body waits for the ACK of the headers (Nagle),
+        // which adds ~40 ms to every request on a keep-alive connection. Read once, by the first server.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Ends a request with an HTTP error status.
+     */
+    static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    private final TaskManager taskManager;
+    private final TaskQueries queries;
+    private final Executor mutationExecutor;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Why changes are refused, or null while they are accepted
+    private volatile String refusalReason;
+
+    /**
+     * @param queries answers the lists and counters, see {@link com.medialab.services.TaskStore#queries}
+     */
+    public ApiServer(TaskManager taskManager, TaskQueries queries, Executor mutationExecutor,
+                     InetSocketAddress address) throws IOException {
+        this.taskManager = taskManager;
+        this.queries = queries;
+        this.mutationExecutor = mutationExecutor;
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/tasks", exchange -> handle(exchange, this::tasks));
+        server.createContext("/categories", exchange -> handle(exchange, this::categories));
+        server.createContext("/priorities", exchange -> handle(exchange, this::priorities));
+        server.createContext("/reminders", exchange -> handle(exchange, this::reminders));
+        server.createContext("/summary", exchange -> handle(exchange, this::summary));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Answers every later change with 503 (e.g. because the store failed, and it would not be saved).
+     */
+    public void refuseChanges(String reason) {
+        refusalReason = reason;
+    }
+
+    /**
+     * Stops accepting requests and waits at most {@code delaySeconds} for the running ones.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        requestExecutor.shutdown();
+    }
+
+    /*
+     * Request Handling
+     */
+
+    /**
+     * One request: its method, the path segments after the context, the query and the body.
+     */
+    private record Request(String method, List<String> path, Map<String, String> query, HttpExchange exchange) {
+
+        JsonObject body() {
+            try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                JsonElement body = JsonParser.parseReader(reader);
+                if (!body.isJsonObject()) throw new ApiException(400, "Expected a JSON object");
+                return body.getAsJsonObject();
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                throw new ApiException(400, "Invalid JSON: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A handled request: the status and the JSON to send (already written, on the thread that made it).
+     */
+    private record Response(int status, String json) {}
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(Request request) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        Response response;
+        try {
+            response = handler.handle(parse(exchange));
+        } catch (ApiException e) {
+            response = error(e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            response = error(500, String.valueOf(e.getMessage()));
+        }
+
+        byte[] bytes = response.json().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Request parse(HttpExchange exchange) {
+        URI uri = exchange.getRequestURI();
+        String context = exchange.getHttpContext().getPath();
+        List<String> path = new ArrayList<>();
+        for (String segment : uri.getRawPath().substring(context.length()).split("/")) {
+            if (!segment.isEmpty()) path.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+        }
+
+        Map<String, String> query = new HashMap<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals < 0) continue;
+                query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return new Request(exchange.getRequestMethod(), path, query, exchange);
+    }
+
+    /**
+     * Runs a change (with the checks it depends on) on the mutation thread, and waits for it.
+     */
+    private Response mutate(Supplier<Response> change) {
+        String reason = refusalReason;
+        if (reason != null) throw new ApiException(503, "Changes are not accepted: " + reason);
+        return onMutationThread(change);
+    }
+
+    /**
+     * Runs a query that reads Tasks on the mutation thread, where their fields may be read, and waits for it.
+     */
+    private Response read(Supplier<Response> query) {
+        return onMutationThread(query);
+    }
+
+    private Response onMutationThread(Supplier<Response> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, mutationExecutor).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static Response ok(Body body) {
+        return respond(200, body);
+    }
+
+    private static Response created(Body body) {
+        return respond(201, body);
+    }
+
+    private static Response error(int status, String message) {
+        return respond(status, writer -> writer.beginObject().name("error").value(message).endObject());
+    }
+
+    /**
+     * Writes the body right away, on the calling thread.
+     */
+    private static Response respond(int status, Body body) {
+        StringWriter json = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(json)) {
+            body.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Response(status, json.toString());
+    }
+
+    private static ApiException notFound(String what) {
+        return new ApiException(404, what + " not found");
+    }
+
+    private static ApiException methodNotAllowed(Request request) {
+        return new ApiException(405, "Method " + request.method() + " not allowed here");
+    }
+
+    /*
+     * Tasks
+     */
+
+    private Response tasks(Request request) {
+        List<String> path = request.path();
+        if (path.isEmpty()) {
+            return switch (request.method()) {
+                case "GET" -> listTasks(request);
+                case "POST" -> createTask(request.body());
+                default -> throw methodNotAllowed(request);
+            };
+        }
+
+        long id = parseTaskId(path.get(0));
+        if (path.size() == 1) {
+            return switch (request.method()) {
+                case "GET" -> {
+                    Task task = findTaskCopy(id);
+                    yield ok(writer -> writeTask(writer, task));
+                }
+                case "PUT", "PATCH" -> updateTask(id, request.body());
+                case "DELETE" -> mutate(() -> {
+                    taskManager.deleteTask(findTask(id));
+                    return ok(writer -> writer.beginObject().name("deleted").value(id).endObject());
+                });
+                default -> throw methodNotAllowed(request);
+            };
+        }
+
+        if (!path.get(1).equals("reminders") || path.size() > 3) throw notFound("Resource");
+        if (path.size() == 2) {
+            return switch (request.method()) {
+                case "GET" -> {
+                    List<Reminder> reminders = findTaskCopy(id).getReminders();
+                    yield ok(writer -> {
+                        writer.beginArray();
+                        for (Reminder reminder : reminders) writeReminder(writer, reminder, id);
+                        writer.endArray();
+                    });
+                }
+                case "POST" -> addReminder(id, request.body());
+                default -> throw methodNotAllowed(request);
+            };
+        }
+
+        long reminderId = parseReminderId(path.get(2));
+        return switch (request.method()) {
+            case "PUT", "PATCH" -> updateReminder(id, reminderId, request.body());
+            case "DELETE" -> mutate(() -> {
+                Task task = findTask(id);
+                taskManager.deleteReminder(task, findReminder(task, reminderId));
+                return ok(writer -> writer.beginObject().name("deleted").value(reminderId).endObject());
+            });
+            default -> throw methodNotAllowed(request);
+        };
+    }
+
+    private Response listTasks(Request request) {
+        String text = request.query().getOrDefault("q", "").trim();
+        Category category = null;
+        if (request.query().containsKey("category")) {
+            category = findCategory(request.query().get("category"));
+        }
+        PriorityLevel priority = null;
+        if (request.query().containsKey("priority")) {
+            priority = findPriority(request.query().get("priority"));
+        }
+        TaskStatus status = null;
+        if (request.query().containsKey("status")) {
+            status = parseStatus(request.query().get("status"));
+        }
+        int offset = Math.max(0, parseInt(request.query().get("offset"), 0));
+        int limit = Math.min(MAX_LIMIT, Math.max(0, parseInt(request.query().get("limit"), DEFAULT_LIMIT)));
+
+        // Only the page is copied, so it is written right here
+        TaskQueries.Page page = queries.findTasks(text, category, priority, status, offset, limit);
+        return ok(writer -> {
+            writer.beginObject();
+            writer.name("total").value(page.total());
+            writer.name("offset").value(offset);
+            writer.name("tasks").beginArray();
+            for (Task task : page.tasks()) {
+                writeTask(writer, task);
+            }
+            writer.endArray();
+            writer.endObject();
+        });
+    }
+
+    private Response createTask(JsonObject body) {
+        return mutate(() -> {
+            String title = string(body, "title");
+            if (title == null || title.isEmpty()) throw new ApiException(400, "Title cannot be empty");
+
+            Task task = new Task(title, string(body, "description"),
+                    body.has("category") ? findCategoryOrNull(string(body, "category")) : null,
+                    body.has("priority") ? findPriorityOrNull(string(body, "priority"))
+                            : taskManager.findPriorityByTitle("Default"),
+                    date(body, "deadline"),
+                    body.has("status") ? status(body) : TaskStatus.OPEN);
+            taskManager.addTask(task);
+            return created(writer -> writeTask(writer, task));
+        });
+    }
+
+    private Response updateTask(long id, JsonObject body) {
+        return mutate(() -> {
+            Task task = findTask(id);
+            String title = body.has("title") ? string(body, "title") : task.getTitle();
+            if (title == null || title.isEmpty()) throw new ApiException(400, "Title cannot be empty");
+            String description = body.has("description") ? string(body, "description") : task.getDescription();
+            Category category = body.has("category") ? findCategoryOrNull(string(body, "category")) : task.getCategory();
+            PriorityLevel priority = body.has("priority") ? findPriorityOrNull(string(body, "priority")) : task.getPriority();
+            LocalDate deadline = body.has("deadline") ? date(body, "deadline") : task.getDeadline();
+            TaskStatus status = body.has("status") ? status(body) : task.getStatus();
+
+            // Like in the app, completing a Task deletes its Reminders (all of them in one change)
+            if (status == TaskStatus.COMPLETED) {
+                taskManager.updateStatus(List.of(task), status);
+            }
+            taskManager.updateTask(task, title, description, category, priority, deadline, status);
+            return ok(writer -> writeTask(writer, task));
+        });
+    }
+
+    private Response addReminder(long id, JsonObject body) {
+        return mutate(() -> {
+            Task task = findTask(id);
+            if (task.getStatus() == TaskStatus.COMPLETED) {
+                throw new ApiException(409, "Cannot add reminders to completed tasks");
+            }
+            Reminder reminder = new Reminder(reminderDate(task, date(body, "date")), reminderMessage(body));
+            taskManager.addReminder(task, reminder);
+            return created(writer -> writeReminder(writer, reminder, id));
+        });
+    }
+
+    private Response updateReminder(long id, long reminderId, JsonObject body) {
+        return mutate(() -> {
+            Task task = findTask(id);
+            Reminder reminder = findReminder(task, reminderId);
+            LocalDate date = body.has("date") ? reminderDate(task, date(body, "date")) : reminder.getDate();
+            String message = body.has("message") ? reminderMessage(body) : reminder.getMessage();
+            taskManager.updateReminder(task, reminder, date, message);
+            return ok(writer -> writeReminder(writer, reminder, id));
+        });
+    }
+
+    private static LocalDate reminderDate(Task task, LocalDate date) {
+        if (date == null) throw new ApiException(400, "Reminder date is required");
+        if (task.getDeadline() != null && date.isAfter(task.getDeadline())) {
+            throw new ApiException(400, "Reminder date " + date + " is after the task deadline " + task.getDeadline());
+        }
+        return date;
+    }
+
+    private static String reminderMessage(JsonObject body) {
+        String message = string(body, "message");
+        if (message == null || message.isEmpty()) throw new ApiException(400, "Reminder message cannot be empty");
+        return message;
+    }
+
+    /**
+     * Returns the live Task (paged in by a database store), on the mutation thread.
+     */
+    /**
+     * Returns the live Task, to change it (mutation thread only).
+     */
+    private Task findTask(long id) {
+        Task task = queries.getTaskById(id);
+        if (task == null) throw notFound("Task " + id);
+        return task;
+    }
+
+    /**
+     * Returns a detached copy of the Task, to answer a read; unlike {@link #findTask}, it may be
+     * called from any thread, and never pages the Task into the TaskManager.
+     */
+    private Task findTaskCopy(long id) {
+        List<Task> tasks = queries.findTasksByIds(id);
+        if (tasks.isEmpty()) throw notFound("Task " + id);
+        return tasks.get(0);
+    }
+
+    private static Reminder findReminder(Task task, long reminderId) {
+        for (Reminder reminder : task.getReminders()) {
+            if (reminder.getId() == reminderId) return reminder;
+        }
+        throw notFound("Reminder " + reminderId);
+    }
+
+    /*
+     * Categories and Priorities
+     */
+
+    private Response categories(Request request) {
+        List<String> path = request.path();
+        if (path.isEmpty()) {
+            return switch (request.method()) {
+                case "GET" -> read(() -> ok(writer -> writeTitles(writer, taskManager.getCategories().stream().map(Category::getTitle).toList())));
+                case "POST" -> {
+                    String title = requiredTitle(request.body());
+                    yield mutate(() -> {
+                        if (taskManager.findCategoryByTitle(title) != null) throw new ApiException(409, "Category already exists");
+                        taskManager.addCategory(title);
+                        return created(writer -> writeTitle(writer, title));
+                    });
+                }
+                default -> throw methodNotAllowed(request);
+            };
+        }
+        if (path.size() > 1) throw notFound("Resource");
+
+        String title = path.get(0);
+        return switch (request.method()) {
+            case "GET" -> read(() -> ok(writer -> writeTitle(writer, findCategory(title).getTitle())));
+            case "PUT", "PATCH" -> {
+                String newTitle = requiredTitle(request.body());
+                yield mutate(() -> {
+                    Category category = findCategory(title);
+                    if (!taskManager.renameCategory(category, newTitle)) {
+                        throw new ApiException(409, "Category already exists");
+                    }
+                    return ok(writer -> writeTitle(writer, newTitle));
+                });
+            }
+            case "DELETE" -> mutate(() -> {
+                // Deletes the Tasks of the category too
+                Category category = findCategory(title);
+                int deletedTasks = queries.countTasks(category, null, null);
+                taskManager.deleteCategory(category);
+                return ok(writer -> writer.beginObject().name("deleted").value(title)
+                        .name("deletedTasks").value(deletedTasks).endObject());
+            });
+            default -> throw methodNotAllowed(request);
+        };
+    }
+
+    private Response priorities(Request request) {
+        List<String> path = request.path();
+        if (path.isEmpty()) {
+            return switch (request.method()) {
+                case "GET" -> read(() -> ok(writer -> writeTitles(writer, taskManager.getPriorities().stream().map(PriorityLevel::getTitle).toList())));
+                case "POST" -> {
+                    String title = requiredTitle(request.body());
+                    yield mutate(() -> {
+                        if (taskManager.findPriorityByTitle(title) != null) throw new ApiException(409, "Priority already exists");
+                        taskManager.addPriority(title);
+                        return created(writer -> writeTitle(writer, title));
+                    });
+                }
+                default -> throw methodNotAllowed(request);
+            };
+        }
+        if (path.size() > 1) throw notFound("Resource");
+
+        String title = path.get(0);
+        return switch (request.method()) {
+            case "GET" -> read(() -> ok(writer -> writeTitle(writer, findPriority(title).getTitle())));
+            case "PUT", "PATCH" -> {
+                String newTitle = requiredTitle(request.body());
+                yield mutate(() -> {
+                    PriorityLevel priority = findPriority(title);
+                    if (title.equals("Default")) throw new ApiException(409, "Cannot rename the default priority");
+                    if (!taskManager.renamePriority(priority, newTitle)) {
+                        throw new ApiException(409, "Priority already exists");
+                    }
+                    return ok(writer -> writeTitle(writer, newTitle));
+                });
+            }
+            case "DELETE" -> mutate(() -> {
+                PriorityLevel priority = findPriority(title);
+                if (title.equals("Default")) throw new ApiException(409, "Cannot delete the default priority");
+                // Its Tasks get the default priority
+                taskManager.deletePriority(priority);
+                return ok(writer -> writer.beginObject().name("deleted").value(title).endObject());
+            });
+            default -> throw methodNotAllowed(request);
+        };
+    }
+
+    private Category findCategory(String title) {
+        Category category = taskManager.findCategoryByTitle(title);
+        if (category == null) throw notFound("Category " + title);
+        return category;
+    }
+
+    private Category findCategoryOrNull(String title) {
+        return title != null ? findCategory(title) : null;
+    }
+
+    private PriorityLevel findPriority(String title) {
+        PriorityLevel priority = taskManager.findPriorityByTitle(title);
+        if (priority == null) throw notFound("Priority " + title);
+        return priority;
+    }
+
+    private PriorityLevel findPriorityOrNull(String title) {
+        return title != null ? findPriority(title) : null;
+    }
+
+    private static String requiredTitle(JsonObject body) {
+        String title = string(body, "title");
+        if (title == null || title.isEmpty()) throw new ApiException(400, "Title cannot be empty");
+        return title;
+    }
+
+    /*
+     * Reminders and Summary
+     */
+
+    private Response reminders(Request request) {
+        if (!request.method().equals("GET")) throw methodNotAllowed(request);
+        if (!request.path().isEmpty()) throw notFound("Resource");
+
+        return read(() -> ok(writer -> {
+            writer.beginArray();
+            for (Reminder reminder : taskManager.getReminders()) {
+                writeReminder(writer, reminder, reminder.getTask().getId());
+            }
+            writer.endArray();
+        }));
+    }
+
+    private Response summary(Request request) {
+        if (!request.method().equals("GET")) throw methodNotAllowed(request);
+
+        // The same counters as the summary of the app
+        int total = queries.countTasks(null, null, null);
+        int completed = queries.countTasks(null, null, TaskStatus.COMPLETED);
+        int delayed = queries.countTasks(null, null, TaskStatus.DELAYED);
+        int dueSoon = queries.getDueSoonCount(LocalDate.now());
+        return ok(writer -> writer.beginObject()
+                .name("total").value(total)
+                .name("completed").value(completed)
+                .name("delayed").value(delayed)
+                .name("dueSoon").value(dueSoon)
+                .endObject());
+    }
+
+    /*
+     * JSON Helpers
+     */
+
+    private static void writeTask(JsonWriter writer, Task task) throws IOException {
+        long id = task.getId();
+        writer.beginObject();
+        writer.name("id").value(id);
+        writer.name("title").value(task.getTitle());
+        writer.name("description").value(task.getDescription());
+        writer.name("status").value(task.getStatus() != null ? task.getStatus().getLabel() : null);
+        writer.name("category").value(task.getCategory() != null ? task.getCategory().getTitle() : null);
+        writer.name("priority").value(task.getPriority() != null ? task.getPriority().getTitle() : null);
+        writer.name("deadline").value(task.getDeadline() != null ? task.getDeadline().toString() : null);
+        writer.name("reminders").beginArray();
+        for (Reminder reminder : task.getReminders()) {
+            writeReminder(writer, reminder, id);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    private static void writeReminder(JsonWriter writer, Reminder reminder, long taskId) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(reminder.getId());
+        writer.name("taskId").value(taskId);
+        writer.name("date").value(reminder.getDate() != null ? reminder.getDate().toString() : null);
+        writer.name("message").value(reminder.getMessage());
+        writer.endObject();
+    }
+
+    private static void writeTitles(JsonWriter writer, List<String> titles) throws IOException {
+        writer.beginArray();
+        for (String title : titles) {
+            writeTitle(writer, title);
+        }
+        writer.endArray();
+    }
+
+    private static void writeTitle(JsonWriter writer, String title) throws IOException {
+        writer.beginObject().name("title").value(title).endObject();
+    }
+
+    private static String string(JsonObject body, String name) {
+        JsonElement value = body.get(name);
+        if (value == null || value.isJsonNull()) return null;
+        if (!value.isJsonPrimitive()) throw new ApiException(400, "Field " + name + " must be a string");
+        return value.getAsString();
+    }
+
+    private static LocalDate date(JsonObject body, String name) {
+        String value = string(body, name);
+        try {
+            return value != null ? LocalDate.parse(value) : null;
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Field " + name + " must be an ISO date: " + value);
+        }
+    }
+
+    private static TaskStatus status(JsonObject body) {
+        TaskStatus status = parseStatus(string(body, "status"));
+        return status != null ? status : TaskStatus.OPEN;
+    }
+
+    private static TaskStatus parseStatus(String label) {
+        try {
+            return TaskStatus.fromLabel(label);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+    }
+
+    private static long parseTaskId(String segment) {
+        try {
+            return Long.parseLong(segment);
+        } catch (NumberFormatException e) {
+            throw notFound("Task " + segment);
+        }
+    }
+
+    private static long parseReminderId(String segment) {
+        try {
+            return Long.parseLong(segment);
+        } catch (NumberFormatException e) {
+            throw notFound("Reminder " + segment);
+        }
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+}
@@ -1,26 +1,7 @@
 package com.medialab.models;
 
-import java.util.Objects;
+public class Category extends NamedEntity {
 
-public class Category {
-    private String title;
-
-    public Category(String title) { this.title = title; }
-
-    public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
-        Category category = (Category) obj;
-        return Objects.equals(title, category.title);
-    }
-
-    @Override
-    public int hashCode() { return Objects.hash(title); }
-
-    @Override
-    public String toString() { return title; }
-}
\ No newline at end of file
+    // Created by the TaskManager (see TaskManager.addCategory), which gives out the ids
+    public Category(long id, String title) { super(id, title); }
+}
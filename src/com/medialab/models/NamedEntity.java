@@ -0,0 +1,41 @@
+package com.medialab.models;
+
+/**
+ * A title with a stable id: the common part of Category and PriorityLevel.
+ * <p>
+ * Instances are canonical: a TaskManager creates exactly one instance per title, and every Task
+ * refers to that instance. Equality is by id rather than by title, so renaming one (a single
+ * field change that all of its Tasks see at once) keeps it valid as a key of hash-based indexes.
+ */
+public abstract class NamedEntity {
+    private final long id;
+    private String title;
+
+    protected NamedEntity(long id, String title) {
+        this.id = id;
+        this.title = title;
+    }
+
+    public long getId() { return id; }
+
+    public String getTitle() { return title; }
+
+    /**
+     * Renames in place. Use the TaskManager's rename methods for managed instances,
+     * so its title lookups stay in sync.
+     */
+    public void setTitle(String title) { this.title = title; }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        return id == ((NamedEntity) obj).id;
+    }
+
+    @Override
+    public int hashCode() { return Long.hashCode(id); }
+
+    @Override
+    public String toString() { return title; }
+}
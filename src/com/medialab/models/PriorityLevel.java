@@ -1,26 +1,7 @@
 package com.medialab.models;
 
-import java.util.Objects;
+public class PriorityLevel extends NamedEntity {
 
-public class PriorityLevel {
-    private String title;
-
-    public PriorityLevel(String title) { this.title = title; }
-
-    public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
-        PriorityLevel priority = (PriorityLevel) obj;
-        return Objects.equals(title, priority.title);
-    }
-
-    @Override
-    public int hashCode() { return Objects.hash(title); }
-
-    @Override
-    public String toString() { return title; }
-}
\ No newline at end of file
+    // Created by the TaskManager (see TaskManager.addPriority), which gives out the ids
+    public PriorityLevel(long id, String title) { super(id, title); }
+}
@@ -1,25 +1,48 @@
 package com.medialab.models;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Reminder {
+    private static final AtomicLong nextId = new AtomicLong(1);
+
+    private final long id; // Saved with the Reminder; unique across all Tasks
     private LocalDate date;
     private String message;
+    private Task task; // The Task that owns this Reminder (set by Task.addReminder)
 
-    // Constructor with date and message
+    // Constructor with date and message (a new Reminder gets the next free id)
     public Reminder(LocalDate date, String message) {
+        this(0, date, message);
+    }
+
+    /**
+     * Creates a Reminder with the id it was saved with, or with the next free id if {@code id} is 0
+     * (data saved before Reminders had ids). New ids are always higher than every id loaded so far.
+     */
+    public Reminder(long id, LocalDate date, String message) {
+        if (id > 0) {
+            this.id = id;
+            nextId.accumulateAndGet(id + 1, Math::max);
+        } else {
+            this.id = nextId.getAndIncrement();
+        }
         this.date = date;
         this.message = message;
     }
 
     // Getters
+    public long getId() { return id; }
     public LocalDate getDate() { return date; }
     public String getMessage() { return message; }
+    public Task getTask() { return task; }
 
     // Setters
     public void setDate(LocalDate date) { this.date = date; }
     public void setMessage(String message) { this.message = message; }
 
+    void setTask(Task task) { this.task = task; }
+
     /**
      * Display of Reminders in the following form: "2025-02-07: reminder message"
      */
@@ -28,16 +51,20 @@ public class Reminder {
         return (date + ": " + message);
     }
 
+    /**
+     * Reminders are equal only if they have the same id, so two Reminders with the same
+     * date and message (e.g. of different Tasks) are never mistaken for one another.
+     */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Reminder reminder = (Reminder) obj;
-        return date.equals(reminder.date) && message.equals(reminder.message);
+        return id == reminder.id;
     }
 
     @Override
     public int hashCode() {
-        return 31 * date.hashCode() + message.hashCode();
+        return Long.hashCode(id);
     }
 }
\ No newline at end of file
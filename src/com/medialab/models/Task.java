@@ -2,18 +2,21 @@ package com.medialab.models;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class Task {
+    private long id; // Persistent id, given by the TaskManager (0 until the Task is first added)
     private String title;
     private String description;
     private Category category; // Category is an object of type Category
     private PriorityLevel priority; // Priority is an object of type PriorityLevel
     private LocalDate deadline;
-    private String status;
+    private TaskStatus status;
     private List<Reminder> reminders; // List of reminders
 
-    public Task(String title, String description, Category category, PriorityLevel priority, LocalDate deadline, String status) {
+    public Task(String title, String description, Category category, PriorityLevel priority, LocalDate deadline, TaskStatus status) {
         this.title = title;
         this.description = description;
         this.category = category;
@@ -25,6 +28,9 @@ public class Task {
 
     // Getters and Setters
 
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
@@ -40,11 +46,29 @@ public class Task {
     public LocalDate getDeadline() { return deadline; }
     public void setDeadline(LocalDate deadline) { this.deadline = deadline; }
 
-    public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
+    public TaskStatus getStatus() { return status; }
+    public void setStatus(TaskStatus status) { this.status = status; }
+
+    public List<Reminder> getReminders() { return Collections.unmodifiableList(reminders); }
+
+    public void addReminder(Reminder reminder) {
+        this.reminders.add(reminder);
+        reminder.setTask(this);
+    }
 
-    public List<Reminder> getReminders() { return reminders; }
-    public void addReminder(Reminder reminder) { this.reminders.add(reminder); }
+    /**
+     * Removes the given Reminder from this Task.
+     *
+     * @return the position the Reminder had, or -1 if it does not belong to this Task
+     */
+    public int removeReminder(Reminder reminder) {
+        int index = reminders.indexOf(reminder);
+        if (index != -1) {
+            reminders.remove(index);
+            reminder.setTask(null);
+        }
+        return index;
+    }
 
     /**
      * Display of Tasks with all their fields also shown.
@@ -56,12 +80,11 @@ public class Task {
         String deadlineText = (deadline != null) ? deadline.toString() : "No Deadline";
         String descriptionText = (description != null && !description.isEmpty()) ? description : "No Description";
         
-        // Convert reminders list to a readable string format
+        // Convert reminders list to a readable string format (joined in one pass)
         String remindersText = reminders.isEmpty() ? "No Reminders" :
                 reminders.stream()
                         .map(Reminder::toString)
-                        .reduce((r1, r2) -> r1 + ", " + r2)
-                        .orElse("");
+                        .collect(Collectors.joining(", "));
 
         return title + "\n" +
                "Status: " + status + "\n" +
@@ -0,0 +1,66 @@
+package com.medialab.models;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The possible states of a Task.
+ * Each status keeps the label it is shown with and stored as in data.json (e.g. "In Progress").
+ */
+public enum TaskStatus {
+    OPEN("Open"),
+    IN_PROGRESS("In Progress"),
+    POSTPONED("Postponed"),
+    COMPLETED("Completed"),
+    DELAYED("Delayed");
+
+    private final String label;
+
+    // Stored labels that have already been reported as unknown (see fromStoredLabel)
+    private static final Set<String> reportedLabels = ConcurrentHashMap.newKeySet();
+
+    TaskStatus(String label) { this.label = label; }
+
+    public String getLabel() { return label; }
+
+    /**
+     * Returns the status with the given label, or null if the label is null.
+     *
+     * @throws IllegalArgumentException if there is no status with that label
+     */
+    public static TaskStatus fromLabel(String label) {
+        if (label == null) return null;
+        for (TaskStatus status : values()) {
+            if (status.label.equals(label)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown task status: " + label);
+    }
+
+    /**
+     * Like {@link #fromLabel}, but for labels read from stored data, where the status used to be
+     * free-form text: labels and constant names are matched ignoring case and surrounding blanks
+     * (e.g. "completed", "IN_PROGRESS"), and anything else is loaded as {@link #OPEN}, with a
+     * warning (once per label), instead of aborting the load.
+     */
+    public static TaskStatus fromStoredLabel(String label) {
+        if (label == null) return null;
+        String trimmed = label.strip();
+        for (TaskStatus status : values()) {
+            if (status.label.equalsIgnoreCase(trimmed) || status.name().equalsIgnoreCase(trimmed)) {
+                return status;
+            }
+        }
+        if (reportedLabels.add(label)) {
+            System.err.println("Unknown task status \"" + label + "\", loaded as " + OPEN.label);
+        }
+        return OPEN;
+    }
+
+    /**
+     * Display of Statuses by their label, e.g. "In Progress".
+     */
+    @Override
+    public String toString() { return label; }
+}
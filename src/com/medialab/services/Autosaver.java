@@ -0,0 +1,160 @@
+package com.medialab.services;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+
+/**
+ * Background autosave for a TaskManager.
+ * <p>
+ * Every mutation marks the store dirty. A save is then scheduled on the dedicated autosave
+ * thread, at most once per interval, so a burst of edits results in a single write.
+ * <p>
+ * The snapshot itself is taken on the thread that mutates the TaskManager (given as the
+ * {@code mutationExecutor}, e.g. the JavaFX application thread), so that it matches the journal
+ * position exactly. Taking it is O(1) (see TaskManager.snapshot()); copying the Tasks out of it
+ * and all disk I/O happen on the autosave thread.
+ */
+public class Autosaver implements TaskManagerListener {
+
+    /**
+     * The state to save, together with the journal position it corresponds to.
+     */
+    record Capture(TaskManager.Snapshot snapshot, long journalMark) {}
+
+    private final DataManager dataManager;
+    private final TaskManager taskManager;
+    private final long intervalMillis;
+    private final Executor mutationExecutor;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Guarded by this
+    private boolean dirty;
+    private boolean scheduled;
+    private boolean stopped;
+    private long lastSaveMillis;
+    private CompletableFuture<Capture> pendingCapture;
+
+    Autosaver(DataManager dataManager, TaskManager taskManager, Duration interval, Executor mutationExecutor) {
+        this.dataManager = dataManager;
+        this.taskManager = taskManager;
+        this.intervalMillis = interval.toMillis();
+        this.mutationExecutor = mutationExecutor;
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    void start() {
+        taskManager.addListener(this);
+    }
+
+    /**
+     * Schedules a save, unless one is already scheduled. Saves are at least one interval apart.
+     */
+    public synchronized void requestSave() {
+        dirty = true;
+        if (scheduled || stopped) return;
+
+        scheduled = true;
+        long delay = Math.max(0, lastSaveMillis + intervalMillis - System.currentTimeMillis());
+        executor.schedule(this::save, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves what has not been saved yet and stops autosaving, waiting at most {@code timeout}.
+     * Must be called on the thread that mutates the TaskManager.
+     *
+     * @return true if everything was written within the timeout
+     */
+    public boolean flush(Duration timeout) {
+        taskManager.removeListener(this);
+
+        boolean needsWrite;
+        CompletableFuture<Capture> waiting;
+        synchronized (this) {
+            stopped = true;
+            needsWrite = dirty || (pendingCapture != null && !pendingCapture.isDone());
+            dirty = false;
+            waiting = pendingCapture;
+        }
+
+        if (needsWrite) {
+            Capture capture = capture();
+            // A save that is waiting for its snapshot takes this one; otherwise write it ourselves
+            if (waiting == null || !waiting.complete(capture)) {
+                executor.execute(() -> dataManager.writeSnapshot(capture));
+            }
+        }
+
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*
+     * Runs on the autosave thread.
+     */
+    private void save() {
+        CompletableFuture<Capture> capture;
+        synchronized (this) {
+            scheduled = false;
+            if (!dirty || stopped) return;
+            dirty = false;
+            pendingCapture = new CompletableFuture<>();
+            capture = pendingCapture;
+        }
+
+        // Take the snapshot on the mutation thread, then write it here
+        mutationExecutor.execute(() -> capture.complete(capture()));
+        dataManager.writeSnapshot(capture.join());
+
+        synchronized (this) {
+            pendingCapture = null;
+            lastSaveMillis = System.currentTimeMillis();
+        }
+    }
+
+    private Capture capture() {
+        return new Capture(taskManager.snapshot(), dataManager.journalMark());
+    }
+
+    /*
+     * Dirty Tracking (TaskManagerListener)
+     */
+
+    @Override public void taskAdded(Task task) { requestSave(); }
+    @Override public void taskUpdated(Task task) { requestSave(); }
+    @Override public void taskDeleted(Task task) { requestSave(); }
+    @Override public void tasksAdded(List<Task> tasks) { requestSave(); }
+    @Override public void tasksUpdated(List<Task> tasks) { requestSave(); }
+    @Override public void tasksUpdated(List<Task> tasks, List<RemovedReminder> removedReminders) { requestSave(); }
+    @Override public void tasksDeleted(List<Task> tasks) { requestSave(); }
+    @Override public void categoryAdded(Category category) { requestSave(); }
+    @Override public void categoryUpdated(String oldTitle, Category updatedCategory) { requestSave(); }
+    @Override public void categoryDeleted(Category category, Collection<Task> deletedTasks) { requestSave(); }
+    @Override public void priorityAdded(PriorityLevel priority) { requestSave(); }
+    @Override public void priorityUpdated(String oldTitle, PriorityLevel updatedPriority) { requestSave(); }
+    @Override public void priorityDeleted(PriorityLevel priority, Collection<Task> reassignedTasks) { requestSave(); }
+    @Override public void reminderAdded(Task task, Reminder reminder) { requestSave(); }
+    @Override public void reminderUpdated(Task task, Reminder reminder) { requestSave(); }
+    @Override public void reminderDeleted(Task task, Reminder reminder, int index) { requestSave(); }
+    @Override public void remindersAdded(List<Reminder> reminders) { requestSave(); }
+}
@@ -0,0 +1,113 @@
+package com.medialab.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntConsumer;
+
+import com.medialab.models.Task;
+
+/**
+ * A SnapshotSink that hands what is read to a TaskManager in batches, on the thread that mutates
+ * the TaskManager (the {@code mutationExecutor}).
+ * <p>
+ * The file is read on the calling thread. While one batch is being added, the next one is read;
+ * reading then waits for the previous batch to be applied before handing over the next one, so
+ * the mutation thread gets to run other work (e.g. render a frame) between batches and is never
+ * flooded with more than one pending batch. Each batch of Tasks is added with one
+ * {@link TaskManager#addTasks} call, so listeners (the UI lists, the journal) see one change per batch.
+ */
+final class BatchLoader implements SnapshotSink {
+    private static final int DIRECT_BATCH_SIZE = 10_000;
+
+    private final TaskManager taskManager;
+    private final Executor mutationExecutor;
+    private final int batchSize;
+    private final IntConsumer progress;
+
+    private List<String> categories = new ArrayList<>();
+    private List<String> priorities = new ArrayList<>();
+    private List<DataManager.PendingTask> tasks = new ArrayList<>();
+    private CompletableFuture<Void> previousBatch = CompletableFuture.completedFuture(null);
+
+    // Only touched on the mutation thread
+    private int loadedTasks;
+
+    /**
+     * A loader that adds each batch right away, on the thread that reads the file.
+     * Like any BatchLoader, it must be flushed once everything has been read.
+     */
+    static BatchLoader direct(TaskManager taskManager) {
+        return new BatchLoader(taskManager, Runnable::run, DIRECT_BATCH_SIZE, _ -> {});
+    }
+
+    /**
+     * @param progress called on the mutation thread after each batch, with the number of Tasks loaded so far
+     */
+    BatchLoader(TaskManager taskManager, Executor mutationExecutor, int batchSize, IntConsumer progress) {
+        this.taskManager = taskManager;
+        this.mutationExecutor = mutationExecutor;
+        this.batchSize = batchSize;
+        this.progress = progress;
+    }
+
+    @Override
+    public void category(String title) {
+        categories.add(title);
+    }
+
+    @Override
+    public void priority(String title) {
+        priorities.add(title);
+    }
+
+    @Override
+    public void task(DataManager.PendingTask task) {
+        tasks.add(task);
+        if (tasks.size() >= batchSize) flush();
+    }
+
+    /**
+     * Hands over what has been read since the last batch.
+     */
+    void flush() {
+        if (categories.isEmpty() && priorities.isEmpty() && tasks.isEmpty()) return;
+
+        List<String> batchCategories = categories;
+        List<String> batchPriorities = priorities;
+        List<DataManager.PendingTask> batchTasks = tasks;
+        categories = new ArrayList<>();
+        priorities = new ArrayList<>();
+        tasks = new ArrayList<>(batchSize);
+
+        awaitApplied();
+        previousBatch = CompletableFuture.runAsync(() -> {
+            // Categories and priorities first: the Tasks of the same batch may refer to them
+            batchCategories.forEach(taskManager::addCategory);
+            batchPriorities.forEach(taskManager::addPriority);
+            List<Task> resolved = new ArrayList<>(batchTasks.size());
+            for (DataManager.PendingTask task : batchTasks) {
+                resolved.add(task.resolve(taskManager));
+            }
+            taskManager.addTasks(resolved);
+            loadedTasks += batchTasks.size();
+            progress.accept(loadedTasks);
+        }, mutationExecutor);
+    }
+
+    /**
+     * Waits until every batch handed over so far has been added.
+     *
+     * @throws RuntimeException what adding a batch threw; the TaskManager then only has part of the data
+     */
+    void awaitApplied() {
+        try {
+            previousBatch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException failure) throw failure;
+            throw e;
+        }
+    }
+}
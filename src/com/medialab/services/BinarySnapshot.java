@@ -0,0 +1,280 @@
+package com.medialab.services;
+
+import com.medialab.models.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot format, the alternative to {@code data.json} for large stores.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ * magic "MLTS", int version
+ * int stringCount, then per string: int length, UTF-8 bytes    (category, priority and status names)
+ * int categoryCount, then per category: int string index
+ * int priorityCount, then per priority: int string index
+ * int taskCount, then per task: int recordLength, record
+ *
+ * record = long id, string title, string description, int status, int category, int priority,
+ *          int deadline, int reminderCount, then per reminder: long id, int date, string message
+ * </pre>
+ * Inline strings are an int byte length (-1 for null) followed by UTF-8 bytes. Status, category and
+ * priority are string table indexes (-1 for none), dates are epoch days ({@link #NO_DATE} for none).
+ * <p>
+ * Version 1 records have no ids, except that some writers appended the task id and then one long
+ * per reminder id after the reminders. They are still read: ids are taken from those trailing
+ * longs when the record has room for them, and the Tasks and Reminders without get new ids on load.
+ * <p>
+ * Loading maps the file into memory and decodes it directly from the mapped buffer.
+ */
+public final class BinarySnapshot {
+    static final byte[] MAGIC = {'M', 'L', 'T', 'S'};
+    static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_IDS = 1;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private BinarySnapshot() {}
+
+    /**
+     * Returns true if the file starts with the binary snapshot magic.
+     */
+    public static boolean isBinarySnapshot(Path path) throws IOException {
+        if (!Files.exists(path)) return false;
+        try (InputStream in = Files.newInputStream(path)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /*
+     * Writing
+     */
+
+    static void write(DataOutputStream out, List<Task> tasks, List<Category> categories,
+                      List<PriorityLevel> priorities) throws IOException {
+        // Build the string table
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for (Category category : categories) intern(category.getTitle(), strings, table);
+        for (PriorityLevel priority : priorities) intern(priority.getTitle(), strings, table);
+        for (Task task : tasks) {
+            if (task.getStatus() != null) intern(task.getStatus().getLabel(), strings, table);
+            if (task.getCategory() != null) intern(task.getCategory().getTitle(), strings, table);
+            if (task.getPriority() != null) intern(task.getPriority().getTitle(), strings, table);
+        }
+
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(table.size());
+        for (String string : table) {
+            writeString(out, string);
+        }
+
+        out.writeInt(categories.size());
+        for (Category category : categories) {
+            out.writeInt(strings.get(category.getTitle()));
+        }
+        out.writeInt(priorities.size());
+        for (PriorityLevel priority : priorities) {
+            out.writeInt(strings.get(priority.getTitle()));
+        }
+
+        // Records are built in a reusable buffer first, so they can be length-prefixed
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        out.writeInt(tasks.size());
+        for (Task task : tasks) {
+            record.reset();
+            recordOut.writeLong(task.getId());
+            writeString(recordOut, task.getTitle());
+            writeString(recordOut, task.getDescription());
+            recordOut.writeInt(task.getStatus() != null ? indexOf(task.getStatus().getLabel(), strings) : -1);
+            recordOut.writeInt(task.getCategory() != null ? indexOf(task.getCategory().getTitle(), strings) : -1);
+            recordOut.writeInt(task.getPriority() != null ? indexOf(task.getPriority().getTitle(), strings) : -1);
+            recordOut.writeInt(toEpochDay(task.getDeadline()));
+            recordOut.writeInt(task.getReminders().size());
+            for (Reminder reminder : task.getReminders()) {
+                recordOut.writeLong(reminder.getId());
+                recordOut.writeInt(toEpochDay(reminder.getDate()));
+                writeString(recordOut, reminder.getMessage());
+            }
+            recordOut.flush();
+
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+    }
+
+    private static void intern(String string, Map<String, Integer> strings, List<String> table) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, table.size());
+            table.add(string);
+        }
+    }
+
+    private static int indexOf(String string, Map<String, Integer> strings) {
+        return string != null ? strings.get(string) : -1;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NO_DATE;
+    }
+
+    /*
+     * Loading
+     */
+
+    /**
+     * Loads a binary snapshot into the TaskManager.
+     */
+    static void load(Path path, TaskManager taskManager) throws IOException {
+        BatchLoader loader = BatchLoader.direct(taskManager);
+        try {
+            load(path, loader);
+        } finally {
+            loader.flush();
+        }
+    }
+
+    /**
+     * Reads a binary snapshot into a SnapshotSink through a memory-mapped view of the file.
+     */
+    static void load(Path path, SnapshotSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary snapshot larger than 2 GB: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            load(buffer, sink);
+        }
+    }
+
+    private static void load(ByteBuffer buffer, SnapshotSink sink) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a binary snapshot");
+        int version = buffer.getInt();
+        if (version != VERSION && version != VERSION_WITHOUT_IDS) {
+            throw new IOException("Unsupported binary snapshot version: " + version);
+        }
+        boolean ids = version == VERSION;
+
+        byte[] scratch = new byte[256];
+
+        String[] table = new String[buffer.getInt()];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = readString(buffer, scratch);
+        }
+
+        int categoryCount = buffer.getInt();
+        for (int i = 0; i < categoryCount; i++) {
+            sink.category(table[buffer.getInt()]);
+        }
+        int priorityCount = buffer.getInt();
+        for (int i = 0; i < priorityCount; i++) {
+            sink.priority(table[buffer.getInt()]);
+        }
+
+        TaskStatus[] statusByString = new TaskStatus[table.length];
+
+        int taskCount = buffer.getInt();
+        for (int i = 0; i < taskCount; i++) {
+            int recordLength = buffer.getInt();
+            int recordEnd = buffer.position() + recordLength;
+
+            long id = ids ? buffer.getLong() : 0;
+            String title = readString(buffer, scratch);
+            String description = readString(buffer, scratch);
+            int status = buffer.getInt();
+            int category = buffer.getInt();
+            int priority = buffer.getInt();
+            LocalDate deadline = fromEpochDay(buffer.getInt());
+
+            // Statuses are resolved lazily, only for strings that are used as one
+            if (status >= 0 && statusByString[status] == null) {
+                statusByString[status] = TaskStatus.fromStoredLabel(table[status]);
+            }
+
+            // The category and priority are resolved by the sink, by title
+            Task task = new Task(title, description, null, null, deadline,
+                    status >= 0 ? statusByString[status] : null);
+
+            int reminderCount = buffer.getInt();
+            if (ids) {
+                task.setId(id);
+                for (int r = 0; r < reminderCount; r++) {
+                    long reminderId = buffer.getLong();
+                    task.addReminder(new Reminder(reminderId, fromEpochDay(buffer.getInt()), readString(buffer, scratch)));
+                }
+            } else {
+                readVersion1Reminders(buffer, scratch, task, reminderCount, recordEnd);
+            }
+
+            // Skip fields added by newer writers of the same version
+            buffer.position(recordEnd);
+            sink.task(new DataManager.PendingTask(task,
+                    category >= 0 ? table[category] : null,
+                    priority >= 0 ? table[priority] : null));
+        }
+    }
+
+    /**
+     * Reads the reminders of a version 1 record, and the ids some writers appended after them.
+     */
+    private static void readVersion1Reminders(ByteBuffer buffer, byte[] scratch, Task task, int reminderCount,
+                                              int recordEnd) {
+        LocalDate[] dates = new LocalDate[reminderCount];
+        String[] messages = new String[reminderCount];
+        for (int r = 0; r < reminderCount; r++) {
+            dates[r] = fromEpochDay(buffer.getInt());
+            messages[r] = readString(buffer, scratch);
+        }
+
+        if (buffer.position() + Long.BYTES <= recordEnd) {
+            task.setId(buffer.getLong());
+        }
+        boolean reminderIds = buffer.position() + (long) reminderCount * Long.BYTES <= recordEnd;
+        for (int r = 0; r < reminderCount; r++) {
+            task.addReminder(new Reminder(reminderIds ? buffer.getLong() : 0, dates[r], messages[r]));
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDate fromEpochDay(int epochDay) {
+        return epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+}
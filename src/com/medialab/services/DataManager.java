@@ -1,195 +1,803 @@
 package com.medialab.services;
 
-import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.medialab.models.*;
+import com.medialab.services.MutationJournal.SnapshotStamp;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Manages persistence operations for task management entities including Tasks, Categories,
  * PriorityLevels, and Reminders using JSON serialization. All data is stored in a
  * predefined file location specified by {@link #FILE_PATH}.
+ * <p>
+ * Both directions stream through Gson's {@link JsonReader}/{@link JsonWriter}, so no JSON tree
+ * of the whole store is ever held in memory.
+ * <p>
+ * Between snapshots, every change is appended to a {@link MutationJournal} ({@link #JOURNAL_PATH})
+ * once {@link #startJournal} has been called. Loading replays the snapshot plus the journal, and
+ * {@link #compact} folds the journal back into the snapshot.
+ * <p>
+ * With {@link #startAutosave}, snapshots are also written in the background by an {@link Autosaver}.
+ * <p>
+ * Instead of JSON, the snapshot can also be kept in the compact {@link BinarySnapshot} format
+ * (see {@link #setSnapshotFormat}); {@link SnapshotConverter} converts between the two.
+ * <p>
+ * Instead of the single file, the snapshot can also be kept as a directory of shards
+ * ({@link #SHARD_DIRECTORY}, see {@link #setStorageLayout} and {@link ShardedStore}), where a save
+ * only rewrites the shards whose Tasks have changed.
+ * <p>
+ * This is the default {@link TaskStore}; {@link #open} and {@link #close} start and stop the
+ * journal and the autosave together.
+ * <p>
+ * If the stored data cannot be loaded completely, the load fails and nothing is saved from then
+ * on: no snapshot, no journal and no autosave, so the stored data is never overwritten with the
+ * part of it that was read.
  */
-public class DataManager {
+public class DataManager implements TaskStore {
     private static final String FILE_PATH = "medialab/data.json";
-    private Gson gson;
-    
+    private static final String JOURNAL_PATH = "medialab/data.journal";
+    private static final String REMINDER_STATE_PATH = "medialab/reminders.state";
+    private static final String SHARD_DIRECTORY = "medialab/data";
+
+    // Number of journal records after which the journal is folded back into the snapshot
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 10_000;
+
+    // Above this many tasks, saveData() writes compact JSON instead of pretty-printed JSON
+    private static final int PRETTY_PRINT_TASK_LIMIT = 10_000;
+
+    /**
+     * The on-disk formats of the snapshot file. Both are stored at {@link #FILE_PATH};
+     * loading tells them apart by the file header.
+     */
+    public enum SnapshotFormat { JSON, BINARY }
+
+    /**
+     * Where the snapshot is kept: in the single file {@link #FILE_PATH} (in the {@link SnapshotFormat}),
+     * or as JSON shards and a manifest in {@link #SHARD_DIRECTORY}. Loading uses whichever of the
+     * two has been saved last.
+     */
+    public enum StorageLayout { SINGLE_FILE, SHARDED }
+
+    private volatile SnapshotFormat format = SnapshotFormat.JSON;
+    private volatile StorageLayout layout = StorageLayout.SINGLE_FILE;
+    private final ShardedStore shards = new ShardedStore(Path.of(SHARD_DIRECTORY));
+    private volatile MutationJournal journal;
+    private long journalValidLength;
+    private Autosaver autosaver;
+    // Writes the compaction snapshots when there is no autosave thread to do it
+    private ExecutorService compactor;
+
+    // Only one snapshot is written at a time (autosave, compaction or an explicit save)
+    private final Object snapshotLock = new Object();
+
+    // Set if loading failed; nothing is saved from then on
+    private volatile IllegalStateException loadFailure;
+
+    /**
+     * Returns the format snapshots are saved in: the format of the loaded file, JSON by default.
+     */
+    public SnapshotFormat getSnapshotFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the format that the following snapshots are saved in.
+     */
+    public void setSnapshotFormat(SnapshotFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Returns the layout snapshots are saved in: the layout of the loaded snapshot, a single file by default.
+     */
+    public StorageLayout getStorageLayout() {
+        return layout;
+    }
+
     /**
-     * Constructs a DataManager with custom Gson configuration for LocalDate handling.
-     * Registers type adapters to properly serialize/deserialize LocalDate objects
-     * and enables pretty-printing for better JSON readability.
+     * Sets the layout that the following snapshots are saved in. The first save in a new layout
+     * writes everything and then removes the snapshot in the other layout.
      */
-    public DataManager() {
-        // Register custom adapters for LocalDate serialization/deserialization
-        gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDate.class, (JsonSerializer<LocalDate>)
-                        (src, typeOfSrc, context) -> new JsonPrimitive(src.toString()))
-                .registerTypeAdapter(LocalDate.class, (JsonDeserializer<LocalDate>)
-                        (json, typeOfT, context) -> LocalDate.parse(json.getAsString()))
-                .setPrettyPrinting()
-                .create();
+    public void setStorageLayout(StorageLayout layout) {
+        this.layout = layout;
     }
-    
+
+    private Path snapshotPath() {
+        return layout == StorageLayout.SHARDED ? shards.manifestPath() : Path.of(FILE_PATH);
+    }
+
+    /**
+     * Serializes and saves task management data to the data file.
+     * <p>
+     * Pretty-printing is used for small stores only; large stores are written compactly.
+     *
+     * @see #saveData(List, List, List, boolean)
+     */
+    public void saveData(List<Task> tasks, List<Category> categories, List<PriorityLevel> priorities) {
+        saveData(tasks, categories, priorities, tasks.size() <= PRETTY_PRINT_TASK_LIMIT);
+    }
+
     /**
      * Serializes and saves task management data to a JSON file.
      * <p>
      * Stores tasks with their complete structure including nested reminders, while
      * categories and priorities are stored as independent entities. Reminders are
      * automatically persisted through their containing Task objects.
+     * <p>
+     * The data is streamed through a buffered {@link JsonWriter} without building a JSON tree.
+     * With pretty-printing the output is byte-for-byte what Gson's pretty printer produced.
+     * If the snapshot format is {@link SnapshotFormat#BINARY}, a {@link BinarySnapshot} is written instead.
+     * In the {@link StorageLayout#SHARDED} layout, every shard is rewritten (plain lists cannot be
+     * compared with the last save, unlike the snapshots of the autosave and of {@link #compact}).
+     * The file is written to a temporary file first and then moved into place, and an open
+     * journal is cut down afterwards to the records the new snapshot does not contain.
+     * Must be called on the thread that mutates the TaskManager the lists belong to.
      *
      * @param tasks       list of tasks to save (including their associated reminders)
      * @param categories  list of available task categories
      * @param priorities  list of defined priority levels
+     * @param prettyPrint whether to indent the output for readability
      * @throws IOException if any I/O error occurs during file writing (caught and printed internally)
      */
-    public void saveData(List<Task> tasks, List<Category> categories, List<PriorityLevel> priorities) {
-        try (FileWriter writer = new FileWriter(FILE_PATH)) {
-            JsonObject jsonData = new JsonObject();
-
-            // Convert categories to JSON
-            JsonArray categoryArray = new JsonArray();
-            for (Category category : categories) {
-                JsonObject categoryObject = new JsonObject();
-                categoryObject.addProperty("title", category.getTitle());
-                categoryArray.add(categoryObject);
+    public void saveData(List<Task> tasks, List<Category> categories, List<PriorityLevel> priorities,
+                         boolean prettyPrint) {
+        if (refuseSave()) return;
+        long journalMark = journalMark();
+        synchronized (snapshotLock) {
+            try {
+                if (layout == StorageLayout.SHARDED) {
+                    installShards(shards.prepare(tasks, categories, priorities), journalMark);
+                } else {
+                    installFile(tasks, categories, priorities, prettyPrint, journalMark);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+    }
 
-            // Convert priorities to JSON
-            JsonArray priorityArray = new JsonArray();
-            for (PriorityLevel priority : priorities) {
-                JsonObject priorityObject = new JsonObject();
-                priorityObject.addProperty("title", priority.getTitle());
-                priorityArray.add(priorityObject);
+    /**
+     * Writes a snapshot captured by the {@link Autosaver} (may run on any thread).
+     */
+    void writeSnapshot(Autosaver.Capture capture) {
+        if (refuseSave()) return;
+        TaskManager.Snapshot snapshot = capture.snapshot();
+        synchronized (snapshotLock) {
+            try {
+                if (layout == StorageLayout.SHARDED) {
+                    // Only the shards that changed since the last save are written
+                    installShards(shards.prepare(snapshot), capture.journalMark());
+                } else {
+                    installFile(snapshot.tasks(), snapshot.categories(), snapshot.priorities(),
+                            snapshot.taskCount() <= PRETTY_PRINT_TASK_LIMIT, capture.journalMark());
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                // A journal waiting for its compaction may ask for the next one (if this one was not enough)
+                MutationJournal journal = this.journal;
+                if (journal != null) {
+                    journal.compactionFinished();
+                }
             }
+        }
+    }
 
-            // Convert tasks to JSON (with all fields)
-            JsonArray taskArray = new JsonArray();
-            for (Task task : tasks) {
-                JsonObject taskObject = new JsonObject();
-                taskObject.addProperty("title", task.getTitle());
-                taskObject.addProperty("description", task.getDescription());
-                taskObject.addProperty("status", task.getStatus());
-                
-                // Store category as a string (category title)
-                taskObject.addProperty("category", task.getCategory() != null ? task.getCategory().getTitle() : null);
-                
-                // Store priority as a string
-                taskObject.addProperty("priority", task.getPriority() != null ? task.getPriority().getTitle() : null);
-                
-                // Store deadline
-                taskObject.addProperty("deadline", task.getDeadline() != null ? task.getDeadline().toString() : null);
-                
-                // Store reminders as an array
-                JsonArray reminderArray = new JsonArray();
-                for (Reminder reminder : task.getReminders()) {
-                    JsonObject reminderObject = new JsonObject();
-                    reminderObject.addProperty("date", reminder.getDate().toString());
-                    reminderObject.addProperty("message", reminder.getMessage());
-                    reminderArray.add(reminderObject);
-                }
-                taskObject.add("reminders", reminderArray);
-                taskArray.add(taskObject);
+    /**
+     * Returns true, and says so, if the load failed: the stored data must not be overwritten then.
+     */
+    private boolean refuseSave() {
+        if (loadFailure == null) return false;
+        System.err.println("Not saving: " + loadFailure.getMessage());
+        return true;
+    }
+
+    /*
+     * Both install methods run under the snapshot lock.
+     */
+
+    private void installFile(List<Task> tasks, List<Category> categories, List<PriorityLevel> priorities,
+                             boolean prettyPrint, long journalMark) throws IOException {
+        Path temp = Path.of(FILE_PATH + ".tmp");
+        writeFile(temp, format, tasks, categories, priorities, prettyPrint);
+        install(temp, Path.of(FILE_PATH), journalMark);
+        // The file replaces a sharded snapshot, if there was one
+        shards.delete();
+    }
+
+    private void installShards(Path manifest, long journalMark) throws IOException {
+        install(manifest, shards.manifestPath(), journalMark);
+        shards.installed();
+        // The shards replace a single-file snapshot, if there was one
+        Files.deleteIfExists(Path.of(FILE_PATH));
+    }
+
+    /**
+     * Moves a written snapshot file (or shard manifest) into place, telling the journal before and after.
+     *
+     * @param journalMark the journal position the data corresponds to, or -1 without a journal
+     */
+    private void install(Path temp, Path target, long journalMark) throws IOException {
+        // The move keeps size and modification time, so the stamp of the temp file is the new snapshot's
+        SnapshotStamp stamp = SnapshotStamp.of(temp);
+        MutationJournal journal = journalMark >= 0 ? this.journal : null;
+        if (journal != null) {
+            journal.snapshotWritten(stamp, journalMark);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (journal != null) {
+            journal.snapshotInstalled(stamp, journalMark);
+        }
+    }
+
+    /**
+     * Writes (and fsyncs) a snapshot file in the given format.
+     */
+    static void writeFile(Path path, SnapshotFormat format, List<Task> tasks, List<Category> categories,
+                          List<PriorityLevel> priorities, boolean prettyPrint) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (format == SnapshotFormat.BINARY) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                BinarySnapshot.write(out, tasks, categories, priorities);
+                out.flush();
+            } else {
+                JsonWriter writer = new JsonWriter(new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8)));
+                writeData(writer, tasks, categories, priorities, prettyPrint);
+                writer.flush();
             }
+            channel.force(true);
+        }
+    }
+
+    /*
+     * TaskStore Methods
+     */
 
-            // Store everything in the JSON file
-            jsonData.add("tasks", taskArray);
-            jsonData.add("categories", categoryArray);
-            jsonData.add("priorities", priorityArray);
+    /**
+     * Starts the journal and the autosave (see {@link #startJournal} and {@link #startAutosave}).
+     *
+     * @throws IllegalStateException if the load failed
+     */
+    @Override
+    public void open(TaskManager taskManager, Duration saveInterval, Executor mutationExecutor) {
+        if (loadFailure != null) throw new IllegalStateException("Not opened: " + loadFailure.getMessage(), loadFailure);
+        startJournal(taskManager);
+        startAutosave(taskManager, saveInterval, mutationExecutor);
+    }
+
+    /**
+     * Stops the autosave (see {@link #stopAutosave}) and then the journal, which still holds the
+     * changes that missed the timeout.
+     */
+    @Override
+    public boolean close(Duration timeout) {
+        boolean flushed = stopAutosave(timeout);
+        closeJournal();
+        return flushed;
+    }
+
+    /*
+     * Autosave Methods
+     */
+
+    /**
+     * Starts saving the TaskManager in the background whenever it has changed, at most once per
+     * {@code interval}. Snapshots are taken through {@code mutationExecutor}, which must run tasks
+     * on the thread that mutates the TaskManager (e.g. {@code Platform::runLater}).
+     */
+    public void startAutosave(TaskManager taskManager, Duration interval, Executor mutationExecutor) {
+        if (refuseSave()) return;
+        autosaver = new Autosaver(this, taskManager, interval, mutationExecutor);
+        autosaver.start();
+    }
 
-            gson.toJson(jsonData, writer);
+    /**
+     * Writes any unsaved changes and stops autosaving, waiting at most {@code timeout}.
+     * Must be called on the thread that mutates the TaskManager.
+     *
+     * @return true if all changes were written within the timeout
+     */
+    public boolean stopAutosave(Duration timeout) {
+        if (autosaver == null) return true;
+        boolean flushed = autosaver.flush(timeout);
+        autosaver = null;
+        return flushed;
+    }
+
+    /*
+     * Journal Methods
+     */
+
+    /**
+     * Starts recording every mutation of the TaskManager to the journal.
+     * Must be called after {@link #loadData}, which replays the existing journal.
+     * <p>
+     * Compaction never blocks the mutation thread: the snapshot is only taken there (in O(1)) and
+     * written by the autosave thread, or by a compaction thread if there is no autosave.
+     */
+    public void startJournal(TaskManager taskManager) {
+        // Opening the journal cuts it down to what was replayed
+        if (refuseSave()) return;
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            journal = new MutationJournal(Path.of(JOURNAL_PATH), taskManager, JOURNAL_COMPACTION_THRESHOLD,
+                    () -> {
+                        // Let the autosave thread do the compaction, if there is one
+                        if (autosaver != null) {
+                            autosaver.requestSave();
+                        } else {
+                            Autosaver.Capture capture = new Autosaver.Capture(taskManager.snapshot(), journalMark());
+                            compactor.execute(() -> writeSnapshot(capture));
+                        }
+                    });
+            journal.open(SnapshotStamp.of(snapshotPath()), journalValidLength);
         } catch (IOException e) {
             e.printStackTrace();
+            journal = null;
         }
     }
-    
+
+    /**
+     * Waits for a running compaction, commits the remaining journal records to disk and stops journaling.
+     */
+    public void closeJournal() {
+        if (journal == null) return;
+        // The compaction must install its snapshot while the journal can still record it
+        compactor.close();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal = null;
+    }
+
+    long journalMark() {
+        MutationJournal journal = this.journal;
+        return journal != null ? journal.mark() : -1;
+    }
+
+    /**
+     * Folds the journal back into {@code data.json} (or the shards) by writing a fresh snapshot.
+     * The journal is committed first, so nothing is lost if writing the snapshot fails.
+     * Must be called on the thread that mutates the TaskManager.
+     */
+    public void compact(TaskManager taskManager) {
+        if (journal != null) {
+            try {
+                journal.commit();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        writeSnapshot(new Autosaver.Capture(taskManager.snapshot(), journalMark()));
+    }
+
+    /*
+     * Reminder State Methods
+     */
+
+    /**
+     * Returns the last date whose Reminders have been fired by the {@link ReminderScheduler},
+     * or null if none have been fired yet.
+     */
+    @Override
+    public LocalDate loadReminderWatermark() {
+        Path path = Path.of(REMINDER_STATE_PATH);
+        if (!Files.exists(path)) return null;
+        try {
+            return LocalDate.parse(Files.readString(path, StandardCharsets.UTF_8).strip());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void saveReminderWatermark(LocalDate firedThrough) {
+        Path target = Path.of(REMINDER_STATE_PATH);
+        Path temp = Path.of(REMINDER_STATE_PATH + ".tmp");
+        try {
+            Files.writeString(temp, firedThrough.toString(), StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the whole data document to the given JsonWriter.
+     * Null fields are omitted, exactly like Gson does when serializing a JsonObject.
+     */
+    static void writeData(JsonWriter writer, List<Task> tasks, List<Category> categories,
+                          List<PriorityLevel> priorities, boolean prettyPrint) throws IOException {
+        writer.setIndent(prettyPrint ? "  " : "");
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+
+        writer.beginObject();
+
+        // Tasks (with all fields)
+        writer.name("tasks").beginArray();
+        for (Task task : tasks) {
+            writeTask(writer, task);
+        }
+        writer.endArray();
+
+        // Categories
+        writer.name("categories").beginArray();
+        for (Category category : categories) {
+            writer.beginObject().name("title").value(category.getTitle()).endObject();
+        }
+        writer.endArray();
+
+        // Priorities
+        writer.name("priorities").beginArray();
+        for (PriorityLevel priority : priorities) {
+            writer.beginObject().name("title").value(priority.getTitle()).endObject();
+        }
+        writer.endArray();
+
+        writer.endObject();
+    }
+
+    static void writeTask(JsonWriter writer, Task task) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(task.getId());
+        writer.name("title").value(task.getTitle());
+        writer.name("description").value(task.getDescription());
+        writer.name("status").value(task.getStatus() != null ? task.getStatus().getLabel() : null);
+
+        // Store category and priority as strings (their titles)
+        writer.name("category").value(task.getCategory() != null ? task.getCategory().getTitle() : null);
+        writer.name("priority").value(task.getPriority() != null ? task.getPriority().getTitle() : null);
+
+        // Store deadline
+        writer.name("deadline").value(task.getDeadline() != null ? task.getDeadline().toString() : null);
+
+        // Store reminders as an array
+        writer.name("reminders").beginArray();
+        for (Reminder reminder : task.getReminders()) {
+            writer.beginObject();
+            writer.name("id").value(reminder.getId());
+            writer.name("date").value(reminder.getDate() != null ? reminder.getDate().toString() : null);
+            writer.name("message").value(reminder.getMessage());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
     /**
      * Loads and deserializes task management data from the JSON file.
      * <p>
-     * Reconstructs the complete object hierarchy including category/priority associations
-     * and nested reminders. Loaded data is directly populated into the provided TaskManager.
+     * The file is read in a single streaming pass with a {@link JsonReader}, so Tasks, Reminders,
+     * Categories and PriorityLevels are created while reading, without building a JSON tree first.
+     * Sections may appear in any order: Tasks read before the categories/priorities sections are
+     * held back and resolved against them once the whole file has been read.
+     * <p>
+     * Afterwards, the records of the journal that belongs to this snapshot are replayed.
+     * Without any snapshot (the first start), nothing is loaded.
      *
      * @param taskManager the TaskManager instance to populate with loaded data
-     * @throws IOException            if any I/O error occurs during file reading (caught and printed internally)
-     * @throws JsonParseException     if the JSON data is malformed (handled internally by Gson)
-     * @throws JsonSyntaxException    if there's a type mismatch during deserialization (handled internally by Gson)
+     * @throws IllegalStateException if the snapshot or the journal cannot be read (e.g. an I/O error
+     *                               or malformed JSON); the TaskManager then only holds part of the data,
+     *                               and the DataManager saves nothing from then on
      */
+    @Override
     public void loadData(TaskManager taskManager) {
-        try (FileReader reader = new FileReader(FILE_PATH)) {
-            JsonObject jsonData = gson.fromJson(reader, JsonObject.class);
-            if (jsonData == null) return;
-
-            // Load categories
-            JsonArray categoryArray = jsonData.getAsJsonArray("categories");
-            if (categoryArray != null) {
-                for (JsonElement categoryElement : categoryArray) {
-                    String title = categoryElement.getAsJsonObject().get("title").getAsString();
-                    taskManager.addCategory(new Category(title));
-                }
+        BatchLoader loader = BatchLoader.direct(taskManager);
+        try {
+            loadSnapshot(loader);
+            loader.flush();
+        } catch (IOException | RuntimeException e) {
+            throw loadFailed(e);
+        }
+        snapshotLoaded(taskManager);
+        replayJournal(taskManager);
+    }
+
+    /**
+     * Loads like {@link #loadData}, but without blocking the calling thread: the file is read on a
+     * background thread, and its Tasks are added to the TaskManager in batches of
+     * {@code batchSize} through {@code mutationExecutor}, which must run tasks on the thread that
+     * mutates the TaskManager (e.g. {@code Platform::runLater}). The journal is replayed on that
+     * thread too, once every batch has been added.
+     *
+     * @param progress called on the mutation thread after each batch, with the number of Tasks loaded so far
+     * @return completed on the mutation thread, when the data (including the journal) is fully loaded;
+     *         completed exceptionally if it cannot be loaded (see {@link #loadData})
+     */
+    @Override
+    public CompletableFuture<Void> loadDataInBatches(TaskManager taskManager, Executor mutationExecutor,
+                                                     int batchSize, IntConsumer progress) {
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            BatchLoader loader = new BatchLoader(taskManager, mutationExecutor, batchSize, progress);
+            try {
+                loadSnapshot(loader);
+                loader.flush();
+                loader.awaitApplied();
+            } catch (IOException | RuntimeException e) {
+                IllegalStateException failure = loadFailed(e);
+                mutationExecutor.execute(() -> loaded.completeExceptionally(failure));
+                return;
             }
 
-            // Load priorities
-            JsonArray priorityArray = jsonData.getAsJsonArray("priorities");
-            if (priorityArray != null) {
-                for (JsonElement priorityElement : priorityArray) {
-                    String title = priorityElement.getAsJsonObject().get("title").getAsString();
-                    taskManager.addPriority(new PriorityLevel(title));
+            // The journal records refer to the loaded Tasks, so they are replayed after the last batch
+            mutationExecutor.execute(() -> {
+                try {
+                    snapshotLoaded(taskManager);
+                    replayJournal(taskManager);
+                    loaded.complete(null);
+                } catch (RuntimeException e) {
+                    loaded.completeExceptionally(e);
                 }
+            });
+        }, "data-load");
+        thread.setDaemon(true);
+        thread.start();
+        return loaded;
+    }
+
+    private void replayJournal(TaskManager taskManager) {
+        try {
+            journalValidLength = MutationJournal.replay(Path.of(JOURNAL_PATH), SnapshotStamp.of(snapshotPath()), taskManager);
+        } catch (IOException e) {
+            throw loadFailed(e);
+        }
+    }
+
+    /**
+     * Records that the load failed, so nothing is saved from then on.
+     *
+     * @return the exception to fail the load with
+     */
+    private IllegalStateException loadFailed(Exception e) {
+        loadFailure = new IllegalStateException("The stored data could not be loaded: " + e, e);
+        return loadFailure;
+    }
+
+    /**
+     * Records the loaded state, before the journal changes it, for the sharded layout's next save.
+     */
+    private void snapshotLoaded(TaskManager taskManager) {
+        if (layout != StorageLayout.SHARDED) return;
+        TaskManager.Snapshot loaded = taskManager.snapshot();
+        synchronized (snapshotLock) {
+            shards.loaded(loaded);
+        }
+    }
+
+    /**
+     * Reads the snapshot into the sink; without any snapshot (the first start), nothing is read.
+     * Any exception means the snapshot could not be read completely.
+     */
+    private void loadSnapshot(SnapshotSink sink) throws IOException {
+        Path path = Path.of(FILE_PATH);
+        // Whichever layout has been saved last (the other one is normally deleted by then)
+        Path manifest = shards.manifestPath();
+        if (Files.exists(manifest) && (!Files.exists(path)
+                || Files.getLastModifiedTime(manifest).compareTo(Files.getLastModifiedTime(path)) >= 0)) {
+            layout = StorageLayout.SHARDED;
+            synchronized (snapshotLock) {
+                shards.load(sink);
             }
+            return;
+        }
+        layout = StorageLayout.SINGLE_FILE;
+        if (!Files.exists(path)) return;
+
+        // Pick the format by the file header
+        if (BinarySnapshot.isBinarySnapshot(path)) {
+            format = SnapshotFormat.BINARY;
+            BinarySnapshot.load(path, sink);
+        } else {
+            format = SnapshotFormat.JSON;
+            readJson(path, sink);
+        }
+    }
+
+    /**
+     * Reads a JSON snapshot file into the TaskManager (see {@link #loadData}).
+     */
+    static void readJson(Path path, TaskManager taskManager) throws IOException {
+        BatchLoader loader = BatchLoader.direct(taskManager);
+        try {
+            readJson(path, loader);
+        } finally {
+            loader.flush();
+        }
+    }
+
+    /**
+     * Reads a JSON snapshot file into a SnapshotSink.
+     */
+    static void readJson(Path path, SnapshotSink sink) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            if (reader.peek() == JsonToken.END_DOCUMENT) return;
 
-            // Load tasks
-            JsonArray taskArray = jsonData.getAsJsonArray("tasks");
-            if (taskArray != null) {
-                for (JsonElement taskElement : taskArray) {
-                    JsonObject taskObject = taskElement.getAsJsonObject();
-
-                    String title = taskObject.get("title").getAsString();
-                    String description = taskObject.get("description").getAsString();
-                    String status = taskObject.get("status").getAsString();
-
-                    // Retrieve category by title
-                    String categoryTitle = taskObject.has("category") && !taskObject.get("category").isJsonNull()
-                            ? taskObject.get("category").getAsString()
-                            : null;
-                    Category category = categoryTitle != null ? taskManager.findCategoryByTitle(categoryTitle) : null;
-
-                    // Retrieve priority by title
-                    String priorityName = taskObject.has("priority") && !taskObject.get("priority").isJsonNull()
-                            ? taskObject.get("priority").getAsString()
-                            : null;
-                    PriorityLevel priority = priorityName != null ? taskManager.findPriorityByTitle(priorityName) : null;
-
-                    // Retrieve deadline
-                    LocalDate deadline = taskObject.has("deadline") && !taskObject.get("deadline").isJsonNull()
-                            ? LocalDate.parse(taskObject.get("deadline").getAsString())
-                            : null;
-
-                    // Retrieve reminders
-                    List<Reminder> reminders = new ArrayList<>();
-                    JsonArray reminderArray = taskObject.getAsJsonArray("reminders");
-                    if (reminderArray != null) {
-                        for (JsonElement reminderElement : reminderArray) {
-                            JsonObject reminderObject = reminderElement.getAsJsonObject();
-                            LocalDate reminderDate = LocalDate.parse(reminderObject.get("date").getAsString());
-                            String message = reminderObject.get("message").getAsString();
-                            reminders.add(new Reminder(reminderDate, message));
+            boolean categoriesLoaded = false;
+            boolean prioritiesLoaded = false;
+            List<PendingTask> pendingTasks = new ArrayList<>();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "categories" -> {
+                        readTitles(reader, sink::category);
+                        categoriesLoaded = true;
+                    }
+                    case "priorities" -> {
+                        readTitles(reader, sink::priority);
+                        prioritiesLoaded = true;
+                    }
+                    case "tasks" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            PendingTask pending = readTask(reader);
+                            // Resolve right away if the referenced sections have already been read
+                            if (categoriesLoaded && prioritiesLoaded) {
+                                sink.task(pending);
+                            } else {
+                                pendingTasks.add(pending);
+                            }
                         }
+                        reader.endArray();
                     }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Tasks that appeared before their categories/priorities
+            for (PendingTask pending : pendingTasks) {
+                sink.task(pending);
+            }
+        }
+    }
+
+    /**
+     * Reads an array of {@code { "title": ... }} objects, passing each title to the consumer.
+     */
+    private static void readTitles(JsonReader reader, Consumer<String> consumer) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String title = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("title")) {
+                    title = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (title != null) {
+                consumer.accept(title);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads a single task object (with its nested reminders). The category and priority are
+     * kept as titles until they can be resolved against the TaskManager.
+     */
+    static PendingTask readTask(JsonReader reader) throws IOException {
+        long id = 0;
+        String title = null;
+        String description = null;
+        TaskStatus status = null;
+        String categoryTitle = null;
+        String priorityName = null;
+        LocalDate deadline = null;
+        List<Reminder> reminders = new ArrayList<>();
 
-                    // Create and add task
-                    Task task = new Task(title, description, category, priority, deadline, status);
-                    for (Reminder reminder : reminders) {
-                        task.addReminder(reminder);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> id = reader.nextLong();
+                case "title" -> title = nextStringOrNull(reader);
+                case "description" -> description = nextStringOrNull(reader);
+                case "status" -> status = TaskStatus.fromStoredLabel(nextStringOrNull(reader));
+                case "category" -> categoryTitle = nextStringOrNull(reader);
+                case "priority" -> priorityName = nextStringOrNull(reader);
+                case "deadline" -> {
+                    String date = nextStringOrNull(reader);
+                    deadline = date != null ? LocalDate.parse(date) : null;
+                }
+                case "reminders" -> {
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reminders.add(readReminder(reader));
                     }
-                    taskManager.addTask(task);
+                    reader.endArray();
                 }
+                default -> reader.skipValue();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+        reader.endObject();
+
+        Task task = new Task(title, description, null, null, deadline, status);
+        task.setId(id);
+        for (Reminder reminder : reminders) {
+            task.addReminder(reminder);
+        }
+        return new PendingTask(task, categoryTitle, priorityName);
+    }
+
+    static Reminder readReminder(JsonReader reader) throws IOException {
+        long id = 0;
+        LocalDate date = null;
+        String message = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> id = reader.nextLong();
+                case "date" -> {
+                    String value = nextStringOrNull(reader);
+                    date = value != null ? LocalDate.parse(value) : null;
+                }
+                case "message" -> message = nextStringOrNull(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Reminder(id, date, message);
+    }
+
+    static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * A Task read from the file whose category and priority are still only known by title.
+     */
+    record PendingTask(Task task, String categoryTitle, String priorityName) {
+        Task resolve(TaskManager taskManager) {
+            // Retrieve category and priority by title
+            task.setCategory(categoryTitle != null ? taskManager.findCategoryByTitle(categoryTitle) : null);
+            task.setPriority(priorityName != null ? taskManager.findPriorityByTitle(priorityName) : null);
+            return task;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.medialab.services;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Marks overdue Tasks as Delayed at every day boundary, so a long-running instance keeps their
+ * status correct after midnight.
+ * <p>
+ * A background thread sleeps until the next midnight (in the clock's time zone). The transition
+ * itself is run through the {@code mutationExecutor} (the thread that mutates the TaskManager),
+ * by the {@link TaskQueries}: the TaskManager only walks the expired part of its deadline index,
+ * a database store also updates the stored Tasks in the background. The ids of the newly delayed
+ * Tasks are then handed to the listener in one batch, on that same thread.
+ */
+public class DeadlineScheduler {
+    private final TaskQueries queries;
+    private final Executor mutationExecutor;
+    private final Consumer<long[]> rolloverListener;
+    private final Clock clock;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * @param rolloverListener called after every day boundary with the ids of the Tasks that have just
+     *                         become Delayed (possibly none, since other date-based numbers change too)
+     */
+    public DeadlineScheduler(TaskQueries queries, Executor mutationExecutor,
+                             Consumer<long[]> rolloverListener, Clock clock) {
+        this.queries = queries;
+        this.mutationExecutor = mutationExecutor;
+        this.rolloverListener = rolloverListener;
+        this.clock = clock;
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "deadline-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void start() {
+        scheduleNextRollover(LocalDate.now(clock).plusDays(1));
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void scheduleNextRollover(LocalDate day) {
+        ZonedDateTime midnight = day.atStartOfDay(clock.getZone());
+        long delay = Math.max(0, Duration.between(clock.instant(), midnight.toInstant()).toMillis());
+        executor.schedule(() -> onMidnight(day), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void onMidnight(LocalDate day) {
+        LocalDate today = LocalDate.now(clock);
+        if (today.isBefore(day)) {
+            // Woke up early (e.g. the clock was moved back): wait for the real boundary
+            scheduleNextRollover(day);
+            return;
+        }
+
+        // The stored Tasks may still be being marked when this returns; the listener is called once they are
+        mutationExecutor.execute(() -> queries.markOverdueTasks(today)
+                .thenAccept(delayed -> mutationExecutor.execute(() -> rolloverListener.accept(delayed))));
+        scheduleNextRollover(today.plusDays(1));
+    }
+}
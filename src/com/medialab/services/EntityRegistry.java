@@ -0,0 +1,80 @@
+package com.medialab.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.medialab.models.NamedEntity;
+
+/**
+ * Owns the canonical instances of one kind of NamedEntity (Categories or Priorities): at most one
+ * instance per title, each with an id that never changes and is never reused. A rename only
+ * changes the instance's title and the title lookup, so everything referring to the instance
+ * (Tasks, hash indexes keyed by it) stays valid without being touched.
+ * <p>
+ * Not thread-safe on its own; the TaskManager guards it with its lock.
+ */
+final class EntityRegistry<T extends NamedEntity> {
+
+    @FunctionalInterface
+    interface Factory<T> {
+        T create(long id, String title);
+    }
+
+    private final Factory<T> factory;
+    private final List<T> entities = new ArrayList<>();
+    private final Map<String, T> byTitle = new HashMap<>();
+    private long nextId = 1;
+
+    EntityRegistry(Factory<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the instances in the order they were created (unmodifiable view).
+     */
+    List<T> entities() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    T find(String title) {
+        return byTitle.get(title);
+    }
+
+    /**
+     * Creates the instance for a title that has none yet.
+     */
+    T create(String title) {
+        if (byTitle.containsKey(title)) throw new IllegalArgumentException("Already registered: " + title);
+        T entity = factory.create(nextId++, title);
+        entities.add(entity);
+        byTitle.put(title, entity);
+        return entity;
+    }
+
+    /**
+     * Renames a registered instance in place.
+     *
+     * @return false if another instance already has the title (nothing is changed then)
+     */
+    boolean rename(T entity, String title) {
+        T existing = byTitle.get(title);
+        if (existing != null) return existing == entity;
+        byTitle.remove(entity.getTitle());
+        entity.setTitle(title);
+        byTitle.put(title, entity);
+        return true;
+    }
+
+    /**
+     * @return false if the instance was not registered
+     */
+    boolean remove(T entity) {
+        if (byTitle.get(entity.getTitle()) != entity) return false;
+        byTitle.remove(entity.getTitle());
+        entities.remove(entity);
+        return true;
+    }
+}
@@ -0,0 +1,1031 @@
+package com.medialab.services;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.LongStream;
+
+import com.medialab.models.Category;
+import com.medialab.models.NamedEntity;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+/**
+ * A {@link TaskStore} on an embedded, file-based H2 database ({@link #DATABASE_PATH}{@code .mv.db}),
+ * for stores whose snapshot files have grown too large to rewrite.
+ * <p>
+ * Once {@link #open opened}, the store listens to the TaskManager and writes every change as it
+ * happens, touching only the affected rows: a Task update is one UPDATE, a reminder change
+ * rewrites the Reminders of its Task, and a bulk change is one transaction. Nothing is ever saved
+ * as a whole, so there is no journal and no autosave.
+ * <p>
+ * The database is only used on one thread, the writer thread. The listener methods copy what
+ * changed (as TaskStates) on the mutation thread and queue the write, so JDBC never runs on the
+ * mutation thread (e.g. the JavaFX thread) or under the TaskManager's lock. Reads are queued
+ * behind the pending writes, so they always see every change made before them. {@link #close}
+ * waits for the queued writes and closes the database.
+ * <p>
+ * If a write fails, its transaction is rolled back and the store stops writing: the later changes
+ * would build on the one that is missing. The {@link #setFailureListener failure listener} is told,
+ * so the user can be warned that changes are no longer saved.
+ * <p>
+ * Not every Task is loaded: the TaskManager only holds the categories, the priorities and the
+ * Tasks that have Reminders (so the ReminderScheduler sees every Reminder). The store answers the
+ * {@link TaskQueries} itself: lists, searches and counts run on the database (the tasks table is
+ * indexed on status, category, priority and deadline) and return one page of detached copies, as
+ * does {@link #findTasksByIds} for plain lookups. Only {@link #getTaskById} and {@link #getTasksByIds}
+ * page Tasks into the TaskManager, when they are about to be changed (a selection with one query);
+ * paged-in Tasks stay in the TaskManager until the app is closed. {@link #markOverdueTasks} marks
+ * the stored Tasks with one UPDATE on the writer thread, and reads only their ids. The TaskManager's
+ * own list and counters therefore only see this working set; {@link #loadAll} loads everything,
+ * for the conversion back to a snapshot file.
+ * <p>
+ * Categories and priorities get their own ids in the database, and Tasks refer to them by id,
+ * so renaming one is a single-row update too. The TaskManager's instances are mapped to them by
+ * title when the store is opened.
+ * <p>
+ * Only JDBC is used here; the H2 driver just has to be on the class path at run time.
+ * {@link SnapshotConverter} copies a snapshot file into the database and back.
+ */
+public class H2TaskStore implements TaskStore, TaskQueries, TaskManagerListener {
+    private static final String DATABASE_PATH = "medialab/tasks";
+    private static final String REMINDER_WATERMARK = "reminderWatermark";
+
+    // Rows per JDBC batch when writing many Tasks at once
+    private static final int WRITE_BATCH_SIZE = 1_000;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS categories (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " title VARCHAR NOT NULL UNIQUE)",
+            "CREATE TABLE IF NOT EXISTS priorities (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " title VARCHAR NOT NULL UNIQUE)",
+            "CREATE TABLE IF NOT EXISTS tasks (id BIGINT PRIMARY KEY, title VARCHAR, description VARCHAR,"
+                    + " status VARCHAR(16), category_id BIGINT, priority_id BIGINT, deadline DATE)",
+            "CREATE INDEX IF NOT EXISTS tasks_status ON tasks (status)",
+            "CREATE INDEX IF NOT EXISTS tasks_category ON tasks (category_id)",
+            "CREATE INDEX IF NOT EXISTS tasks_priority ON tasks (priority_id)",
+            "CREATE INDEX IF NOT EXISTS tasks_deadline ON tasks (deadline)",
+            "CREATE TABLE IF NOT EXISTS reminders (task_id BIGINT NOT NULL, seq INT NOT NULL,"
+                    + " reminder_date DATE, message VARCHAR, PRIMARY KEY (task_id, seq))",
+            // Reminder ids came later (databases without them get new ids on load)
+            "ALTER TABLE reminders ADD COLUMN IF NOT EXISTS id BIGINT",
+            "CREATE TABLE IF NOT EXISTS store_state (name VARCHAR PRIMARY KEY, state VARCHAR)"
+    };
+
+    private static final String TASK_COLUMNS = "t.id, t.title, t.description, t.status, c.title, p.title, t.deadline";
+    private static final String TASK_JOINS = " FROM tasks t LEFT JOIN categories c ON c.id = t.category_id"
+            + " LEFT JOIN priorities p ON p.id = t.priority_id";
+    // The Tasks that are loaded into the TaskManager
+    private static final String WORKING_SET = " WHERE t.id IN (SELECT task_id FROM reminders)";
+    // The Tasks that markOverdueTasks makes Delayed (parameters: today, Completed, Delayed)
+    private static final String OVERDUE = " WHERE t.deadline < ? AND (t.status IS NULL OR t.status NOT IN (?, ?))";
+
+    private final Path database;
+    private final ExecutorService writer;
+    private TaskManager taskManager;
+    // Set while Tasks are being paged in, which are already stored (only touched on the mutation thread)
+    private boolean pagingIn;
+
+    // Only used on the writer thread
+    private Connection connection;
+    // The database ids of the TaskManager's categories and priorities
+    private final Map<Category, Long> categoryIds = new HashMap<>();
+    private final Map<PriorityLevel, Long> priorityIds = new HashMap<>();
+
+    // The write that failed (after which nothing more is written), or null
+    private volatile Exception failure;
+    private volatile Consumer<? super Exception> failureListener = _ -> {};
+
+    public H2TaskStore() {
+        this(Path.of(DATABASE_PATH));
+    }
+
+    /**
+     * @param database the database file, without H2's {@code .mv.db} extension
+     */
+    public H2TaskStore(Path database) {
+        this.database = database;
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "h2-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * All database access goes through the one connection, on the writer thread.
+     */
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            // The store closes the database itself, after the last change (also from shutdown hooks)
+            Connection opened = DriverManager.getConnection("jdbc:h2:file:" + database.toAbsolutePath()
+                    + ";DB_CLOSE_ON_EXIT=FALSE");
+            try (Statement statement = opened.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            opened.setAutoCommit(false);
+            connection = opened;
+        }
+        return connection;
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Query<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Queues {@code work}, to be run in one transaction on the writer thread. Nothing is written
+     * anymore once a write has failed.
+     */
+    private void write(Work work) {
+        writer.execute(() -> {
+            if (failure != null) return;
+            try {
+                transaction(work);
+            } catch (SQLException | RuntimeException e) {
+                fail(e);
+            }
+        });
+    }
+
+    /**
+     * Runs a read (or a write whose result is needed) on the writer thread, after the writes queued
+     * so far, and waits for it.
+     *
+     * @throws IllegalStateException if the database cannot be read
+     */
+    private <T> T read(Query<T> query) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Connection connection = connection();
+                    try {
+                        T result = query.run(connection);
+                        connection.commit();
+                        return result;
+                    } catch (SQLException | RuntimeException e) {
+                        connection.rollback();
+                        throw e;
+                    }
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, writer).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Reading the database failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Runs {@code work} in one transaction, rolling it back if it fails (writer thread only).
+     */
+    private void transaction(Work work) throws SQLException {
+        Connection connection = connection();
+        try {
+            work.run(connection);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops writing and reports the failure (writer thread only).
+     */
+    private void fail(Exception e) {
+        e.printStackTrace();
+        if (failure != null) return;
+        failure = e;
+        failureListener.accept(e);
+    }
+
+    /**
+     * Called on the writer thread if a write fails; from then on, changes are no longer saved.
+     * (A failed load fails the load itself.)
+     */
+    @Override
+    public void setFailureListener(Consumer<? super Exception> listener) {
+        failureListener = listener;
+    }
+
+    /*
+     * Loading
+     */
+
+    /**
+     * Loads the working set into the TaskManager (see the class comment), in the order of the Task
+     * ids, and makes new Tasks get ids above the stored ones. The Tasks are added on the writer
+     * thread, while the calling thread waits.
+     *
+     * @throws IllegalStateException if the database cannot be read; nothing is written from then on
+     */
+    @Override
+    public void loadData(TaskManager taskManager) {
+        load(taskManager, false);
+    }
+
+    /**
+     * Loads every stored Task into the TaskManager, like a snapshot file would be loaded.
+     */
+    void loadAll(TaskManager taskManager) {
+        load(taskManager, true);
+    }
+
+    private void load(TaskManager taskManager, boolean everything) {
+        try {
+            CompletableFuture.runAsync(() -> {
+                BatchLoader loader = BatchLoader.direct(taskManager);
+                long maxTaskId = load(loader, everything);
+                taskManager.reserveTaskIds(maxTaskId);
+            }, writer).join();
+        } catch (CompletionException e) {
+            throw (IllegalStateException) e.getCause();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> loadDataInBatches(TaskManager taskManager, Executor mutationExecutor,
+                                                     int batchSize, IntConsumer progress) {
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        writer.execute(() -> {
+            BatchLoader loader = new BatchLoader(taskManager, mutationExecutor, batchSize, progress);
+            long maxTaskId;
+            try {
+                maxTaskId = load(loader, false);
+            } catch (IllegalStateException e) {
+                mutationExecutor.execute(() -> loaded.completeExceptionally(e));
+                return;
+            }
+            mutationExecutor.execute(() -> {
+                taskManager.reserveTaskIds(maxTaskId);
+                loaded.complete(null);
+            });
+        });
+        return loaded;
+    }
+
+    /**
+     * Reads the working set, or everything, into the loader and waits until it has been added
+     * (writer thread only). If that fails, nothing is written from then on, so that nothing is
+     * written over a database that was only partly loaded.
+     *
+     * @return the largest stored Task id
+     * @throws IllegalStateException if the database cannot be read
+     */
+    private long load(BatchLoader loader, boolean everything) {
+        try {
+            long maxTaskId = read(connection(), loader, everything);
+            connection().commit();
+            loader.flush();
+            loader.awaitApplied();
+            return maxTaskId;
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+            failure = e;
+            throw new IllegalStateException("The database could not be loaded: " + e, e);
+        }
+    }
+
+    /**
+     * Reads the working set, or everything, into the sink: the tasks and their reminders are read
+     * side by side, both ordered by Task id.
+     *
+     * @return the largest stored Task id
+     */
+    private static long read(Connection connection, SnapshotSink sink, boolean everything) throws SQLException {
+        try (Statement categories = connection.createStatement();
+             Statement tasks = connection.createStatement();
+             Statement reminders = connection.createStatement()) {
+            try (ResultSet rows = categories.executeQuery("SELECT title FROM categories ORDER BY id")) {
+                while (rows.next()) sink.category(rows.getString(1));
+            }
+            try (ResultSet rows = categories.executeQuery("SELECT title FROM priorities ORDER BY id")) {
+                while (rows.next()) sink.priority(rows.getString(1));
+            }
+
+            try (ResultSet taskRows = tasks.executeQuery("SELECT " + TASK_COLUMNS + TASK_JOINS
+                    + (everything ? "" : WORKING_SET) + " ORDER BY t.id");
+                 ResultSet reminderRows = reminders.executeQuery(
+                         "SELECT task_id, reminder_date, message, id FROM reminders ORDER BY task_id, seq")) {
+                boolean moreReminders = reminderRows.next();
+                while (taskRows.next()) {
+                    DataManager.PendingTask task = readTask(taskRows);
+                    long id = task.task().getId();
+                    // Skip the reminders of Tasks that no longer exist
+                    while (moreReminders && reminderRows.getLong(1) < id) moreReminders = reminderRows.next();
+                    while (moreReminders && reminderRows.getLong(1) == id) {
+                        task.task().addReminder(readReminder(reminderRows));
+                        moreReminders = reminderRows.next();
+                    }
+                    sink.task(task);
+                }
+            }
+            try (ResultSet rows = categories.executeQuery("SELECT COALESCE(MAX(id), 0) FROM tasks")) {
+                rows.next();
+                return rows.getLong(1);
+            }
+        }
+    }
+
+    private static DataManager.PendingTask readTask(ResultSet row) throws SQLException {
+        Date deadline = row.getDate(7);
+        Task task = new Task(row.getString(2), row.getString(3), null, null,
+                deadline != null ? deadline.toLocalDate() : null, statusOf(row.getString(4)));
+        task.setId(row.getLong(1));
+        return new DataManager.PendingTask(task, row.getString(5), row.getString(6));
+    }
+
+    private static Reminder readReminder(ResultSet row) throws SQLException {
+        Date date = row.getDate(2);
+        return new Reminder(row.getLong(4), date != null ? date.toLocalDate() : null, row.getString(3));
+    }
+
+    private static TaskStatus statusOf(String name) {
+        // Stored as the constant's name, which fromStoredLabel accepts too
+        return TaskStatus.fromStoredLabel(name);
+    }
+
+    /*
+     * Lifecycle
+     */
+
+    /**
+     * Maps the TaskManager's categories and priorities to their rows (adding the missing ones) and
+     * starts writing every change. Must be called after {@link #loadData}: changes made to the
+     * TaskManager before are not written. The save interval is not used.
+     */
+    @Override
+    public void open(TaskManager taskManager, Duration saveInterval, Executor mutationExecutor) {
+        this.taskManager = taskManager;
+        Map<Category, String> categories = titles(taskManager.getCategories());
+        Map<PriorityLevel, String> priorities = titles(taskManager.getPriorities());
+        write(connection -> {
+            mapEntities(connection, "categories", categories, categoryIds);
+            mapEntities(connection, "priorities", priorities, priorityIds);
+        });
+        taskManager.addListener(this);
+    }
+
+    /**
+     * The titles of the entities, read on the mutation thread for the writer thread.
+     */
+    private static <T extends NamedEntity> Map<T, String> titles(List<T> entities) {
+        Map<T, String> titles = new LinkedHashMap<>();
+        for (T entity : entities) titles.put(entity, entity.getTitle());
+        return titles;
+    }
+
+    private static <T extends NamedEntity> void mapEntities(
+            Connection connection, String table, Map<T, String> entities, Map<T, Long> ids) throws SQLException {
+        Map<String, Long> idsByTitle = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id, title FROM " + table)) {
+            while (rows.next()) idsByTitle.put(rows.getString(2), rows.getLong(1));
+        }
+        ids.clear();
+        for (Map.Entry<T, String> entity : entities.entrySet()) {
+            Long id = idsByTitle.get(entity.getValue());
+            ids.put(entity.getKey(), id != null ? id : insertEntity(connection, table, entity.getValue()));
+        }
+    }
+
+    private static long insertEntity(Connection connection, String table, String title) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " (title) VALUES (?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            insert.setString(1, title);
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Stops listening, waits at most {@code timeout} for the queued writes and closes the database.
+     *
+     * @return true if every change was written (none failed, and all were done within the timeout)
+     */
+    @Override
+    public boolean close(Duration timeout) {
+        if (taskManager != null) {
+            taskManager.removeListener(this);
+            taskManager = null;
+        }
+        writer.execute(() -> {
+            if (connection == null) return;
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                connection = null;
+            }
+        });
+        writer.shutdown();
+        try {
+            return writer.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS) && failure == null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*
+     * TaskManagerListener Methods (called on the mutation thread)
+     *
+     * Each one copies what changed and queues the write.
+     */
+
+    @Override
+    public void taskAdded(Task task) {
+        tasksAdded(List.of(task));
+    }
+
+    @Override
+    public void tasksAdded(List<Task> tasks) {
+        if (pagingIn) return;
+        List<TaskState> states = states(tasks);
+        write(connection -> insertTasks(connection, states));
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        tasksUpdated(List.of(task));
+    }
+
+    @Override
+    public void tasksUpdated(List<Task> tasks) {
+        List<TaskState> states = states(tasks);
+        write(connection -> updateTasks(connection, states));
+    }
+
+    @Override
+    public void tasksUpdated(List<Task> tasks, List<RemovedReminder> removedReminders) {
+        LinkedHashSet<Task> remindersChanged = new LinkedHashSet<>();
+        for (RemovedReminder removed : removedReminders) remindersChanged.add(removed.task());
+        List<TaskState> states = states(tasks);
+        List<TaskState> reminderStates = states(remindersChanged);
+        write(connection -> {
+            updateTasks(connection, states);
+            replaceReminders(connection, reminderStates);
+        });
+    }
+
+    @Override
+    public void taskDeleted(Task task) {
+        tasksDeleted(List.of(task));
+    }
+
+    @Override
+    public void tasksDeleted(List<Task> tasks) {
+        List<Long> ids = ids(tasks);
+        write(connection -> {
+            deleteWhere(connection, "DELETE FROM reminders WHERE task_id = ?", ids);
+            deleteWhere(connection, "DELETE FROM tasks WHERE id = ?", ids);
+        });
+    }
+
+    @Override
+    public void categoryAdded(Category category) {
+        String title = category.getTitle();
+        write(connection -> categoryIds.put(category, insertEntity(connection, "categories", title)));
+    }
+
+    @Override
+    public void categoryUpdated(String oldTitle, Category updatedCategory) {
+        String title = updatedCategory.getTitle();
+        write(connection -> renameEntity(connection, "categories", categoryIds.get(updatedCategory), title));
+    }
+
+    @Override
+    public void categoryDeleted(Category category, Collection<Task> deletedTasks) {
+        write(connection -> {
+            Long id = categoryIds.remove(category);
+            if (id == null) return;
+            deleteWhere(connection, "DELETE FROM reminders WHERE task_id IN (SELECT id FROM tasks WHERE category_id = ?)", id);
+            deleteWhere(connection, "DELETE FROM tasks WHERE category_id = ?", id);
+            deleteWhere(connection, "DELETE FROM categories WHERE id = ?", id);
+        });
+    }
+
+    @Override
+    public void priorityAdded(PriorityLevel priority) {
+        String title = priority.getTitle();
+        write(connection -> priorityIds.put(priority, insertEntity(connection, "priorities", title)));
+    }
+
+    @Override
+    public void priorityUpdated(String oldTitle, PriorityLevel updatedPriority) {
+        String title = updatedPriority.getTitle();
+        write(connection -> renameEntity(connection, "priorities", priorityIds.get(updatedPriority), title));
+    }
+
+    @Override
+    public void priorityDeleted(PriorityLevel priority, Collection<Task> reassignedTasks) {
+        List<TaskState> states = states(reassignedTasks);
+        PriorityLevel defaultPriority = taskManager.findPriorityByTitle("Default");
+        write(connection -> {
+            updateTasks(connection, states);
+            Long id = priorityIds.remove(priority);
+            if (id == null) return;
+            // The Tasks that are not in the TaskManager get the default priority too
+            try (PreparedStatement reassign = connection.prepareStatement(
+                    "UPDATE tasks SET priority_id = ? WHERE priority_id = ?")) {
+                setId(reassign, 1, defaultPriority != null ? priorityIds.get(defaultPriority) : null);
+                reassign.setLong(2, id);
+                reassign.executeUpdate();
+            }
+            deleteWhere(connection, "DELETE FROM priorities WHERE id = ?", id);
+        });
+    }
+
+    @Override
+    public void reminderAdded(Task task, Reminder reminder) {
+        remindersChanged(List.of(task));
+    }
+
+    @Override
+    public void reminderUpdated(Task task, Reminder reminder) {
+        remindersChanged(List.of(task));
+    }
+
+    @Override
+    public void reminderDeleted(Task task, Reminder reminder, int index) {
+        remindersChanged(List.of(task));
+    }
+
+    @Override
+    public void remindersAdded(List<Reminder> reminders) {
+        // Each Task once, however many of its Reminders were added
+        LinkedHashSet<Task> tasks = new LinkedHashSet<>();
+        for (Reminder reminder : reminders) tasks.add(reminder.getTask());
+        remindersChanged(tasks);
+    }
+
+    private void remindersChanged(Collection<Task> tasks) {
+        List<TaskState> states = states(tasks);
+        write(connection -> replaceReminders(connection, states));
+    }
+
+    private static List<TaskState> states(Collection<Task> tasks) {
+        List<TaskState> states = new ArrayList<>(tasks.size());
+        for (Task task : tasks) states.add(TaskState.of(task));
+        return states;
+    }
+
+    private static List<Long> ids(Collection<Task> tasks) {
+        List<Long> ids = new ArrayList<>(tasks.size());
+        for (Task task : tasks) ids.add(task.getId());
+        return ids;
+    }
+
+    /*
+     * Row Writers (writer thread only)
+     */
+
+    private void insertTasks(Connection connection, Collection<TaskState> tasks) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO tasks (title, description, status,"
+                + " category_id, priority_id, deadline, id) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            writeBatches(insert, tasks);
+        }
+        insertReminders(connection, tasks);
+    }
+
+    private void updateTasks(Connection connection, Collection<TaskState> tasks) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement("UPDATE tasks SET title = ?, description = ?,"
+                + " status = ?, category_id = ?, priority_id = ?, deadline = ? WHERE id = ?")) {
+            writeBatches(update, tasks);
+        }
+    }
+
+    /**
+     * Runs the INSERT or UPDATE once per Task, in batches; both take the columns in the same order.
+     */
+    private void writeBatches(PreparedStatement statement, Collection<TaskState> tasks) throws SQLException {
+        int batched = 0;
+        for (TaskState task : tasks) {
+            statement.setString(1, task.title());
+            statement.setString(2, task.description());
+            statement.setString(3, task.status() != null ? task.status().name() : null);
+            setId(statement, 4, task.category() != null ? categoryIds.get(task.category()) : null);
+            setId(statement, 5, task.priority() != null ? priorityIds.get(task.priority()) : null);
+            statement.setDate(6, task.deadline() != null ? Date.valueOf(task.deadline()) : null);
+            statement.setLong(7, task.id());
+            statement.addBatch();
+            if (++batched % WRITE_BATCH_SIZE == 0) statement.executeBatch();
+        }
+        if (batched % WRITE_BATCH_SIZE != 0) statement.executeBatch();
+    }
+
+    private static void setId(PreparedStatement statement, int index, Long id) throws SQLException {
+        if (id != null) {
+            statement.setLong(index, id);
+        } else {
+            statement.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private static void replaceReminders(Connection connection, Collection<TaskState> tasks) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM reminders WHERE task_id = ?")) {
+            for (TaskState task : tasks) {
+                delete.setLong(1, task.id());
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        }
+        insertReminders(connection, tasks);
+    }
+
+    private static void insertReminders(Connection connection, Collection<TaskState> tasks) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO reminders (task_id, seq, reminder_date, message, id) VALUES (?, ?, ?, ?, ?)")) {
+            int batched = 0;
+            for (TaskState task : tasks) {
+                List<TaskState.ReminderState> reminders = task.reminders();
+                for (int seq = 0; seq < reminders.size(); seq++) {
+                    TaskState.ReminderState reminder = reminders.get(seq);
+                    insert.setLong(1, task.id());
+                    insert.setInt(2, seq);
+                    insert.setDate(3, reminder.date() != null ? Date.valueOf(reminder.date()) : null);
+                    insert.setString(4, reminder.message());
+                    insert.setLong(5, reminder.id());
+                    insert.addBatch();
+                    if (++batched % WRITE_BATCH_SIZE == 0) insert.executeBatch();
+                }
+            }
+            if (batched % WRITE_BATCH_SIZE != 0) insert.executeBatch();
+        }
+    }
+
+    private static void renameEntity(Connection connection, String table, Long id, String title) throws SQLException {
+        if (id == null) return;
+        try (PreparedStatement update = connection.prepareStatement("UPDATE " + table + " SET title = ? WHERE id = ?")) {
+            update.setString(1, title);
+            update.setLong(2, id);
+            update.executeUpdate();
+        }
+    }
+
+    private static void deleteWhere(Connection connection, String sql, long id) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(sql)) {
+            delete.setLong(1, id);
+            delete.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs the DELETE once per Task id, in batches.
+     */
+    private static void deleteWhere(Connection connection, String sql, Collection<Long> ids) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(sql)) {
+            int batched = 0;
+            for (long id : ids) {
+                delete.setLong(1, id);
+                delete.addBatch();
+                if (++batched % WRITE_BATCH_SIZE == 0) delete.executeBatch();
+            }
+            if (batched % WRITE_BATCH_SIZE != 0) delete.executeBatch();
+        }
+    }
+
+    /**
+     * Replaces the whole database with the TaskManager's data (see {@link SnapshotConverter}),
+     * and waits for it. Must not be called while the store is open.
+     *
+     * @throws IllegalStateException if the data cannot be written
+     */
+    void replaceAll(TaskManager taskManager) {
+        Map<Category, String> categories = titles(taskManager.getCategories());
+        Map<PriorityLevel, String> priorities = titles(taskManager.getPriorities());
+        List<TaskState> tasks = states(taskManager.getTasks());
+        read(connection -> {
+            transaction(writing -> {
+                try (Statement statement = writing.createStatement()) {
+                    for (String table : new String[] {"reminders", "tasks", "categories", "priorities"}) {
+                        statement.executeUpdate("DELETE FROM " + table);
+                    }
+                }
+                mapEntities(writing, "categories", categories, categoryIds);
+                mapEntities(writing, "priorities", priorities, priorityIds);
+                insertTasks(writing, tasks);
+            });
+            return null;
+        });
+    }
+
+    /*
+     * Queries (TaskQueries, answered by the database)
+     */
+
+    /**
+     * Returns what answers the queries over all Tasks: this store, which must have been opened
+     * with {@code taskManager}.
+     */
+    @Override
+    public TaskQueries queries(TaskManager taskManager) {
+        return this;
+    }
+
+    /**
+     * Runs the search as SQL: the text is matched with LIKE, and ranked with a CASE on the title.
+     */
+    @Override
+    public Page findTasks(String text, Category category, PriorityLevel priority, TaskStatus status,
+                          int offset, int limit) {
+        String needle = TaskSearchIndex.normalize(text);
+        return read(connection -> {
+            List<Object> parameters = new ArrayList<>();
+            String where = where(needle, category, priority, status, parameters);
+            if (where == null) return new Page(List.of(), 0);
+            int total = count(connection, where, parameters);
+
+            String order = " ORDER BY t.id";
+            List<Object> pageParameters = new ArrayList<>(parameters);
+            if (!needle.isEmpty()) {
+                // Title prefix matches first, then other title matches, then description-only matches
+                order = " ORDER BY CASE WHEN LOWER(t.title) LIKE ? ESCAPE '\\' THEN 0"
+                        + " WHEN LOWER(t.title) LIKE ? ESCAPE '\\' THEN 1 ELSE 2 END, t.id";
+                pageParameters.add(like(needle) + "%");
+                pageParameters.add("%" + like(needle) + "%");
+            }
+            pageParameters.add(limit);
+            pageParameters.add(offset);
+            return new Page(readTasks(connection, where + order + " LIMIT ? OFFSET ?", pageParameters), total);
+        });
+    }
+
+    @Override
+    public int countTasks(Category category, PriorityLevel priority, TaskStatus status) {
+        return read(connection -> {
+            List<Object> parameters = new ArrayList<>();
+            String where = where("", category, priority, status, parameters);
+            return where != null ? count(connection, where, parameters) : 0;
+        });
+    }
+
+    @Override
+    public int getDueSoonCount(LocalDate today) {
+        return read(connection -> count(connection, " WHERE t.deadline >= ? AND t.deadline < ?",
+                List.of(Date.valueOf(today), Date.valueOf(today.plusDays(7)))));
+    }
+
+    /**
+     * Reads the Tasks from the database, with one query, without paging them in.
+     */
+    @Override
+    public List<Task> findTasksByIds(long... ids) {
+        if (ids.length == 0) return List.of();
+        List<Task> stored = read(connection -> readTasksByIds(connection, ids));
+        return inOrder(ids, stored);
+    }
+
+    /**
+     * Returns the Task from the TaskManager, or pages it in from the database.
+     */
+    @Override
+    public Task getTaskById(long id) {
+        List<Task> found = getTasksByIds(id);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Returns the Tasks the TaskManager has, and pages in the others with one query.
+     */
+    @Override
+    public List<Task> getTasksByIds(long... ids) {
+        List<Task> found = new ArrayList<>(taskManager.getTasksByIds(ids));
+        long[] missing = Arrays.stream(ids).filter(id -> taskManager.getTaskById(id) == null).distinct().toArray();
+        if (missing.length > 0) {
+            List<Task> stored = read(connection -> readTasksByIds(connection, missing));
+            if (!stored.isEmpty()) {
+                // Already stored, so tasksAdded does not write them again
+                pagingIn = true;
+                try {
+                    taskManager.addTasks(stored);
+                } finally {
+                    pagingIn = false;
+                }
+                found.addAll(stored);
+            }
+        }
+        return inOrder(ids, found);
+    }
+
+    private List<Task> readTasksByIds(Connection connection, long[] ids) throws SQLException {
+        Object[] boxed = Arrays.stream(ids).boxed().toArray();
+        return readTasks(connection, " WHERE t.id = ANY(?)", List.of(connection.createArrayOf("BIGINT", boxed)));
+    }
+
+    /**
+     * Sorts the Tasks found for the ids into the order of the ids.
+     */
+    private static List<Task> inOrder(long[] ids, List<Task> found) {
+        Map<Long, Task> byId = new HashMap<>();
+        for (Task task : found) byId.put(task.getId(), task);
+        List<Task> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Task task = byId.get(id);
+            if (task != null) ordered.add(task);
+        }
+        return ordered;
+    }
+
+    /**
+     * Marks the Tasks in the TaskManager right away, then queues one UPDATE for the others, which
+     * reads only their ids. Like a write, the UPDATE is skipped once the store has failed, and
+     * a failing one stops the store.
+     */
+    @Override
+    public CompletableFuture<long[]> markOverdueTasks(LocalDate today) {
+        long[] resident = taskManager.markOverdue(today);
+
+        List<Object> parameters = List.of(Date.valueOf(today), TaskStatus.COMPLETED.name(), TaskStatus.DELAYED.name());
+        return CompletableFuture.supplyAsync(() -> {
+            // A failed store writes nothing anymore
+            if (failure != null) return resident;
+            List<Long> stored = new ArrayList<>();
+            try {
+                transaction(connection -> {
+                    // The Tasks of the TaskManager are Delayed in the database by now, so these are the others
+                    try (PreparedStatement query = prepare(connection, "SELECT t.id FROM tasks t" + OVERDUE, parameters);
+                         ResultSet rows = query.executeQuery()) {
+                        while (rows.next()) stored.add(rows.getLong(1));
+                    }
+                    List<Object> updateParameters = new ArrayList<>();
+                    updateParameters.add(TaskStatus.DELAYED.name());
+                    updateParameters.addAll(parameters);
+                    try (PreparedStatement update = prepare(connection, "UPDATE tasks t SET status = ?" + OVERDUE, updateParameters)) {
+                        update.executeUpdate();
+                    }
+                });
+            } catch (SQLException | RuntimeException e) {
+                fail(e);
+                return resident;
+            }
+            return LongStream.concat(Arrays.stream(resident), stored.stream().mapToLong(Long::longValue)).toArray();
+        }, writer);
+    }
+
+    /**
+     * Builds the WHERE clause of a query (writer thread only).
+     *
+     * @return the clause (empty without filters), or null if nothing can match
+     */
+    private String where(String needle, Category category, PriorityLevel priority, TaskStatus status,
+                         List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+        if (!needle.isEmpty()) {
+            conditions.add("(LOWER(t.title) LIKE ? ESCAPE '\\' OR LOWER(t.description) LIKE ? ESCAPE '\\')");
+            parameters.add("%" + like(needle) + "%");
+            parameters.add("%" + like(needle) + "%");
+        }
+        if (category != null) {
+            Long id = categoryIds.get(category);
+            if (id == null) return null;
+            conditions.add("t.category_id = ?");
+            parameters.add(id);
+        }
+        if (priority != null) {
+            Long id = priorityIds.get(priority);
+            if (id == null) return null;
+            conditions.add("t.priority_id = ?");
+            parameters.add(id);
+        }
+        if (status != null) {
+            conditions.add("t.status = ?");
+            parameters.add(status.name());
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Escapes the LIKE wildcards in the text.
+     */
+    private static String like(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static int count(Connection connection, String where, List<Object> parameters) throws SQLException {
+        try (PreparedStatement query = prepare(connection, "SELECT COUNT(*) FROM tasks t" + where, parameters);
+             ResultSet rows = query.executeQuery()) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    /**
+     * Reads the Tasks that the rest of the query selects, with their Reminders, as detached copies
+     * with the TaskManager's categories and priorities (writer thread only).
+     */
+    private List<Task> readTasks(Connection connection, String rest, List<Object> parameters) throws SQLException {
+        Map<Long, Category> categories = byId(categoryIds);
+        Map<Long, PriorityLevel> priorities = byId(priorityIds);
+        Map<Long, Task> tasks = new LinkedHashMap<>();
+        try (PreparedStatement query = prepare(connection, "SELECT t.id, t.title, t.description, t.status,"
+                + " t.category_id, t.priority_id, t.deadline FROM tasks t" + rest, parameters);
+             ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                Date deadline = rows.getDate(7);
+                Task task = new Task(rows.getString(2), rows.getString(3), categories.get(rows.getLong(5)),
+                        priorities.get(rows.getLong(6)), deadline != null ? deadline.toLocalDate() : null,
+                        statusOf(rows.getString(4)));
+                task.setId(rows.getLong(1));
+                tasks.put(task.getId(), task);
+            }
+        }
+        if (tasks.isEmpty()) return List.of();
+
+        try (PreparedStatement query = connection.prepareStatement("SELECT task_id, reminder_date, message, id"
+                + " FROM reminders WHERE task_id = ANY(?) ORDER BY task_id, seq")) {
+            query.setArray(1, connection.createArrayOf("BIGINT", tasks.keySet().toArray()));
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) tasks.get(rows.getLong(1)).addReminder(readReminder(rows));
+            }
+        }
+        return new ArrayList<>(tasks.values());
+    }
+
+    private static <T> Map<Long, T> byId(Map<T, Long> ids) {
+        Map<Long, T> byId = new HashMap<>();
+        ids.forEach((entity, id) -> byId.put(id, entity));
+        return byId;
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+    /*
+     * Reminder State
+     */
+
+    @Override
+    public LocalDate loadReminderWatermark() {
+        try {
+            return read(connection -> {
+                try (PreparedStatement query = connection.prepareStatement("SELECT state FROM store_state WHERE name = ?")) {
+                    query.setString(1, REMINDER_WATERMARK);
+                    try (ResultSet rows = query.executeQuery()) {
+                        return rows.next() ? LocalDate.parse(rows.getString(1)) : null;
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void saveReminderWatermark(LocalDate firedThrough) {
+        write(connection -> {
+            try (PreparedStatement merge = connection.prepareStatement(
+                    "MERGE INTO store_state (name, state) KEY (name) VALUES (?, ?)")) {
+                merge.setString(1, REMINDER_WATERMARK);
+                merge.setString(2, firedThrough.toString());
+                merge.executeUpdate();
+            }
+        });
+    }
+}
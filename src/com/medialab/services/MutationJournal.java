@@ -0,0 +1,725 @@
+package com.medialab.services;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.medialab.models.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only write-ahead journal of TaskManager mutations, kept next to the JSON snapshot.
+ * <p>
+ * Every mutation is appended as one compact JSON record per line. Records are buffered and
+ * committed in groups by a background thread (one write and one fsync per group), at most
+ * {@link #COMMIT_INTERVAL_MS} after they were made.
+ * <p>
+ * Header lines identify the snapshot the records apply to (size and modification time of
+ * {@code data.json}) and the byte offset from which its records start. The first line is always
+ * a header. When a new snapshot is written, a header for it is appended <em>before</em> the
+ * snapshot is moved into place, pointing at the first record the snapshot does not contain; the
+ * journal is then rewritten to start at that record. Replay uses the last header that matches the
+ * current snapshot, so a crash at any point of a save neither loses nor double-applies records.
+ * <p>
+ * Tasks are identified by their persistent id and Reminders by their position in their Task;
+ * added Reminders are recorded with their id, so replaying the records in order reproduces the
+ * same ids and positions. A bulk change of the
+ * TaskManager (e.g. addTasks()) is written as a single record holding the whole batch.
+ */
+public class MutationJournal implements TaskManagerListener {
+    private static final long COMMIT_INTERVAL_MS = 100;
+    private static final byte[] HEADER_PREFIX = "{\"snapshotSize\"".getBytes(StandardCharsets.UTF_8);
+
+    private final Path path;
+    private final TaskManager taskManager;
+    private final int compactionThreshold;
+    private final Runnable compaction;
+
+    private final Object commitLock = new Object();
+
+    // Guarded by this
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended; // bytes in the file plus pending bytes
+    private int recordCount;
+    private boolean compacting;
+
+    private FileChannel channel;
+    private ScheduledExecutorService committer;
+
+    /**
+     * @param path                the journal file
+     * @param taskManager         the TaskManager whose mutations are recorded
+     * @param compactionThreshold number of records after which {@code compaction} is run
+     * @param compaction          starts folding the journal back into the snapshot; it is run on the
+     *                            mutation thread, so it must hand the writing over to another thread
+     *                            and call {@link #compactionFinished} once it is done
+     */
+    MutationJournal(Path path, TaskManager taskManager, int compactionThreshold, Runnable compaction) {
+        this.path = path;
+        this.taskManager = taskManager;
+        this.compactionThreshold = compactionThreshold;
+        this.compaction = compaction;
+    }
+
+    /**
+     * Opens the journal for appending. A journal that is stale, or whose last record was torn by
+     * a crash, is cut back to its valid part first.
+     *
+     * @param snapshot the snapshot the journal applies to
+     * @param validLength length of the valid part of the existing journal, as returned by {@link #replay}
+     */
+    void open(SnapshotStamp snapshot, long validLength) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (validLength > 0) {
+            channel.truncate(validLength);
+            channel.position(validLength);
+        } else {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(header(snapshot, -1)));
+            channel.force(false);
+        }
+        appended = channel.position();
+
+        committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commitQuietly, COMMIT_INTERVAL_MS, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        taskManager.addListener(this);
+    }
+
+    /**
+     * Writes and fsyncs every record appended so far.
+     */
+    public void commit() throws IOException {
+        synchronized (commitLock) {
+            ByteArrayOutputStream group;
+            synchronized (this) {
+                if (pending.size() == 0) return;
+                group = pending;
+                pending = new ByteArrayOutputStream();
+            }
+            writeFully(ByteBuffer.wrap(group.toByteArray()));
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Returns the position right after the last record appended so far. A snapshot taken now
+     * contains every record before the mark; must be called on the thread that mutates the
+     * TaskManager, together with taking the snapshot.
+     */
+    synchronized long mark() {
+        return appended;
+    }
+
+    /**
+     * Step 1 of writing a snapshot, before it is moved into place: appends a header telling
+     * replay that, for the new snapshot, records start at {@code mark}.
+     */
+    void snapshotWritten(SnapshotStamp snapshot, long mark) throws IOException {
+        synchronized (commitLock) {
+            commit();
+            byte[] header = header(snapshot, mark);
+            writeFully(ByteBuffer.wrap(header));
+            channel.force(false);
+            synchronized (this) {
+                appended += header.length;
+            }
+        }
+    }
+
+    /**
+     * Step 2 of writing a snapshot, after it has been moved into place: rewrites the journal so
+     * it only holds the records the snapshot does not contain.
+     */
+    void snapshotInstalled(SnapshotStamp snapshot, long mark) throws IOException {
+        synchronized (commitLock) {
+            commit();
+
+            // Records made since the mark (skipping header lines)
+            ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+            rewritten.write(header(snapshot, -1));
+            int tailRecords = 0;
+            ByteBuffer tail = ByteBuffer.allocate((int) (channel.size() - mark));
+            while (tail.hasRemaining() && channel.read(tail, mark + tail.position()) >= 0) {
+                // keep reading until the whole tail is in the buffer
+            }
+            byte[] bytes = tail.array();
+            int lineStart = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != '\n') continue;
+                if (!isHeader(bytes, lineStart)) {
+                    rewritten.write(bytes, lineStart, i + 1 - lineStart);
+                    tailRecords++;
+                }
+                lineStart = i + 1;
+            }
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, rewritten.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+            channel.close();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+
+            synchronized (this) {
+                appended = channel.size() + pending.size();
+                recordCount = tailRecords;
+            }
+        }
+    }
+
+    /**
+     * Commits the remaining records and closes the journal.
+     */
+    public void close() throws IOException {
+        taskManager.removeListener(this);
+        committer.shutdown();
+        commit();
+        channel.close();
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @param from offset of the first record of this snapshot, or -1 for "right after this line"
+     */
+    private static byte[] header(SnapshotStamp snapshot, long from) throws IOException {
+        return toRecord(writer -> {
+            writer.name("snapshotSize").value(snapshot.size());
+            writer.name("snapshotModified").value(snapshot.lastModified());
+            if (from >= 0) {
+                writer.name("from").value(from);
+            }
+        }).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isHeader(byte[] bytes, int lineStart) {
+        return startsWith(bytes, lineStart, HEADER_PREFIX);
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+        if (bytes.length - offset < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /*
+     * Recording (TaskManagerListener)
+     */
+
+    @Override
+    public void taskAdded(Task task) {
+        append("addTask", writer -> {
+            writer.name("task");
+            DataManager.writeTask(writer, task);
+        });
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        append("updateTask", writer -> {
+            writer.name("task");
+            DataManager.writeTask(writer, task);
+        });
+    }
+
+    @Override
+    public void taskDeleted(Task task) {
+        append("deleteTask", writer -> writer.name("id").value(task.getId()));
+    }
+
+    @Override
+    public void tasksAdded(List<Task> tasks) {
+        append("addTasks", writer -> {
+            writer.name("tasks").beginArray();
+            for (Task task : tasks) {
+                DataManager.writeTask(writer, task);
+            }
+            writer.endArray();
+        });
+    }
+
+    @Override
+    public void tasksUpdated(List<Task> tasks) {
+        append("updateTasks", writer -> {
+            writer.name("tasks").beginArray();
+            for (Task task : tasks) {
+                DataManager.writeTask(writer, task);
+            }
+            writer.endArray();
+        });
+    }
+
+    @Override
+    public void tasksUpdated(List<Task> tasks, List<RemovedReminder> removedReminders) {
+        append("updateTasks", writer -> {
+            writer.name("tasks").beginArray();
+            for (Task task : tasks) {
+                DataManager.writeTask(writer, task);
+            }
+            writer.endArray();
+            writer.name("deletedReminders").beginArray();
+            for (RemovedReminder removed : removedReminders) {
+                writer.beginObject();
+                writer.name("id").value(removed.task().getId());
+                writer.name("reminderId").value(removed.reminder().getId());
+                writer.endObject();
+            }
+            writer.endArray();
+        });
+    }
+
+    @Override
+    public void tasksDeleted(List<Task> tasks) {
+        append("deleteTasks", writer -> {
+            writer.name("ids").beginArray();
+            for (Task task : tasks) {
+                writer.value(task.getId());
+            }
+            writer.endArray();
+        });
+    }
+
+    @Override
+    public void categoryAdded(Category category) {
+        append("addCategory", writer -> writer.name("title").value(category.getTitle()));
+    }
+
+    @Override
+    public void categoryUpdated(String oldTitle, Category updatedCategory) {
+        append("updateCategory", writer -> {
+            writer.name("oldTitle").value(oldTitle);
+            writer.name("title").value(updatedCategory.getTitle());
+        });
+    }
+
+    @Override
+    public void categoryDeleted(Category category, Collection<Task> deletedTasks) {
+        append("deleteCategory", writer -> writer.name("title").value(category.getTitle()));
+    }
+
+    @Override
+    public void priorityAdded(PriorityLevel priority) {
+        append("addPriority", writer -> writer.name("title").value(priority.getTitle()));
+    }
+
+    @Override
+    public void priorityUpdated(String oldTitle, PriorityLevel updatedPriority) {
+        append("updatePriority", writer -> {
+            writer.name("oldTitle").value(oldTitle);
+            writer.name("title").value(updatedPriority.getTitle());
+        });
+    }
+
+    @Override
+    public void priorityDeleted(PriorityLevel priority, Collection<Task> reassignedTasks) {
+        append("deletePriority", writer -> writer.name("title").value(priority.getTitle()));
+    }
+
+    @Override
+    public void reminderAdded(Task task, Reminder reminder) {
+        append("addReminder", writer -> {
+            writer.name("id").value(task.getId());
+            writer.name("reminderId").value(reminder.getId());
+            writeReminderFields(writer, reminder);
+        });
+    }
+
+    @Override
+    public void reminderUpdated(Task task, Reminder reminder) {
+        int reminderIndex = indexOfInstance(task.getReminders(), reminder);
+        append("updateReminder", writer -> {
+            writer.name("id").value(task.getId());
+            writer.name("reminder").value(reminderIndex);
+            writeReminderFields(writer, reminder);
+        });
+    }
+
+    @Override
+    public void reminderDeleted(Task task, Reminder reminder, int reminderIndex) {
+        append("deleteReminder", writer -> {
+            writer.name("id").value(task.getId());
+            writer.name("reminder").value(reminderIndex);
+        });
+    }
+
+    @Override
+    public void remindersAdded(List<Reminder> reminders) {
+        append("addReminders", writer -> {
+            writer.name("reminders").beginArray();
+            for (Reminder reminder : reminders) {
+                writer.beginObject();
+                writer.name("id").value(reminder.getTask().getId());
+                writer.name("reminderId").value(reminder.getId());
+                writeReminderFields(writer, reminder);
+                writer.endObject();
+            }
+            writer.endArray();
+        });
+    }
+
+    private static void writeReminderFields(JsonWriter writer, Reminder reminder) throws IOException {
+        writer.name("date").value(reminder.getDate() != null ? reminder.getDate().toString() : null);
+        writer.name("message").value(reminder.getMessage());
+    }
+
+    private static int indexOfInstance(List<Reminder> reminders, Reminder reminder) {
+        for (int i = 0; i < reminders.size(); i++) {
+            if (reminders.get(i) == reminder) return i;
+        }
+        return -1;
+    }
+
+    private void append(String op, RecordBody body) {
+        String record;
+        try {
+            record = toRecord(writer -> {
+                writer.name("op").value(op);
+                body.write(writer);
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        boolean compactNow;
+        synchronized (this) {
+            pending.write(bytes, 0, bytes.length);
+            appended += bytes.length;
+            recordCount++;
+            compactNow = recordCount >= compactionThreshold && !compacting;
+            if (compactNow) compacting = true;
+        }
+
+        // Fold the journal back into the snapshot once it has grown large enough (in the background)
+        if (compactNow) {
+            compaction.run();
+        }
+    }
+
+    /**
+     * Called after a snapshot has been written (or has failed to), so that the next record may
+     * start another compaction if the journal is still too long.
+     */
+    synchronized void compactionFinished() {
+        compacting = false;
+    }
+
+    private static String toRecord(RecordBody body) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.setSerializeNulls(false);
+        writer.beginObject();
+        body.write(writer);
+        writer.endObject();
+        writer.flush();
+        return out.append('\n').toString();
+    }
+
+    @FunctionalInterface
+    private interface RecordBody {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /*
+     * Replay
+     */
+
+    /**
+     * Applies the records of the journal at {@code path} that the given snapshot does not contain
+     * yet. Replay stops at the first incomplete or unreadable record (e.g. one torn by a crash).
+     *
+     * @return the length in bytes of the valid part of the journal, or 0 if there is nothing to
+     *         continue from (no journal, or a stale one)
+     */
+    static long replay(Path path, SnapshotStamp snapshot, TaskManager taskManager) throws IOException {
+        if (!Files.exists(path)) return 0;
+
+        byte[] bytes = Files.readAllBytes(path);
+
+        // Find where the records of this snapshot start (the last matching header wins)
+        long start = -1;
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+            if (isHeader(bytes, lineStart)) {
+                try (JsonReader reader = new JsonReader(new StringReader(line(bytes, lineStart, i)))) {
+                    Header header = readHeader(reader);
+                    if (snapshot.equals(header.snapshot())) {
+                        start = header.from() >= 0 ? header.from() : i + 1;
+                    }
+                } catch (IOException | JsonParseException | IllegalStateException e) {
+                    break;
+                }
+            } else if (lineStart == 0) {
+                break;
+            }
+            lineStart = i + 1;
+        }
+        if (start < 0) return 0;
+
+        lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+
+            if (lineStart >= start && !isHeader(bytes, lineStart)) {
+                try (JsonReader reader = new JsonReader(new StringReader(line(bytes, lineStart, i)))) {
+                    applyRecord(reader, taskManager);
+                } catch (IOException | JsonParseException | IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+                    System.err.println("Journal replay stopped at an unreadable record: " + e.getMessage());
+                    break;
+                }
+            }
+            lineStart = i + 1;
+        }
+        return lineStart;
+    }
+
+    private static String line(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private record Header(SnapshotStamp snapshot, long from) {}
+
+    private static Header readHeader(JsonReader reader) throws IOException {
+        long size = -1;
+        long lastModified = -1;
+        long from = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "snapshotSize" -> size = reader.nextLong();
+                case "snapshotModified" -> lastModified = reader.nextLong();
+                case "from" -> from = reader.nextLong();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Header(new SnapshotStamp(size, lastModified), from);
+    }
+
+    private static void applyRecord(JsonReader reader, TaskManager taskManager) throws IOException {
+        String op = null;
+        long id = 0;
+        int index = -1;
+        int reminderIndex = -1;
+        long reminderId = 0;
+        String title = null;
+        String oldTitle = null;
+        LocalDate date = null;
+        String message = null;
+        DataManager.PendingTask task = null;
+        List<DataManager.PendingTask> tasks = new ArrayList<>();
+        List<ReminderRecord> reminders = new ArrayList<>();
+        List<ReminderRecord> deletedReminders = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "op" -> op = reader.nextString();
+                case "id" -> id = reader.nextLong();
+                case "index" -> index = reader.nextInt();
+                case "reminder" -> reminderIndex = reader.nextInt();
+                case "reminderId" -> reminderId = reader.nextLong();
+                case "title" -> title = DataManager.nextStringOrNull(reader);
+                case "oldTitle" -> oldTitle = DataManager.nextStringOrNull(reader);
+                case "date" -> {
+                    String value = DataManager.nextStringOrNull(reader);
+                    date = value != null ? LocalDate.parse(value) : null;
+                }
+                case "message" -> message = DataManager.nextStringOrNull(reader);
+                case "task" -> task = DataManager.readTask(reader);
+                case "tasks" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) tasks.add(DataManager.readTask(reader));
+                    reader.endArray();
+                }
+                case "reminders" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) reminders.add(readReminderRecord(reader));
+                    reader.endArray();
+                }
+                case "deletedReminders" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) deletedReminders.add(readReminderRecord(reader));
+                    reader.endArray();
+                }
+                case "ids" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) ids.add(reader.nextLong());
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (op == null) throw new JsonParseException("Journal record without op");
+
+        switch (op) {
+            case "addTask" -> taskManager.addTask(task.resolve(taskManager));
+            case "updateTask" -> {
+                Task updated = task.resolve(taskManager);
+                Task target = target(taskManager, updated.getId(), index);
+                taskManager.updateTask(target, updated.getTitle(), updated.getDescription(), updated.getCategory(),
+                        updated.getPriority(), updated.getDeadline(), updated.getStatus());
+                // Reminders are journaled separately, but keep them if the record carries them
+                for (Reminder reminder : target.getReminders().toArray(Reminder[]::new)) {
+                    taskManager.deleteReminder(target, reminder);
+                }
+                for (Reminder reminder : updated.getReminders().toArray(Reminder[]::new)) {
+                    updated.removeReminder(reminder);
+                    taskManager.addReminder(target, reminder);
+                }
+            }
+            case "deleteTask" -> taskManager.deleteTask(target(taskManager, id, index));
+            case "deleteTasks" -> {
+                List<Task> targets = new ArrayList<>(ids.size());
+                for (long taskId : ids) targets.add(target(taskManager, taskId, -1));
+                taskManager.deleteTasks(targets);
+            }
+            case "addTasks" -> {
+                List<Task> added = new ArrayList<>(tasks.size());
+                for (DataManager.PendingTask pending : tasks) added.add(pending.resolve(taskManager));
+                taskManager.addTasks(added);
+            }
+            case "updateTasks" -> {
+                // A bulk edit that completed Tasks also deleted their Reminders
+                for (ReminderRecord deleted : deletedReminders) {
+                    Task target = target(taskManager, deleted.id(), -1);
+                    for (Reminder reminder : target.getReminders()) {
+                        if (reminder.getId() == deleted.reminderId()) {
+                            taskManager.deleteReminder(target, reminder);
+                            break;
+                        }
+                    }
+                }
+                for (DataManager.PendingTask pending : tasks) {
+                    Task updated = pending.resolve(taskManager);
+                    Task target = target(taskManager, updated.getId(), -1);
+                    taskManager.updateTask(target, updated.getTitle(), updated.getDescription(), updated.getCategory(),
+                            updated.getPriority(), updated.getDeadline(), updated.getStatus());
+                }
+            }
+            case "addCategory" -> taskManager.addCategory(title);
+            case "updateCategory" -> {
+                Category category = taskManager.findCategoryByTitle(oldTitle);
+                if (category != null) taskManager.renameCategory(category, title);
+            }
+            case "deleteCategory" -> {
+                Category category = taskManager.findCategoryByTitle(title);
+                if (category != null) taskManager.deleteCategory(category);
+            }
+            case "addPriority" -> taskManager.addPriority(title);
+            case "updatePriority" -> {
+                PriorityLevel priority = taskManager.findPriorityByTitle(oldTitle);
+                if (priority != null) taskManager.renamePriority(priority, title);
+            }
+            case "deletePriority" -> {
+                PriorityLevel priority = taskManager.findPriorityByTitle(title);
+                if (priority != null) taskManager.deletePriority(priority);
+            }
+            case "addReminder" -> taskManager.addReminder(target(taskManager, id, index), new Reminder(reminderId, date, message));
+            case "updateReminder" -> {
+                Task target = target(taskManager, id, index);
+                taskManager.updateReminder(target, target.getReminders().get(reminderIndex), date, message);
+            }
+            case "deleteReminder" -> {
+                Task target = target(taskManager, id, index);
+                taskManager.deleteReminder(target, target.getReminders().get(reminderIndex));
+            }
+            case "addReminders" -> {
+                for (ReminderRecord reminder : reminders) {
+                    taskManager.addReminder(target(taskManager, reminder.id(), -1),
+                            new Reminder(reminder.reminderId(), reminder.date(), reminder.message()));
+                }
+            }
+            default -> throw new JsonParseException("Unknown journal op: " + op);
+        }
+    }
+
+    /**
+     * One Reminder of an addReminders record (or of the deleted Reminders of an updateTasks record,
+     * which only have the ids).
+     */
+    private record ReminderRecord(long id, long reminderId, LocalDate date, String message) {}
+
+    private static ReminderRecord readReminderRecord(JsonReader reader) throws IOException {
+        long id = 0;
+        long reminderId = 0;
+        LocalDate date = null;
+        String message = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> id = reader.nextLong();
+                case "reminderId" -> reminderId = reader.nextLong();
+                case "date" -> {
+                    String value = DataManager.nextStringOrNull(reader);
+                    date = value != null ? LocalDate.parse(value) : null;
+                }
+                case "message" -> message = DataManager.nextStringOrNull(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new ReminderRecord(id, reminderId, date, message);
+    }
+
+    /**
+     * Finds the Task a record refers to: by its id, or by its list position in records written
+     * before Tasks had ids.
+     */
+    private static Task target(TaskManager taskManager, long id, int index) {
+        Task target = id > 0 ? taskManager.getTaskById(id) : index >= 0 ? taskManager.getTasks().get(index) : null;
+        if (target == null) throw new JsonParseException("Journal record refers to an unknown task: " + (id > 0 ? id : index));
+        return target;
+    }
+
+    /**
+     * Identifies a snapshot file by its size and modification time.
+     */
+    record SnapshotStamp(long size, long lastModified) {
+        static SnapshotStamp of(Path snapshot) throws IOException {
+            if (!Files.exists(snapshot)) return new SnapshotStamp(-1, -1);
+            return new SnapshotStamp(Files.size(snapshot), Files.getLastModifiedTime(snapshot).toMillis());
+        }
+    }
+}
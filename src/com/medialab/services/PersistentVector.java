@@ -0,0 +1,185 @@
+package com.medialab.services;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable vector with structural sharing, in the style of Clojure's persistent vector.
+ * <p>
+ * The elements live in a tree of 32-element arrays (leaves) under 32-way internal nodes, plus a
+ * "tail" array holding the last (up to 32) elements. {@link #with} and {@link #plus} never change
+ * an existing vector: they return a new one that copies only the path from the root to the changed
+ * leaf (about log32(n) arrays, i.e. at most 4 for a million elements) and shares everything else.
+ * Holding on to a vector is therefore an O(1) snapshot, whatever happens to its successors.
+ * <p>
+ * Memory: the leaves are always full, so an element costs about 4.6 bytes (with compressed oops,
+ * internal nodes included), against 4 to 6 bytes for an ArrayList depending on its spare capacity.
+ */
+final class PersistentVector<E> implements Iterable<E> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift; // Level of the root node (in bits of the index)
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns a vector with the element at {@code index} replaced.
+     */
+    PersistentVector<E> with(int index, E element) {
+        Objects.checkIndex(index, size);
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, replace(shift, root, index, element), tail);
+    }
+
+    /**
+     * Returns a vector with the element appended.
+     */
+    PersistentVector<E> plus(E element) {
+        // Room left in the tail
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+
+        // The full tail becomes a leaf of the tree; the root grows a level when it is full itself
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] {element});
+    }
+
+    /**
+     * Iterates in index order, one leaf lookup per 32 elements.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int index;
+            private Object[] leaf;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size) throw new NoSuchElementException();
+                if ((index & MASK) == 0 || leaf == null) {
+                    leaf = leafFor(index);
+                }
+                return (E) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    /**
+     * Calls {@code action} with every index whose element differs (by identity) from the one at
+     * the same index of {@code older}, treating indexes past the end of a vector as null.
+     * Leaves that both vectors share are skipped without looking at their elements, so comparing
+     * two versions of a vector only costs one lookup per 32 elements, plus the changes.
+     */
+    void forEachChange(PersistentVector<E> older, IntConsumer action) {
+        int end = Math.max(size, older.size);
+        for (int start = 0; start < end; start += WIDTH) {
+            Object[] leaf = start < size ? leafFor(start) : null;
+            Object[] olderLeaf = start < older.size ? older.leafFor(start) : null;
+            if (leaf == olderLeaf) continue;
+
+            for (int index = start; index < Math.min(start + WIDTH, end); index++) {
+                Object element = index < size ? leaf[index & MASK] : null;
+                Object olderElement = index < older.size ? olderLeaf[index & MASK] : null;
+                if (element != olderElement) {
+                    action.accept(index);
+                }
+            }
+        }
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset()) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] replace(int level, Object[] node, int index, Object element) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            int child = (index >>> level) & MASK;
+            copy[child] = replace(level - BITS, (Object[]) node[child], index, element);
+        }
+        return copy;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        // The leaf goes where the last element of the tree (before the tail) will be
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        if (level == BITS) {
+            copy[child] = leaf;
+        } else {
+            Object[] existing = (Object[]) parent[child];
+            copy[child] = existing != null ? pushTail(level - BITS, existing, leaf) : newPath(level - BITS, leaf);
+        }
+        return copy;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) return leaf;
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+}
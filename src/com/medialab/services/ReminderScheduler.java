@@ -0,0 +1,236 @@
+package com.medialab.services;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.medialab.models.Category;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+
+/**
+ * Fires Reminders when their date arrives.
+ * <p>
+ * Pending Reminders are kept in date buckets (a hash map from date to the Reminders of that day),
+ * plus a priority queue of the bucket dates. Adding or cancelling a Reminder is a hash operation;
+ * the queue is only touched when a new date appears, and there are few distinct dates.
+ * <p>
+ * A background thread checks the clock every {@link #CHECK_INTERVAL}; when the date has moved
+ * past the "fired through" watermark (also after the clock was moved, or after the app was
+ * closed for days), every bucket up to today is fired as one batch through the listener. Reminders
+ * whose date is on or before the watermark when the scheduler starts have already been fired in a
+ * previous run and are not scheduled again.
+ * <p>
+ * The scheduler follows the TaskManager through its listener events, so it stays in sync with
+ * every Reminder (and Task) change.
+ */
+public class ReminderScheduler implements TaskManagerListener {
+    private static final Duration CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * A Reminder that has become due, together with its Task.
+     */
+    public record FiredReminder(Task task, Reminder reminder) {}
+
+    private final TaskManager taskManager;
+    private final Clock clock;
+    private final Executor listenerExecutor;
+    private final Consumer<List<FiredReminder>> listener;
+    private final Consumer<LocalDate> watermarkListener;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Guarded by this
+    private final Map<LocalDate, Set<Reminder>> buckets = new HashMap<>();
+    private final PriorityQueue<LocalDate> bucketDates = new PriorityQueue<>();
+    private final Map<Reminder, LocalDate> scheduledDates = new IdentityHashMap<>();
+    private LocalDate firedThrough;
+
+    /**
+     * @param firedThrough      the last date whose Reminders have already been fired (null if none)
+     * @param listenerExecutor  runs the listeners (e.g. {@code Platform::runLater})
+     * @param listener          receives every batch of due Reminders
+     * @param watermarkListener receives the new watermark after each batch, to persist it
+     */
+    public ReminderScheduler(TaskManager taskManager, Clock clock, LocalDate firedThrough, Executor listenerExecutor,
+                             Consumer<List<FiredReminder>> listener, Consumer<LocalDate> watermarkListener) {
+        this.taskManager = taskManager;
+        this.clock = clock;
+        this.firedThrough = firedThrough;
+        this.listenerExecutor = listenerExecutor;
+        this.listener = listener;
+        this.watermarkListener = watermarkListener;
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "reminder-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules every Reminder of the TaskManager and starts firing them. Reminders missed while the
+     * app was closed are fired right away, in one batch. Must be called on the thread that mutates
+     * the TaskManager.
+     */
+    public void start() {
+        synchronized (this) {
+            for (Task task : taskManager.getTasks()) {
+                for (Reminder reminder : task.getReminders()) {
+                    if (firedThrough == null || reminder.getDate().isAfter(firedThrough)) {
+                        schedule(reminder);
+                    }
+                }
+            }
+        }
+        taskManager.addListener(this);
+
+        long interval = CHECK_INTERVAL.toMillis();
+        executor.scheduleWithFixedDelay(this::fireDue, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        taskManager.removeListener(this);
+        executor.shutdownNow();
+    }
+
+    public synchronized int getPendingCount() {
+        return scheduledDates.size();
+    }
+
+    /*
+     * Runs on the scheduler thread (package-private for the tests, which move the clock).
+     */
+    void fireDue() {
+        LocalDate today = LocalDate.now(clock);
+        List<FiredReminder> due = new ArrayList<>();
+
+        synchronized (this) {
+            LocalDate date;
+            while ((date = bucketDates.peek()) != null && !date.isAfter(today)) {
+                bucketDates.poll();
+                Set<Reminder> bucket = buckets.remove(date);
+                if (bucket == null) continue; // stale queue entry of an emptied bucket
+
+                for (Reminder reminder : bucket) {
+                    scheduledDates.remove(reminder);
+                    due.add(new FiredReminder(reminder.getTask(), reminder));
+                }
+            }
+
+            // A clock moved backwards must not fire the same days again
+            if (firedThrough != null && !today.isAfter(firedThrough) && due.isEmpty()) return;
+            if (firedThrough == null || today.isAfter(firedThrough)) {
+                firedThrough = today;
+            }
+        }
+
+        LocalDate watermark = today;
+        listenerExecutor.execute(() -> {
+            if (!due.isEmpty()) {
+                listener.accept(Collections.unmodifiableList(due));
+            }
+            watermarkListener.accept(watermark);
+        });
+    }
+
+    private void schedule(Reminder reminder) {
+        LocalDate date = reminder.getDate();
+        if (date == null) return;
+
+        Set<Reminder> bucket = buckets.get(date);
+        if (bucket == null) {
+            bucket = Collections.newSetFromMap(new IdentityHashMap<>());
+            buckets.put(date, bucket);
+            bucketDates.add(date);
+        }
+        bucket.add(reminder);
+        scheduledDates.put(reminder, date);
+    }
+
+    private void cancel(Reminder reminder) {
+        LocalDate date = scheduledDates.remove(reminder);
+        if (date == null) return;
+
+        Set<Reminder> bucket = buckets.get(date);
+        if (bucket != null) {
+            bucket.remove(reminder);
+            if (bucket.isEmpty()) {
+                buckets.remove(date); // its queue entry is skipped when polled
+            }
+        }
+    }
+
+    private void cancelAll(Collection<Task> tasks) {
+        for (Task task : tasks) {
+            for (Reminder reminder : task.getReminders()) {
+                cancel(reminder);
+            }
+        }
+    }
+
+    /*
+     * Keeping in sync with the TaskManager (TaskManagerListener)
+     */
+
+    @Override
+    public synchronized void taskAdded(Task task) {
+        for (Reminder reminder : task.getReminders()) {
+            schedule(reminder);
+        }
+    }
+
+    @Override
+    public synchronized void taskDeleted(Task task) {
+        cancelAll(List.of(task));
+    }
+
+    @Override
+    public synchronized void tasksUpdated(List<Task> tasks, List<RemovedReminder> removedReminders) {
+        for (RemovedReminder removed : removedReminders) {
+            cancel(removed.reminder());
+        }
+    }
+
+    @Override
+    public synchronized void tasksDeleted(List<Task> tasks) {
+        cancelAll(tasks);
+    }
+
+    @Override
+    public synchronized void categoryDeleted(Category category, Collection<Task> deletedTasks) {
+        cancelAll(deletedTasks);
+    }
+
+    @Override
+    public synchronized void reminderAdded(Task task, Reminder reminder) {
+        schedule(reminder);
+    }
+
+    @Override
+    public synchronized void reminderUpdated(Task task, Reminder reminder) {
+        // A Reminder that has already fired only fires again if it was moved to a later day
+        boolean pending = scheduledDates.containsKey(reminder);
+        cancel(reminder);
+        if (pending || firedThrough == null || reminder.getDate().isAfter(firedThrough)) {
+            schedule(reminder);
+        }
+    }
+
+    @Override
+    public synchronized void reminderDeleted(Task task, Reminder reminder, int index) {
+        cancel(reminder);
+    }
+}
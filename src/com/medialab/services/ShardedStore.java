@@ -0,0 +1,420 @@
+package com.medialab.services;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.medialab.models.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The sharded on-disk layout of the snapshot (see {@link DataManager.StorageLayout#SHARDED}):
+ * a directory with a small manifest (categories, priorities and the list of shard files) and the
+ * Tasks split into shard files by id range, {@link #TASKS_PER_SHARD} ids per shard. The shards
+ * read in order give the Tasks in id order; that is their list order, except for Tasks that were
+ * loaded with ids out of order (new Tasks always get the largest id), which come back sorted by id.
+ * <p>
+ * A save only rewrites the shards whose Tasks changed since the last save. They are found by
+ * comparing the Snapshot with the one the files were last written from, which skips all the task
+ * states the two still share (see {@link PersistentVector#forEachChange}). A changed shard gets a
+ * new file name (with the manifest's generation) and is written through a temporary file and a
+ * rename. The manifest is written last and is the only commit point: the files it no longer
+ * refers to are deleted after it has been moved into place, so a crash at any point leaves the
+ * previous manifest with all of its shards intact. Only files that have been read (those of the
+ * previous manifest) or that no manifest has committed yet (a newer generation) are deleted.
+ * After a failed {@link #load}, nothing is written or deleted: the manifest on disk is the only
+ * complete copy of the data then.
+ * <p>
+ * Shard files hold the same {@code "tasks"} array as {@code data.json}; loading parses them in
+ * parallel. Not thread-safe: the DataManager only uses it while holding its snapshot lock.
+ */
+final class ShardedStore {
+    static final int TASKS_PER_SHARD = 4096;
+    private static final int MANIFEST_VERSION = 1;
+    private static final String MANIFEST_NAME = "manifest.json";
+    private static final Pattern SHARD_FILE = Pattern.compile("tasks-\\d+-(\\d+)\\.json(\\.tmp)?");
+
+    private final Path directory;
+
+    // What the current manifest says: its generation, shard size and the file of each shard
+    private long generation;
+    private int tasksPerShard = TASKS_PER_SHARD;
+    private NavigableMap<Long, String> shardFiles = new TreeMap<>();
+
+    // Set while loading, and left set if the load failed
+    private boolean loadFailed;
+
+    // The Snapshot the shard files hold, or null if unknown (then every shard is rewritten)
+    private TaskManager.Snapshot written;
+
+    // Prepared by the last prepare(), until installed()
+    private NavigableMap<Long, String> preparedFiles;
+    private TaskManager.Snapshot preparedSnapshot;
+
+    ShardedStore(Path directory) {
+        this.directory = directory;
+    }
+
+    Path manifestPath() {
+        return directory.resolve(MANIFEST_NAME);
+    }
+
+    /*
+     * Saving
+     */
+
+    /**
+     * Writes the shards of the Snapshot that changed since the last save (all of them the first
+     * time) and a new manifest next to the current one.
+     *
+     * @return the new manifest, to be moved to {@link #manifestPath()} before calling {@link #installed()}
+     */
+    Path prepare(TaskManager.Snapshot snapshot) throws IOException {
+        Set<Long> changed = written != null && written.sameSource(snapshot) ? changedShards(written, snapshot) : null;
+
+        NavigableMap<Long, String> files = new TreeMap<>();
+        NavigableMap<Long, List<Task>> toWrite = new TreeMap<>();
+        for (TaskState state : snapshot.taskStates()) {
+            if (state == null) continue;
+            long shard = shardOf(state.id());
+            String file = shardFiles.get(shard);
+            if (file != null && changed != null && !changed.contains(shard)) {
+                files.put(shard, file);
+            } else {
+                toWrite.computeIfAbsent(shard, _ -> new ArrayList<>()).add(snapshot.copyOf(state));
+            }
+        }
+        return prepare(toWrite, files, snapshot.categories(), snapshot.priorities(), snapshot);
+    }
+
+    /**
+     * Like {@link #prepare(TaskManager.Snapshot)} for plain lists, which cannot be compared with
+     * the last save: every shard is rewritten.
+     */
+    Path prepare(List<Task> tasks, List<Category> categories, List<PriorityLevel> priorities) throws IOException {
+        NavigableMap<Long, List<Task>> toWrite = new TreeMap<>();
+        for (Task task : tasks) {
+            toWrite.computeIfAbsent(shardOf(task.getId()), _ -> new ArrayList<>()).add(task);
+        }
+        return prepare(toWrite, new TreeMap<>(), categories, priorities, null);
+    }
+
+    private Path prepare(NavigableMap<Long, List<Task>> toWrite, NavigableMap<Long, String> files,
+                         List<Category> categories, List<PriorityLevel> priorities,
+                         TaskManager.Snapshot snapshot) throws IOException {
+        if (loadFailed) throw new IOException("The shard manifest failed to load, not writing over it");
+        Files.createDirectories(directory);
+        long newGeneration = generation + 1;
+
+        for (Map.Entry<Long, List<Task>> shard : toWrite.entrySet()) {
+            String name = "tasks-" + shard.getKey() + "-" + newGeneration + ".json";
+            Path path = directory.resolve(name);
+            Path temp = directory.resolve(name + ".tmp");
+            writeJson(temp, writer -> {
+                writer.name("tasks").beginArray();
+                for (Task task : shard.getValue()) {
+                    DataManager.writeTask(writer, task);
+                }
+                writer.endArray();
+            });
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            files.put(shard.getKey(), name);
+        }
+
+        Path manifest = directory.resolve(MANIFEST_NAME + ".tmp");
+        writeJson(manifest, writer -> {
+            writer.name("version").value(MANIFEST_VERSION);
+            writer.name("generation").value(newGeneration);
+            writer.name("tasksPerShard").value(tasksPerShard);
+            writer.name("categories").beginArray();
+            for (Category category : categories) {
+                writer.beginObject().name("title").value(category.getTitle()).endObject();
+            }
+            writer.endArray();
+            writer.name("priorities").beginArray();
+            for (PriorityLevel priority : priorities) {
+                writer.beginObject().name("title").value(priority.getTitle()).endObject();
+            }
+            writer.endArray();
+            writer.name("shards").beginArray();
+            for (Map.Entry<Long, String> shard : files.entrySet()) {
+                writer.beginObject().name("shard").value(shard.getKey()).name("file").value(shard.getValue()).endObject();
+            }
+            writer.endArray();
+        });
+
+        preparedFiles = files;
+        preparedSnapshot = snapshot;
+        return manifest;
+    }
+
+    /**
+     * Called once the prepared manifest has been moved into place: makes it the current one, and
+     * deletes the shard files of the previous manifest it no longer refers to, along with those
+     * left over by an interrupted save (of a generation no manifest has committed).
+     */
+    void installed() {
+        Set<String> previous = Set.copyOf(shardFiles.values());
+        long committed = generation;
+        generation++;
+        shardFiles = preparedFiles;
+        written = preparedSnapshot;
+        preparedFiles = null;
+        preparedSnapshot = null;
+        Set<String> keep = Set.copyOf(shardFiles.values());
+        deleteShardFiles(name -> !keep.contains(name)
+                && (previous.contains(name) || name.endsWith(".tmp") || generationOf(name) > committed));
+    }
+
+    /**
+     * Deletes the manifest and every shard file, e.g. once a single-file snapshot has replaced them.
+     * Does nothing if the manifest failed to load.
+     */
+    void delete() {
+        if (loadFailed) {
+            System.err.println("Not deleting the shards: their manifest failed to load");
+            return;
+        }
+        try {
+            Files.deleteIfExists(manifestPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        deleteShardFiles(_ -> true);
+        generation = 0;
+        shardFiles = new TreeMap<>();
+        written = null;
+    }
+
+    private void deleteShardFiles(Predicate<String> delete) {
+        if (!Files.isDirectory(directory)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (SHARD_FILE.matcher(name).matches() && delete.test(name)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long generationOf(String shardFile) {
+        Matcher matcher = SHARD_FILE.matcher(shardFile);
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Returns the shards holding a Task whose state differs between the two Snapshots.
+     */
+    private Set<Long> changedShards(TaskManager.Snapshot before, TaskManager.Snapshot after) {
+        Set<Long> changed = new HashSet<>();
+        PersistentVector<TaskState> oldStates = before.taskStates();
+        PersistentVector<TaskState> newStates = after.taskStates();
+        newStates.forEachChange(oldStates, slot -> {
+            if (slot < oldStates.size() && oldStates.get(slot) != null) changed.add(shardOf(oldStates.get(slot).id()));
+            if (slot < newStates.size() && newStates.get(slot) != null) changed.add(shardOf(newStates.get(slot).id()));
+        });
+
+        // A rename changes the title written with every Task of the Category/priority, but not their states
+        Set<Category> renamedCategories = renamed(before.categories(), after.categories());
+        Set<PriorityLevel> renamedPriorities = renamed(before.priorities(), after.priorities());
+        if (!renamedCategories.isEmpty() || !renamedPriorities.isEmpty()) {
+            for (TaskState state : newStates) {
+                if (state != null && (renamedCategories.contains(state.category()) || renamedPriorities.contains(state.priority()))) {
+                    changed.add(shardOf(state.id()));
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static <T extends NamedEntity> Set<T> renamed(List<T> before, List<T> after) {
+        Map<T, String> oldTitles = new HashMap<>();
+        before.forEach(entity -> oldTitles.put(entity, entity.getTitle()));
+        Set<T> renamed = new HashSet<>();
+        for (T entity : after) {
+            String oldTitle = oldTitles.get(entity);
+            if (oldTitle != null && !oldTitle.equals(entity.getTitle())) {
+                renamed.add(entity);
+            }
+        }
+        return renamed;
+    }
+
+    private long shardOf(long taskId) {
+        return taskId / tasksPerShard;
+    }
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes (and fsyncs) a compact JSON object.
+     */
+    private static void writeJson(Path path, JsonBody body) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8)));
+            writer.setHtmlSafe(true);
+            writer.setSerializeNulls(false);
+            writer.beginObject();
+            body.write(writer);
+            writer.endObject();
+            writer.flush();
+            channel.force(true);
+        }
+    }
+
+    /*
+     * Loading
+     */
+
+    /**
+     * Reads the manifest and its shards into the sink. The shards are parsed in parallel, but
+     * handed to the sink in order, each as soon as it and the ones before it are ready.
+     * If it throws, the store refuses to save or delete anything from then on.
+     */
+    void load(SnapshotSink sink) throws IOException {
+        loadFailed = true;
+        long manifestGeneration = 0;
+        int manifestTasksPerShard = TASKS_PER_SHARD;
+        NavigableMap<Long, String> files = new TreeMap<>();
+        List<String> categories = new ArrayList<>();
+        List<String> priorities = new ArrayList<>();
+
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(manifestPath(), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "version" -> {
+                        int version = reader.nextInt();
+                        if (version != MANIFEST_VERSION) throw new JsonParseException("Unsupported manifest version " + version);
+                    }
+                    case "generation" -> manifestGeneration = reader.nextLong();
+                    case "tasksPerShard" -> manifestTasksPerShard = reader.nextInt();
+                    case "categories" -> readTitles(reader, categories);
+                    case "priorities" -> readTitles(reader, priorities);
+                    case "shards" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            long shard = -1;
+                            String file = null;
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                switch (reader.nextName()) {
+                                    case "shard" -> shard = reader.nextLong();
+                                    case "file" -> file = reader.nextString();
+                                    default -> reader.skipValue();
+                                }
+                            }
+                            reader.endObject();
+                            if (file == null) throw new JsonParseException("Manifest shard without file");
+                            files.put(shard, file);
+                        }
+                        reader.endArray();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        // Categories and priorities first: the Tasks refer to them
+        categories.forEach(sink::category);
+        priorities.forEach(sink::priority);
+
+        List<CompletableFuture<List<DataManager.PendingTask>>> shards = new ArrayList<>(files.size());
+        for (String file : files.values()) {
+            Path path = directory.resolve(file);
+            shards.add(CompletableFuture.supplyAsync(() -> readShard(path)));
+        }
+        for (CompletableFuture<List<DataManager.PendingTask>> shard : shards) {
+            try {
+                shard.join().forEach(sink::task);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+                throw e;
+            }
+        }
+
+        generation = manifestGeneration;
+        tasksPerShard = manifestTasksPerShard;
+        shardFiles = files;
+        written = null;
+        loadFailed = false;
+    }
+
+    /**
+     * Records that the TaskManager holds exactly what was loaded, as of this Snapshot,
+     * so the next save only rewrites the shards that differ from it.
+     */
+    void loaded(TaskManager.Snapshot snapshot) {
+        written = snapshot;
+    }
+
+    private static void readTitles(JsonReader reader, List<String> titles) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("title")) {
+                    titles.add(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private static List<DataManager.PendingTask> readShard(Path path) {
+        List<DataManager.PendingTask> tasks = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("tasks")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        tasks.add(DataManager.readTask(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tasks;
+    }
+}
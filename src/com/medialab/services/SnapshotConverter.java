@@ -0,0 +1,128 @@
+package com.medialab.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Converts snapshot files between the JSON and the binary format, between a snapshot file
+ * and the sharded layout (a directory, see {@link ShardedStore}), and between a snapshot file and
+ * an {@link H2TaskStore} database (given without its {@code .mv.db} extension).
+ * <p>
+ * Usage: {@code SnapshotConverter <to-binary|to-json|to-shards|from-shards|to-h2|from-h2> <input> <output>}
+ */
+public final class SnapshotConverter {
+    // How long closing an H2 database may wait for its writer thread (nothing is queued by then)
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private SnapshotConverter() {}
+
+    /**
+     * Converts a JSON snapshot ({@code data.json}) into a {@link BinarySnapshot}.
+     */
+    public static void jsonToBinary(Path json, Path binary) throws IOException {
+        TaskManager taskManager = new TaskManager();
+        DataManager.readJson(json, taskManager);
+        write(binary, DataManager.SnapshotFormat.BINARY, taskManager, false);
+    }
+
+    /**
+     * Converts a {@link BinarySnapshot} back into a pretty-printed JSON snapshot.
+     */
+    public static void binaryToJson(Path binary, Path json) throws IOException {
+        TaskManager taskManager = new TaskManager();
+        BinarySnapshot.load(binary, taskManager);
+        write(json, DataManager.SnapshotFormat.JSON, taskManager, true);
+    }
+
+    /**
+     * Converts a snapshot file (JSON or binary) into the sharded layout in {@code directory}.
+     */
+    public static void fileToShards(Path file, Path directory) throws IOException {
+        TaskManager taskManager = readFile(file);
+        ShardedStore store = new ShardedStore(directory);
+        Path manifest = store.prepare(taskManager.snapshot());
+        Files.move(manifest, store.manifestPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        store.installed();
+    }
+
+    /**
+     * Converts the sharded layout in {@code directory} back into a pretty-printed JSON snapshot.
+     */
+    public static void shardsToJson(Path directory, Path json) throws IOException {
+        TaskManager taskManager = new TaskManager();
+        BatchLoader loader = BatchLoader.direct(taskManager);
+        try {
+            new ShardedStore(directory).load(loader);
+        } finally {
+            loader.flush();
+        }
+        write(json, DataManager.SnapshotFormat.JSON, taskManager, true);
+    }
+
+    /**
+     * Replaces the contents of an H2 database with a snapshot file (JSON or binary).
+     */
+    public static void fileToDatabase(Path file, Path database) throws IOException {
+        TaskManager taskManager = readFile(file);
+        H2TaskStore store = new H2TaskStore(database);
+        store.replaceAll(taskManager);
+        store.close(CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Converts an H2 database back into a pretty-printed JSON snapshot.
+     */
+    public static void databaseToJson(Path database, Path json) throws IOException {
+        TaskManager taskManager = new TaskManager();
+        H2TaskStore store = new H2TaskStore(database);
+        try {
+            store.loadAll(taskManager);
+        } catch (IllegalStateException e) {
+            store.close(CLOSE_TIMEOUT);
+            throw new IOException("Reading " + database + " failed", e);
+        }
+        store.close(CLOSE_TIMEOUT);
+        write(json, DataManager.SnapshotFormat.JSON, taskManager, true);
+    }
+
+    private static TaskManager readFile(Path file) throws IOException {
+        TaskManager taskManager = new TaskManager();
+        if (BinarySnapshot.isBinarySnapshot(file)) {
+            BinarySnapshot.load(file, taskManager);
+        } else {
+            DataManager.readJson(file, taskManager);
+        }
+        return taskManager;
+    }
+
+    private static void write(Path path, DataManager.SnapshotFormat format, TaskManager taskManager,
+                              boolean prettyPrint) throws IOException {
+        DataManager.writeFile(path, format, taskManager.getTasks(), taskManager.getCategories(),
+                taskManager.getPriorities(), prettyPrint);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: SnapshotConverter <to-binary|to-json|to-shards|from-shards|to-h2|from-h2> <input> <output>");
+            System.exit(2);
+        }
+
+        Path input = Path.of(args[1]);
+        Path output = Path.of(args[2]);
+        switch (args[0]) {
+            case "to-binary" -> jsonToBinary(input, output);
+            case "to-json" -> binaryToJson(input, output);
+            case "to-shards" -> fileToShards(input, output);
+            case "from-shards" -> shardsToJson(input, output);
+            case "to-h2" -> fileToDatabase(input, output);
+            case "from-h2" -> databaseToJson(input, output);
+            default -> {
+                System.err.println("Unknown conversion: " + args[0]);
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.medialab.services;
+
+/**
+ * Receives the contents of a snapshot file while it is being read.
+ * <p>
+ * Categories and priorities are always delivered before the Tasks that refer to them, so a sink
+ * can resolve each Task's titles as soon as it arrives.
+ */
+interface SnapshotSink {
+
+    void category(String title);
+
+    void priority(String title);
+
+    void task(DataManager.PendingTask task);
+}
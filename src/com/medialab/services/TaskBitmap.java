@@ -0,0 +1,315 @@
+package com.medialab.services;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of task ids, in the style of a Roaring bitmap.
+ * <p>
+ * Ids are split into a 16-bit high part, which selects a container, and a 16-bit low part stored
+ * in it. Sparse containers are sorted {@code char} arrays; once a container holds more than
+ * {@link #ARRAY_LIMIT} values it becomes a plain 65536-bit bitmap. The cardinality is kept up to
+ * date, so counting never iterates.
+ * <p>
+ * {@link #and} and {@link #or} combine two bitmaps container by container.
+ */
+final class TaskBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1 << 10; // 65536 bits
+
+    // Sorted high parts; containers[i] is a char[] (array container) or a long[] (bitmap container)
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4];
+    private int[] sizes = new int[4];
+    private int containerCount;
+    private int cardinality;
+
+    boolean add(int id) {
+        char high = (char) (id >>> 16);
+        char low = (char) id;
+        int index = Arrays.binarySearch(keys, 0, containerCount, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new char[4]);
+        }
+
+        boolean added;
+        if (containers[index] instanceof long[] bits) {
+            added = (bits[low >>> 6] & (1L << low)) == 0;
+            bits[low >>> 6] |= 1L << low;
+        } else {
+            added = addToArray(index, low);
+        }
+        if (added) {
+            sizes[index]++;
+            cardinality++;
+            if (sizes[index] > ARRAY_LIMIT && containers[index] instanceof char[] values) {
+                containers[index] = toBits(values, sizes[index]);
+            }
+        }
+        return added;
+    }
+
+    boolean remove(int id) {
+        char high = (char) (id >>> 16);
+        char low = (char) id;
+        int index = Arrays.binarySearch(keys, 0, containerCount, high);
+        if (index < 0) return false;
+
+        if (containers[index] instanceof long[] bits) {
+            if ((bits[low >>> 6] & (1L << low)) == 0) return false;
+            bits[low >>> 6] &= ~(1L << low);
+        } else {
+            char[] values = (char[]) containers[index];
+            int position = Arrays.binarySearch(values, 0, sizes[index], low);
+            if (position < 0) return false;
+            System.arraycopy(values, position + 1, values, position, sizes[index] - position - 1);
+        }
+        sizes[index]--;
+        cardinality--;
+
+        if (sizes[index] == 0) {
+            removeContainer(index);
+        } else if (sizes[index] <= ARRAY_LIMIT && containers[index] instanceof long[] bits) {
+            containers[index] = toValues(bits, sizes[index]);
+        }
+        return true;
+    }
+
+    boolean contains(int id) {
+        int index = Arrays.binarySearch(keys, 0, containerCount, (char) (id >>> 16));
+        if (index < 0) return false;
+        char low = (char) id;
+        if (containers[index] instanceof long[] bits) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) containers[index], 0, sizes[index], low) >= 0;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Calls {@code action} with every id, in ascending order.
+     */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < containerCount; i++) {
+            int base = keys[i] << 16;
+            if (containers[i] instanceof long[] bits) {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long bitsLeft = bits[word];
+                    while (bitsLeft != 0) {
+                        action.accept(base | (word << 6) | Long.numberOfTrailingZeros(bitsLeft));
+                        bitsLeft &= bitsLeft - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) containers[i];
+                for (int j = 0; j < sizes[i]; j++) {
+                    action.accept(base | values[j]);
+                }
+            }
+        }
+    }
+
+    int[] toArray() {
+        int[] ids = new int[cardinality];
+        int[] count = {0};
+        forEach(id -> ids[count[0]++] = id);
+        return ids;
+    }
+
+    /*
+     * Set Operations
+     */
+
+    static TaskBitmap and(TaskBitmap a, TaskBitmap b) {
+        TaskBitmap result = new TaskBitmap();
+        int i = 0, j = 0;
+        while (i < a.containerCount && j < b.containerCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendIntersection(a.keys[i], a.containers[i], a.sizes[i], b.containers[j], b.sizes[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    static TaskBitmap or(TaskBitmap a, TaskBitmap b) {
+        TaskBitmap result = new TaskBitmap();
+        int i = 0, j = 0;
+        while (i < a.containerCount || j < b.containerCount) {
+            if (j == b.containerCount || (i < a.containerCount && a.keys[i] < b.keys[j])) {
+                result.appendContainer(a.keys[i], copy(a.containers[i]), a.sizes[i]);
+                i++;
+            } else if (i == a.containerCount || a.keys[i] > b.keys[j]) {
+                result.appendContainer(b.keys[j], copy(b.containers[j]), b.sizes[j]);
+                j++;
+            } else {
+                long[] bits = toBits(a.containers[i], a.sizes[i]);
+                orInto(bits, b.containers[j], b.sizes[j]);
+                int size = bitCount(bits);
+                result.appendContainer(a.keys[i], size <= ARRAY_LIMIT ? toValues(bits, size) : bits, size);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the intersection of two bitmaps, without building it.
+     */
+    static int andCardinality(TaskBitmap a, TaskBitmap b) {
+        int count = 0;
+        int i = 0, j = 0;
+        while (i < a.containerCount && j < b.containerCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Object x = a.containers[i], y = b.containers[j];
+                if (x instanceof long[] xBits && y instanceof long[] yBits) {
+                    for (int word = 0; word < BITMAP_WORDS; word++) count += Long.bitCount(xBits[word] & yBits[word]);
+                } else if (x instanceof char[] xValues) {
+                    for (int k = 0; k < a.sizes[i]; k++) if (containerContains(y, b.sizes[j], xValues[k])) count++;
+                } else {
+                    char[] yValues = (char[]) y;
+                    for (int k = 0; k < b.sizes[j]; k++) if (containerContains(x, a.sizes[i], yValues[k])) count++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Container Helpers
+     */
+
+    private void appendIntersection(char key, Object x, int xSize, Object y, int ySize) {
+        if (x instanceof long[] xBits && y instanceof long[] yBits) {
+            long[] bits = new long[BITMAP_WORDS];
+            for (int word = 0; word < BITMAP_WORDS; word++) bits[word] = xBits[word] & yBits[word];
+            int size = bitCount(bits);
+            if (size > 0) appendContainer(key, size <= ARRAY_LIMIT ? toValues(bits, size) : bits, size);
+            return;
+        }
+
+        // At least one side is an array: test its values against the other side
+        char[] values = x instanceof char[] xValues ? xValues : (char[]) y;
+        int valueCount = x instanceof char[] ? xSize : ySize;
+        Object other = x instanceof char[] ? y : x;
+        int otherSize = x instanceof char[] ? ySize : xSize;
+
+        char[] result = new char[valueCount];
+        int size = 0;
+        for (int k = 0; k < valueCount; k++) {
+            if (containerContains(other, otherSize, values[k])) result[size++] = values[k];
+        }
+        if (size > 0) appendContainer(key, result, size);
+    }
+
+    private void appendContainer(char key, Object container, int size) {
+        insertContainer(containerCount, key, container);
+        sizes[containerCount - 1] = size;
+        cardinality += size;
+    }
+
+    private void insertContainer(int index, char key, Object container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+            sizes = Arrays.copyOf(sizes, containerCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        System.arraycopy(sizes, index, sizes, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        sizes[index] = 0;
+        containerCount++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        System.arraycopy(sizes, index + 1, sizes, index, containerCount - index - 1);
+        containerCount--;
+        containers[containerCount] = null;
+    }
+
+    private boolean addToArray(int index, char low) {
+        char[] values = (char[]) containers[index];
+        int size = sizes[index];
+        // Ids are mostly added in ascending order, so check the end first
+        int position = size == 0 || values[size - 1] < low ? -size - 1 : Arrays.binarySearch(values, 0, size, low);
+        if (position >= 0) return false;
+        position = -position - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_LIMIT + 1));
+            containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = low;
+        return true;
+    }
+
+    private static boolean containerContains(Object container, int size, char low) {
+        if (container instanceof long[] bits) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, size, low) >= 0;
+    }
+
+    private static long[] toBits(Object container, int size) {
+        if (container instanceof long[] bits) return bits.clone();
+        long[] bits = new long[BITMAP_WORDS];
+        orInto(bits, container, size);
+        return bits;
+    }
+
+    private static void orInto(long[] bits, Object container, int size) {
+        if (container instanceof long[] other) {
+            for (int word = 0; word < BITMAP_WORDS; word++) bits[word] |= other[word];
+        } else {
+            char[] values = (char[]) container;
+            for (int k = 0; k < size; k++) bits[values[k] >>> 6] |= 1L << values[k];
+        }
+    }
+
+    private static char[] toValues(long[] bits, int size) {
+        char[] values = new char[size];
+        int count = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            long bitsLeft = bits[word];
+            while (bitsLeft != 0) {
+                values[count++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bitsLeft));
+                bitsLeft &= bitsLeft - 1;
+            }
+        }
+        return values;
+    }
+
+    private static int bitCount(long[] bits) {
+        int count = 0;
+        for (long word : bits) count += Long.bitCount(word);
+        return count;
+    }
+
+    private static Object copy(Object container) {
+        return container instanceof long[] bits ? bits.clone() : ((char[]) container).clone();
+    }
+}
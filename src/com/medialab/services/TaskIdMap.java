@@ -0,0 +1,120 @@
+package com.medialab.services;
+
+/**
+ * Open-addressing hash map from persistent task ids ({@code long}, always positive) to the
+ * TaskManager's internal slots ({@code int}), without boxing.
+ * <p>
+ * Keys and values live in two parallel arrays; 0 marks an empty key. Collisions are resolved by
+ * linear probing, and removal shifts the following entries of the probe run back (instead of
+ * leaving tombstones), so lookups stay short no matter how many Tasks have been deleted.
+ * The table is kept at most half full.
+ */
+final class TaskIdMap {
+    private static final long EMPTY = 0;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    TaskIdMap() {
+        this(16);
+    }
+
+    TaskIdMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of the given id, or -1 if there is none.
+     */
+    int get(long id) {
+        if (id == EMPTY) return -1;
+        for (int i = index(id); ; i = (i + 1) & mask) {
+            long key = keys[i];
+            if (key == id) return values[i];
+            if (key == EMPTY) return -1;
+        }
+    }
+
+    /**
+     * Maps the id to the slot, replacing any previous slot of the id.
+     */
+    void put(long id, int slot) {
+        if (id <= EMPTY) throw new IllegalArgumentException("Task ids must be positive: " + id);
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+        int i = index(id);
+        while (keys[i] != EMPTY && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == EMPTY) {
+            keys[i] = id;
+            size++;
+        }
+        values[i] = slot;
+    }
+
+    /**
+     * Removes the id.
+     *
+     * @return its slot, or -1 if it was not mapped
+     */
+    int remove(long id) {
+        if (id == EMPTY) return -1;
+        int i = index(id);
+        while (keys[i] != id) {
+            if (keys[i] == EMPTY) return -1;
+            i = (i + 1) & mask;
+        }
+        int slot = values[i];
+        size--;
+
+        // Shift back the entries after the hole that would no longer be found from their home index
+        int hole = i;
+        for (int j = (hole + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = index(keys[j]);
+            // Movable if its home is not in the cyclic range (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        return slot;
+    }
+
+    private int index(long id) {
+        // Fibonacci hashing: the top bits of the product spread any id pattern over the table
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        shift--;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int j = index(oldKeys[i]);
+            while (keys[j] != EMPTY) {
+                j = (j + 1) & mask;
+            }
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
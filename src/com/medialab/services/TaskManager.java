@@ -1,164 +1,1317 @@
 package com.medialab.services;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import com.medialab.models.Category;
 import com.medialab.models.PriorityLevel;
 import com.medialab.models.Task;
 import com.medialab.models.Reminder;
+import com.medialab.models.TaskStatus;
 
 /*
  * Task Manager stores Tasks, Categories and Priorities in separate lists.
  * This is done in order to allow for more flexibility in the creation and managing of Categories and Priorities.
- * 
+ *
  * (!) Note that neither Categories nor Priorities are tied to any specific Task necessarily.
  * This means that they can exist independently of Tasks.
- * 
+ *
  * (!) Reminders, on the other hand, are always tied to a specific Task.
+ *
+ * Every Task has a persistent long id (saved with it). A loaded Task keeps its stored id unless
+ * another Task already has it; a new Task (id 0) or a colliding one gets the next id, one past the
+ * largest so far. So new Tasks have the largest ids, but loaded ones need not be in id order
+ * (e.g. a hand-edited data.json). The Tasks themselves are kept in an array of
+ * slots, in list order; deleting a Task only empties its slot (slots are never reused while the
+ * app runs), and an open-addressing map (TaskIdMap) finds the slot of an id, so looking up and
+ * deleting a Task are O(1).
+ *
+ * Categories and Priorities are canonical: one instance per title, with a stable id that their
+ * equality and hash codes are based on (see EntityRegistry), so renaming one never touches its Tasks.
+ * Next to that, title -> entity maps give O(1) lookups, and compressed bitmaps of slots (TaskBitmap)
+ * index the Tasks per category, priority, status and deadline day. The cascades (delete/update)
+ * only touch the affected Tasks, combined filters are bitmap intersections, and the summary
+ * numbers are bitmap cardinalities.
+ * A second deadline index holds only the Tasks that can still become Delayed, so marking overdue
+ * Tasks only walks the part of it that has expired.
+ * Task fields that are indexed must therefore be changed through updateTask() (or the bulk methods).
+ * Titles and descriptions are kept in a trigram index (TaskSearchIndex) for substring search.
+ * All Reminders are also kept in one date-sorted set;
+ * Reminders of managed Tasks must therefore be changed through the Reminder methods below.
+ *
+ * Every mutation (including Reminder changes) is reported to the registered TaskManagerListeners,
+ * e.g. the MutationJournal that persists each change as it happens. The bulk methods (addTasks(),
+ * updateStatus(), moveToCategory(), ...) report a whole batch in one event instead.
+ *
+ * The TaskManager is thread-safe: mutations hold the write lock and queries the read lock, so
+ * e.g. the autosave, the reminder scheduler or a TaskSearch can read from other threads while the
+ * UI keeps changing the Tasks. getTasks(), getCategories(), getPriorities() and getReminders()
+ * return immutable lists. Each list is made on the first read after a change and then shared by
+ * all readers until the next change (copy-on-write), so repeated reads cost nothing.
+ * The lists are immutable, but the Tasks and Reminders in them are the live, mutable instances:
+ * their fields may only be read on the thread that mutates the TaskManager (the UI thread, or the
+ * API's mutation executor), or under the lock by the TaskManager itself (e.g. a TaskSearch).
+ * Any other thread must read from a snapshot() instead, whose Tasks are detached copies.
+ * For a consistent view of everything at once, snapshot() is O(1): every change also records the
+ * Task's new fields as an immutable TaskState in a persistent vector (PersistentVector), which
+ * shares all but one path of its tree with the previous version, and a Snapshot just keeps the
+ * version that was current when it was taken.
+ * Listeners are called on the mutating thread, while it still holds the write lock.
+ *
+ * As TaskQueries, the TaskManager answers from memory. A store that keeps only part of the Tasks
+ * here (the H2TaskStore) answers the queries itself; the methods of the TaskManager that read all
+ * Tasks (getTasks(), the counters, ...) then only see the Tasks it holds.
  */
-public class TaskManager {
-    private List<Task> tasks;
-    private List<Category> categories;
-    private List<PriorityLevel> priorities;
+public class TaskManager implements TaskQueries {
+    // The canonical Categories and Priorities (one instance per title)
+    private EntityRegistry<Category> categories;
+    private EntityRegistry<PriorityLevel> priorities;
+
+    // Tasks in list order (slot -> task, null once deleted), and their slots by persistent id
+    private Task[] tasksBySlot;
+    private int nextSlot;
+    private int taskCount;
+    private TaskIdMap slotsById;
+    private long nextTaskId = 1;
+
+    // Reverse indexes (entity -> slots of the tasks using it)
+    private Map<Category, TaskBitmap> tasksByCategory;
+    private Map<PriorityLevel, TaskBitmap> tasksByPriority;
+    private TaskBitmap[] tasksByStatus;
+
+    // Deadline indexes (deadline -> task slots), for all tasks and for those that can still become Delayed
+    private NavigableMap<LocalDate, TaskBitmap> tasksByDeadline;
+    private NavigableMap<LocalDate, TaskBitmap> pendingTasksByDeadline;
+
+    // All reminders, by date (then by id, so reminders on the same day stay distinct)
+    public static final Comparator<Reminder> REMINDER_ORDER =
+            Comparator.comparing(Reminder::getDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                      .thenComparingLong(Reminder::getId);
+    private NavigableSet<Reminder> remindersByDate;
+
+    // Trigram index over task titles and descriptions
+    private TaskSearchIndex searchIndex;
+
+    private List<TaskManagerListener> listeners;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Immutable copies handed out by the getters; reset by the changes that affect them
+    private volatile List<Task> tasksSnapshot;
+    private volatile List<Category> categoriesSnapshot;
+    private volatile List<PriorityLevel> prioritiesSnapshot;
+    private volatile NavigableSet<Reminder> remindersSnapshot;
+
+    // Immutable states of the Tasks by slot (null once deleted), shared with the Snapshots taken so far
+    private PersistentVector<TaskState> taskStates;
+    // Copies of the Categories and Priorities for the Snapshots; reset by the changes that affect them
+    private volatile List<Category> categoryCopies;
+    private volatile List<PriorityLevel> priorityCopies;
 
     public TaskManager() {
-        tasks = new ArrayList<>();
-        categories = new ArrayList<>();
-        priorities = new ArrayList<>();
+        categories = new EntityRegistry<>(Category::new);
+        priorities = new EntityRegistry<>(PriorityLevel::new);
+        tasksBySlot = new Task[16];
+        slotsById = new TaskIdMap();
+        taskStates = PersistentVector.empty();
+        tasksByCategory = new HashMap<>();
+        tasksByPriority = new HashMap<>();
+        tasksByStatus = new TaskBitmap[TaskStatus.values().length];
+        for (int i = 0; i < tasksByStatus.length; i++) {
+            tasksByStatus[i] = new TaskBitmap();
+        }
+        tasksByDeadline = new TreeMap<>();
+        pendingTasksByDeadline = new TreeMap<>();
+        remindersByDate = new TreeSet<>(REMINDER_ORDER);
+        searchIndex = new TaskSearchIndex();
+        listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /*
+     * Listener Methods
+     */
+
+    public void addListener(TaskManagerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TaskManagerListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(Consumer<TaskManagerListener> event) {
+        for (TaskManagerListener listener : listeners) {
+            event.accept(listener);
+        }
+    }
+
+    /*
+     * Snapshot Methods
+     */
+
+    /**
+     * A consistent, immutable view of the TaskManager's state, safe to hand to another thread
+     * (e.g. for saving, exporting or serving) while the TaskManager keeps changing.
+     * <p>
+     * It only holds on to the TaskManager's persistent vector of task states, which later changes
+     * never modify (they make new versions that share the unchanged parts), and to copies of the
+     * Categories and Priorities. The Tasks are built from the states, as detached copies, the first
+     * time tasks() is called, on the caller's thread.
+     */
+    public static final class Snapshot {
+        private final TaskManager source;
+        private final PersistentVector<TaskState> taskStates;
+        private final int taskCount;
+        private final List<Category> categories;
+        private final List<PriorityLevel> priorities;
+
+        // Built on first use, guarded by this
+        private Map<Category, Category> categoryCopies;
+        private Map<PriorityLevel, PriorityLevel> priorityCopies;
+        private List<Task> tasks;
+
+        private Snapshot(TaskManager source, PersistentVector<TaskState> taskStates, int taskCount,
+                         List<Category> categories, List<PriorityLevel> priorities) {
+            this.source = source;
+            this.taskStates = taskStates;
+            this.taskCount = taskCount;
+            this.categories = categories;
+            this.priorities = priorities;
+        }
+
+        /**
+         * Returns copies of the Tasks (with their Reminders), in list order (immutable).
+         * Copied Tasks share the copied Category/PriorityLevel instances (with the same ids), just like the originals.
+         */
+        public synchronized List<Task> tasks() {
+            if (tasks == null) {
+                List<Task> copies = new ArrayList<>(taskCount);
+                for (TaskState state : taskStates) {
+                    if (state != null) copies.add(copyOf(state));
+                }
+                tasks = Collections.unmodifiableList(copies);
+            }
+            return tasks;
+        }
+
+        public int taskCount() { return taskCount; }
+
+        public List<Category> categories() { return categories; }
+
+        public List<PriorityLevel> priorities() { return priorities; }
+
+        /**
+         * Returns true if both Snapshots were taken from the same TaskManager, so their states
+         * can be compared slot by slot.
+         */
+        boolean sameSource(Snapshot other) { return source == other.source; }
+
+        /**
+         * The task states by slot (null for deleted Tasks).
+         */
+        PersistentVector<TaskState> taskStates() { return taskStates; }
+
+        /**
+         * Turns a state of this Snapshot into a Task, with this Snapshot's Category/PriorityLevel copies.
+         */
+        synchronized Task copyOf(TaskState state) {
+            if (categoryCopies == null) {
+                // The copies are equal (same id) to the instances the states refer to
+                categoryCopies = new HashMap<>();
+                categories.forEach(category -> categoryCopies.put(category, category));
+                priorityCopies = new HashMap<>();
+                priorities.forEach(priority -> priorityCopies.put(priority, priority));
+            }
+            return state.toTask(
+                    category -> categoryCopies.computeIfAbsent(category, c -> new Category(c.getId(), c.getTitle())),
+                    priority -> priorityCopies.computeIfAbsent(priority, p -> new PriorityLevel(p.getId(), p.getTitle())));
+        }
+    }
+
+    /**
+     * Takes a Snapshot of the current Tasks, Categories and Priorities in O(1).
+     */
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            List<Category> categoriesCopy = categoryCopies;
+            if (categoriesCopy == null) {
+                categoriesCopy = categories.entities().stream().map(c -> new Category(c.getId(), c.getTitle())).toList();
+                categoryCopies = categoriesCopy;
+            }
+            List<PriorityLevel> prioritiesCopy = priorityCopies;
+            if (prioritiesCopy == null) {
+                prioritiesCopy = priorities.entities().stream().map(p -> new PriorityLevel(p.getId(), p.getTitle())).toList();
+                priorityCopies = prioritiesCopy;
+            }
+            return new Snapshot(this, taskStates, taskCount, categoriesCopy, prioritiesCopy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the current fields of a managed Task for the Snapshots taken from now on.
+     */
+    private void updateState(Task task, int slot) {
+        taskStates = taskStates.with(slot, TaskState.of(task));
     }
 
     /*
      * Task Management Methods
      */
-    
+
+    /**
+     * Returns all Tasks, in list order (immutable). The Tasks are the live instances, so read their
+     * fields on the mutation thread only; other threads use {@link #snapshot()}.
+     */
     public List<Task> getTasks() {
-        return tasks;
+        List<Task> snapshot = tasksSnapshot;
+        if (snapshot == null) {
+            lock.readLock().lock();
+            try {
+                snapshot = Collections.unmodifiableList(liveTasks());
+                tasksSnapshot = snapshot;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the Task with the given persistent id, or null if there is none (anymore).
+     * Like {@link #getTasks()}, the Task is the live instance.
+     */
+    @Override
+    public Task getTaskById(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            return slot >= 0 ? tasksBySlot[slot] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the Tasks with the given ids, in the order of the ids (ids without a Task are skipped).
+     * Like {@link #getTaskById}, they are the live instances.
+     */
+    @Override
+    public List<Task> getTasksByIds(long... ids) {
+        lock.readLock().lock();
+        try {
+            List<Task> found = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                int slot = slotsById.get(id);
+                if (slot >= 0) found.add(tasksBySlot[slot]);
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns detached copies of the Tasks with the given ids, in the order of the ids,
+     * copied under the read lock.
+     */
+    @Override
+    public List<Task> findTasksByIds(long... ids) {
+        lock.readLock().lock();
+        try {
+            List<Task> copies = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                int slot = slotsById.get(id);
+                if (slot >= 0) copies.add(TaskState.of(tasksBySlot[slot]).toTask(Function.identity(), Function.identity()));
+            }
+            return copies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if the Task (this instance, not a copy of it) is managed by this TaskManager.
+     */
+    public boolean contains(Task task) {
+        lock.readLock().lock();
+        try {
+            return slotOf(task) != -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int slotOf(Task task) {
+        int slot = slotsById.get(task.getId());
+        return slot >= 0 && tasksBySlot[slot] == task ? slot : -1;
+    }
+
+    /**
+     * The Tasks in list order, skipping emptied slots.
+     */
+    private List<Task> liveTasks() {
+        List<Task> live = new ArrayList<>(taskCount);
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (tasksBySlot[slot] != null) live.add(tasksBySlot[slot]);
+        }
+        return live;
     }
-    
+
     public void addTask(Task task) {
-        tasks.add(task);
+        lock.writeLock().lock();
+        try {
+            registerTask(task);
+            tasksSnapshot = null;
+            remindersSnapshot = null;
+            notifyListeners(listener -> listener.taskAdded(task));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes new Tasks get ids above {@code maxUsedId}, for a store that holds more Tasks than it
+     * has loaded into this TaskManager.
+     */
+    public void reserveTaskIds(long maxUsedId) {
+        lock.writeLock().lock();
+        try {
+            nextTaskId = Math.max(nextTaskId, maxUsedId + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gives a new Task its id (unless it can keep its own) and the next slot, and adds it to every index.
+     */
+    private void registerTask(Task task) {
+        if (task.getId() <= 0 || slotsById.get(task.getId()) != -1) {
+            task.setId(nextTaskId);
+        }
+        nextTaskId = Math.max(nextTaskId, task.getId() + 1);
+
+        int slot = nextSlot++;
+        if (slot == tasksBySlot.length) {
+            tasksBySlot = Arrays.copyOf(tasksBySlot, slot * 2);
+        }
+        tasksBySlot[slot] = task;
+        slotsById.put(task.getId(), slot);
+        taskStates = taskStates.plus(TaskState.of(task));
+        taskCount++;
+
+        indexTask(task, slot);
+        remindersByDate.addAll(task.getReminders());
+        searchIndex.add(slot, task);
     }
 
     public void deleteTask(Task task) {
-        tasks.remove(task);
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(task);
+            if (slot != -1) {
+                unindexTask(task, slot);
+                task.getReminders().forEach(remindersByDate::remove);
+                remindersSnapshot = null;
+                releaseSlot(task, slot);
+                tasksSnapshot = null;
+                notifyListeners(listener -> listener.taskDeleted(task));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies new field values to a Task, keeping the category and priority indexes in sync.
+     */
+    public void updateTask(Task task, String title, String description, Category category,
+                           PriorityLevel priority, LocalDate deadline, TaskStatus status) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(task);
+            if (slot == -1) return;
+            unindexTask(task, slot);
+            task.setTitle(title);
+            task.setDescription(description);
+            task.setCategory(category);
+            task.setPriority(priority);
+            task.setDeadline(deadline);
+            task.setStatus(status);
+            indexTask(task, slot);
+            searchIndex.update(slot, task);
+            updateState(task, slot);
+            notifyListeners(listener -> listener.taskUpdated(task));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the Tasks whose title or description contains {@code text}, ignoring case, and that
+     * have the given category and priority (either may be null, to not filter on it).
+     * Tasks whose title starts with the text are listed first, then the other title matches,
+     * then the Tasks that only match in their description; without text, Tasks are in list order.
+     */
+    public List<Task> searchTasks(String text, Category category, PriorityLevel priority) {
+        if (text.isEmpty() && category == null && priority == null) {
+            lock.readLock().lock();
+            try {
+                return liveTasks();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return newSearch(text, category, priority).runToEnd();
+    }
+
+    /**
+     * Starts a search like {@link #searchTasks}, to be run in pages (possibly on another thread).
+     */
+    public TaskSearch newSearch(String text, Category category, PriorityLevel priority) {
+        lock.readLock().lock();
+        try {
+            String needle = TaskSearchIndex.normalize(text);
+            TaskBitmap filter = filter(category, priority, null);
+
+            int[] candidates;
+            if (needle.isEmpty() && filter != null) {
+                candidates = filter.toArray();
+            } else {
+                candidates = searchIndex.candidates(needle);
+                if (filter != null) {
+                    int kept = 0;
+                    for (int slot : candidates) {
+                        if (filter.contains(slot)) candidates[kept++] = slot;
+                    }
+                    candidates = Arrays.copyOf(candidates, kept);
+                }
+            }
+            return new TaskSearch(this, needle, candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks one page of a TaskSearch's candidates, under the read lock.
+     */
+    void checkCandidates(TaskSearch search, int[] candidates, int from, int to) {
+        lock.readLock().lock();
+        try {
+            for (int i = from; i < to; i++) {
+                int slot = candidates[i];
+                int rank = searchIndex.matchRank(slot, search.getNeedle());
+                if (rank >= 0 && tasksBySlot[slot] != null) {
+                    search.addMatch(tasksBySlot[slot], rank);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the search (or, without text, the bitmap filter) and copies only the requested page,
+     * under the read lock.
+     */
+    @Override
+    public Page findTasks(String text, Category category, PriorityLevel priority, TaskStatus status,
+                          int offset, int limit) {
+        List<Task> matches = null;
+        if (!TaskSearchIndex.normalize(text).isEmpty()) {
+            matches = newSearch(text, category, priority).runToEnd();
+        }
+        lock.readLock().lock();
+        try {
+            if (matches == null) {
+                TaskBitmap filter = filter(category, priority, status);
+                matches = filter != null ? tasksOf(filter.toArray()) : liveTasks();
+                status = null;
+            }
+            List<Task> page = new ArrayList<>(Math.min(limit, matches.size()));
+            int total = 0;
+            for (Task task : matches) {
+                // Deleted or changed since the search ran
+                if (slotOf(task) == -1 || (status != null && task.getStatus() != status)) continue;
+                if (total >= offset && page.size() < limit) page.add(TaskState.of(task).toTask(Function.identity(), Function.identity()));
+                total++;
+            }
+            return new Page(page, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the Tasks that have the given category, priority and status (any of them may be null,
+     * to not filter on it), without building the list. The last intersection is only counted
+     * ({@link TaskBitmap#andCardinality}), so one or two criteria build no bitmap at all.
+     */
+    @Override
+    public int countTasks(Category category, PriorityLevel priority, TaskStatus status) {
+        lock.readLock().lock();
+        try {
+            List<TaskBitmap> criteria = new ArrayList<>(3);
+            if (category != null) criteria.add(tasksByCategory.getOrDefault(category, new TaskBitmap()));
+            if (priority != null) criteria.add(tasksByPriority.getOrDefault(priority, new TaskBitmap()));
+            if (status != null) criteria.add(tasksByStatus[status.ordinal()]);
+            return switch (criteria.size()) {
+                case 0 -> taskCount;
+                case 1 -> criteria.get(0).cardinality();
+                case 2 -> TaskBitmap.andCardinality(criteria.get(0), criteria.get(1));
+                default -> TaskBitmap.andCardinality(TaskBitmap.and(criteria.get(0), criteria.get(1)), criteria.get(2));
+            };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the Tasks that belong to the given category, in list order.
+     */
+    public List<Task> getTasksByCategory(Category category) {
+        lock.readLock().lock();
+        try {
+            TaskBitmap categoryTasks = tasksByCategory.get(category);
+            return categoryTasks != null ? tasksOf(categoryTasks.toArray()) : List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the Tasks that have the given priority, in list order.
+     */
+    public List<Task> getTasksByPriority(PriorityLevel priority) {
+        lock.readLock().lock();
+        try {
+            TaskBitmap priorityTasks = tasksByPriority.get(priority);
+            return priorityTasks != null ? tasksOf(priorityTasks.toArray()) : List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Intersects the bitmaps of the given criteria (null criteria are ignored).
+     *
+     * @return the matching slots, or null if there are no criteria
+     */
+    private TaskBitmap filter(Category category, PriorityLevel priority, TaskStatus status) {
+        TaskBitmap filter = null;
+        if (category != null) {
+            filter = tasksByCategory.getOrDefault(category, new TaskBitmap());
+        }
+        if (priority != null) {
+            TaskBitmap priorityTasks = tasksByPriority.getOrDefault(priority, new TaskBitmap());
+            filter = filter != null ? TaskBitmap.and(filter, priorityTasks) : priorityTasks;
+        }
+        if (status != null) {
+            TaskBitmap statusTasks = tasksByStatus[status.ordinal()];
+            filter = filter != null ? TaskBitmap.and(filter, statusTasks) : statusTasks;
+        }
+        return filter;
+    }
+
+    private List<Task> tasksOf(int[] slots) {
+        List<Task> result = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            result.add(tasksBySlot[slot]);
+        }
+        return result;
     }
-    
+
+    private void releaseSlot(Task task, int slot) {
+        slotsById.remove(task.getId());
+        tasksBySlot[slot] = null;
+        taskStates = taskStates.with(slot, null);
+        taskCount--;
+        searchIndex.remove(slot);
+    }
+
     /*
-     * Category Management Methods
+     * Bulk Methods
+     *
+     * Each of them changes all of its Tasks under one write lock and reports them in a single
+     * event, so listeners refresh once (and the journal writes one record) per batch.
      */
-    
-    public List<Category> getCategories() {
-        return categories;
+
+    /**
+     * Adds several Tasks at once, at the end of the list and in the given order.
+     */
+    public void addTasks(Collection<Task> newTasks) {
+        if (newTasks.isEmpty()) return;
+        List<Task> added = List.copyOf(newTasks);
+        lock.writeLock().lock();
+        try {
+            int needed = nextSlot + added.size();
+            if (needed > tasksBySlot.length) {
+                tasksBySlot = Arrays.copyOf(tasksBySlot, Math.max(needed, tasksBySlot.length * 2));
+            }
+            for (Task task : added) {
+                registerTask(task);
+            }
+            tasksSnapshot = null;
+            remindersSnapshot = null;
+            notifyListeners(listener -> listener.tasksAdded(added));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
-    
-    public void addCategory(Category category) {
-    	// Check if the category already exists
-        if (!getCategories().contains(category)) {
-            categories.add(category);
+
+    /**
+     * Sets the status of the given Tasks. Like {@link #editTasks}, which it is a shorthand for,
+     * Tasks that become Completed lose their Reminders in the same change.
+     *
+     * @return the Tasks whose status has changed
+     */
+    public List<Task> updateStatus(Collection<Task> targets, TaskStatus status) {
+        return editTasks(targets, null, null, status);
+    }
+
+    /**
+     * Sets the status of every Task that matches the filter (see {@link #updateStatus}).
+     *
+     * @return the Tasks whose status has changed
+     */
+    public List<Task> updateStatusWhere(Predicate<? super Task> filter, TaskStatus status) {
+        lock.writeLock().lock();
+        try {
+            return updateStatus(changing(liveTasks(), filter), status);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
-    public void deleteCategory(Category category) {
-        // Remove the category from the categories list
-        categories.remove(category);
+    /**
+     * Moves the given Tasks to another Category.
+     *
+     * @return the Tasks that have been moved
+     */
+    public List<Task> moveToCategory(Collection<Task> targets, Category category) {
+        lock.writeLock().lock();
+        try {
+            return updateTasks(changing(targets, task -> task.getCategory() != category), task -> task.setCategory(category));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        // Remove all tasks that are associated with this category
-        tasks.removeIf(task -> category.equals(task.getCategory()));
+    /**
+     * Moves the given Tasks to another priority.
+     *
+     * @return the Tasks that have been moved
+     */
+    public List<Task> moveToPriority(Collection<Task> targets, PriorityLevel priority) {
+        lock.writeLock().lock();
+        try {
+            return updateTasks(changing(targets, task -> task.getPriority() != priority), task -> task.setPriority(priority));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    public void updateCategory(Category oldCategory, Category updatedCategory) {
-        // Update the category title in all tasks that use the old category
-        for (Task task : tasks) {
-            if (task.getCategory() != null && task.getCategory().equals(oldCategory)) {
-                task.getCategory().setTitle(updatedCategory.getTitle());  // Update the category title in task
+    /**
+     * Bulk edit: sets the category, priority and status of the given Tasks at once; a null value
+     * leaves that field of each Task as it is. Tasks that become Completed lose their Reminders
+     * (as anywhere in the app), in the same change.
+     *
+     * @return the Tasks that have changed
+     */
+    public List<Task> editTasks(Collection<Task> targets, Category category, PriorityLevel priority, TaskStatus status) {
+        lock.writeLock().lock();
+        try {
+            List<Task> changing = changing(targets, task -> category != null && task.getCategory() != category
+                    || priority != null && task.getPriority() != priority
+                    || status != null && task.getStatus() != status);
+            if (changing.isEmpty()) return changing;
+
+            List<TaskManagerListener.RemovedReminder> removedReminders = new ArrayList<>();
+            for (Task task : changing) {
+                int slot = slotOf(task);
+                unindexTask(task, slot);
+                if (status == TaskStatus.COMPLETED && task.getStatus() != TaskStatus.COMPLETED) {
+                    removeAllReminders(task, removedReminders);
+                }
+                if (category != null) task.setCategory(category);
+                if (priority != null) task.setPriority(priority);
+                if (status != null) task.setStatus(status);
+                indexTask(task, slot);
+                updateState(task, slot);
             }
+            if (!removedReminders.isEmpty()) remindersSnapshot = null;
+
+            List<Task> updated = Collections.unmodifiableList(changing);
+            List<TaskManagerListener.RemovedReminder> removed = Collections.unmodifiableList(removedReminders);
+            notifyListeners(listener -> listener.tasksUpdated(updated, removed));
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
         }
-        
-        // Update the priority in the priorities list
-        int index = categories.indexOf(oldCategory);
-        if (index != -1) {
-            categories.set(index, updatedCategory);
+    }
+
+    /**
+     * Removes every Reminder of a Task (about to become Completed), adding them to {@code removed}.
+     */
+    private void removeAllReminders(Task task, List<TaskManagerListener.RemovedReminder> removed) {
+        for (Reminder reminder : task.getReminders().toArray(Reminder[]::new)) {
+            removed.add(new TaskManagerListener.RemovedReminder(task, reminder, task.removeReminder(reminder)));
+            remindersByDate.remove(reminder);
         }
     }
-    
-    public Category findCategoryByTitle(String title) {
-        for (Category category : categories) {
-            if (category.getTitle().equals(title)) {
-                return category;
+
+    /**
+     * Deletes several Tasks (with their Reminders) at once.
+     *
+     * @return the Tasks that have been deleted, in list order
+     */
+    public List<Task> deleteTasks(Collection<Task> targets) {
+        lock.writeLock().lock();
+        try {
+            TaskBitmap slots = new TaskBitmap();
+            for (Task task : targets) {
+                int slot = slotOf(task);
+                if (slot != -1) slots.add(slot);
+            }
+            if (slots.isEmpty()) return List.of();
+
+            List<Task> deleted = new ArrayList<>(slots.cardinality());
+            slots.forEach(slot -> {
+                Task task = tasksBySlot[slot];
+                unindexTask(task, slot);
+                task.getReminders().forEach(remindersByDate::remove);
+                releaseSlot(task, slot);
+                deleted.add(task);
+            });
+            tasksSnapshot = null;
+            remindersSnapshot = null;
+
+            List<Task> reported = Collections.unmodifiableList(deleted);
+            notifyListeners(listener -> listener.tasksDeleted(reported));
+            return reported;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a Reminder to each of the given Tasks.
+     *
+     * @param reminderFor creates the Reminder of a Task, or returns null to give it none
+     * @return the Reminders that have been added
+     */
+    public List<Reminder> addReminders(Collection<Task> targets, Function<? super Task, Reminder> reminderFor) {
+        lock.writeLock().lock();
+        try {
+            List<Reminder> added = new ArrayList<>();
+            for (Task task : targets) {
+                int slot = slotOf(task);
+                Reminder reminder = slot != -1 ? reminderFor.apply(task) : null;
+                if (reminder == null) continue;
+                task.addReminder(reminder);
+                remindersByDate.add(reminder);
+                updateState(task, slot);
+                added.add(reminder);
+            }
+            if (!added.isEmpty()) {
+                remindersSnapshot = null;
+                notifyListeners(listener -> listener.remindersAdded(added));
             }
+            return added;
+        } finally {
+            lock.writeLock().unlock();
         }
-        return null;
     }
-    
+
+    /**
+     * Returns the managed Tasks among {@code targets} that the filter accepts.
+     */
+    private List<Task> changing(Collection<Task> targets, Predicate<? super Task> filter) {
+        List<Task> changing = new ArrayList<>();
+        for (Task task : targets) {
+            if (slotOf(task) != -1 && filter.test(task)) {
+                changing.add(task);
+            }
+        }
+        return changing;
+    }
+
+    /**
+     * Applies a change to the indexed fields (not the title or description) of managed Tasks,
+     * keeping the indexes in sync, and reports them in one tasksUpdated event.
+     */
+    private List<Task> updateTasks(List<Task> targets, Consumer<Task> change) {
+        if (targets.isEmpty()) return targets;
+        for (Task task : targets) {
+            int slot = slotOf(task);
+            unindexTask(task, slot);
+            change.accept(task);
+            indexTask(task, slot);
+            updateState(task, slot);
+        }
+        List<Task> updated = Collections.unmodifiableList(targets);
+        notifyListeners(listener -> listener.tasksUpdated(updated));
+        return updated;
+    }
+
     /*
-     * Priority Management Methods
+     * Summary Counters
      */
 
-    public List<PriorityLevel> getPriorities() {
-        return priorities;
+    public int getTaskCount() {
+        lock.readLock().lock();
+        try {
+            return taskCount;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
-    
-    public void addPriority(PriorityLevel priority) {
-        // Check if the priority already exists
-        if (!getPriorities().contains(priority)) {
-            priorities.add(priority);
+
+    public int getStatusCount(TaskStatus status) {
+        lock.readLock().lock();
+        try {
+            return tasksByStatus[status.ordinal()].cardinality();
+        } finally {
+            lock.readLock().unlock();
         }
     }
-    
-    public void deletePriority(PriorityLevel priority) {
-        // Find the default priority
-        PriorityLevel defaultPriority = findPriorityByTitle("Default");
 
-        // Update all tasks with the deleted priority to the default priority
-        for (Task task : tasks) {
-            if (task.getPriority() != null && task.getPriority().equals(priority)) {
-                task.setPriority(defaultPriority);
+    /**
+     * Returns the number of Tasks whose deadline is within the 7 days starting at {@code today}.
+     */
+    @Override
+    public int getDueSoonCount(LocalDate today) {
+        lock.readLock().lock();
+        try {
+            int dueSoon = 0;
+            for (TaskBitmap dayTasks : tasksByDeadline.subMap(today, true, today.plusDays(7), false).values()) {
+                dueSoon += dayTasks.cardinality();
             }
+            return dueSoon;
+        } finally {
+            lock.readLock().unlock();
         }
+    }
+
+    /*
+     * Deadline Methods
+     */
 
-        // Remove the priority from the list
-        getPriorities().remove(priority);
+    /**
+     * Marks every Task whose deadline is before {@code today} and that is neither Completed nor
+     * already Delayed as Delayed (see {@link #markOverdue}); the result is complete on return.
+     */
+    @Override
+    public CompletableFuture<long[]> markOverdueTasks(LocalDate today) {
+        return CompletableFuture.completedFuture(markOverdue(today));
     }
-    
-    public void updatePriority(PriorityLevel oldPriority, PriorityLevel updatedPriority) {
-        // Update the priority in all tasks that use the old priority
-        for (Task task : tasks) {
-            if (task.getPriority() != null && task.getPriority().equals(oldPriority)) {
-                task.setPriority(updatedPriority);
+
+    /**
+     * Marks the overdue Tasks as Delayed. Only the expired part of the pending deadline index is walked.
+     *
+     * @return the ids of the Tasks that have just been marked Delayed
+     */
+    long[] markOverdue(LocalDate today) {
+        lock.writeLock().lock();
+        try {
+            List<Task> expired = new ArrayList<>();
+            for (TaskBitmap dayTasks : pendingTasksByDeadline.headMap(today, false).values()) {
+                expired.addAll(tasksOf(dayTasks.toArray()));
             }
+            // One bulk update, which also takes the Tasks out of the pending index
+            List<Task> delayed = updateTasks(expired, task -> task.setStatus(TaskStatus.DELAYED));
+            return delayed.stream().mapToLong(Task::getId).toArray();
+        } finally {
+            lock.writeLock().unlock();
         }
-        
-        // Update the priority in the priorities list
-        int index = priorities.indexOf(oldPriority);
-        if (index != -1) {
-            priorities.set(index, updatedPriority);
+    }
+
+    /**
+     * Returns the Tasks whose deadline is before {@code today} and that are not Completed,
+     * in deadline order.
+     */
+    public List<Task> getOverdueTasks(LocalDate today) {
+        lock.readLock().lock();
+        try {
+            List<Task> overdue = new ArrayList<>();
+            TaskBitmap completed = tasksByStatus[TaskStatus.COMPLETED.ordinal()];
+            for (TaskBitmap dayTasks : tasksByDeadline.headMap(today, false).values()) {
+                dayTasks.forEach(slot -> {
+                    if (!completed.contains(slot)) {
+                        overdue.add(tasksBySlot[slot]);
+                    }
+                });
+            }
+            return overdue;
+        } finally {
+            lock.readLock().unlock();
         }
     }
-    
-    public PriorityLevel findPriorityByTitle(String title) {
-        for (PriorityLevel priority : getPriorities()) {
-            if (priority.getTitle().equals(title)) {
-                return priority;
+
+    private static boolean canBecomeDelayed(Task task) {
+        return task.getDeadline() != null
+                && task.getStatus() != TaskStatus.COMPLETED
+                && task.getStatus() != TaskStatus.DELAYED;
+    }
+
+    private void indexTask(Task task, int slot) {
+        if (task.getCategory() != null) {
+            tasksByCategory.computeIfAbsent(task.getCategory(), _ -> new TaskBitmap()).add(slot);
+        }
+        if (task.getPriority() != null) {
+            tasksByPriority.computeIfAbsent(task.getPriority(), _ -> new TaskBitmap()).add(slot);
+        }
+        if (task.getStatus() != null) {
+            tasksByStatus[task.getStatus().ordinal()].add(slot);
+        }
+        if (task.getDeadline() != null) {
+            tasksByDeadline.computeIfAbsent(task.getDeadline(), _ -> new TaskBitmap()).add(slot);
+        }
+        if (canBecomeDelayed(task)) {
+            pendingTasksByDeadline.computeIfAbsent(task.getDeadline(), _ -> new TaskBitmap()).add(slot);
+        }
+    }
+
+    private void unindexTask(Task task, int slot) {
+        if (task.getCategory() != null) {
+            removeFromIndex(tasksByCategory, task.getCategory(), slot);
+        }
+        if (task.getPriority() != null) {
+            removeFromIndex(tasksByPriority, task.getPriority(), slot);
+        }
+        if (task.getStatus() != null) {
+            tasksByStatus[task.getStatus().ordinal()].remove(slot);
+        }
+        if (task.getDeadline() != null) {
+            removeFromIndex(tasksByDeadline, task.getDeadline(), slot);
+        }
+        if (canBecomeDelayed(task)) {
+            removeFromIndex(pendingTasksByDeadline, task.getDeadline(), slot);
+        }
+    }
+
+    private static <K> void removeFromIndex(Map<K, TaskBitmap> index, K key, int slot) {
+        TaskBitmap keyTasks = index.get(key);
+        if (keyTasks != null) {
+            keyTasks.remove(slot);
+            if (keyTasks.isEmpty()) {
+                index.remove(key);
             }
         }
-        return null;
     }
-    
+
+    /*
+     * Category Management Methods
+     *
+     * Categories are canonical (see EntityRegistry): addCategory() hands out the one instance per
+     * title, and renameCategory() changes that instance in place, so it is O(1) however many Tasks
+     * use it. The indexes are keyed by the instance's id, which a rename leaves alone.
+     */
+
+    /**
+     * Returns all Categories (immutable).
+     */
+    public List<Category> getCategories() {
+        List<Category> snapshot = categoriesSnapshot;
+        if (snapshot == null) {
+            lock.readLock().lock();
+            try {
+                snapshot = List.copyOf(categories.entities());
+                categoriesSnapshot = snapshot;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the Category with the given title, creating it if there is none yet.
+     */
+    public Category addCategory(String title) {
+        lock.writeLock().lock();
+        try {
+            Category category = categories.find(title);
+            if (category == null) {
+                category = categories.create(title);
+                categoriesSnapshot = null;
+                categoryCopies = null;
+                Category added = category;
+                notifyListeners(listener -> listener.categoryAdded(added));
+            }
+            return category;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteCategory(Category category) {
+        lock.writeLock().lock();
+        try {
+            // Remove the category from the registry
+            categories.remove(category);
+            categoriesSnapshot = null;
+            categoryCopies = null;
+
+            // Remove all tasks that are associated with this category
+            TaskBitmap categorySlots = tasksByCategory.remove(category);
+            List<Task> categoryTasks = List.of();
+            if (categorySlots != null) {
+                int[] slots = categorySlots.toArray();
+                categoryTasks = tasksOf(slots);
+                for (int i = 0; i < slots.length; i++) {
+                    Task task = categoryTasks.get(i);
+                    unindexTask(task, slots[i]);
+                    task.getReminders().forEach(remindersByDate::remove);
+                    releaseSlot(task, slots[i]);
+                }
+                tasksSnapshot = null;
+                remindersSnapshot = null;
+            }
+
+            List<Task> deletedTasks = categoryTasks;
+            notifyListeners(listener -> listener.categoryDeleted(category, deletedTasks));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Renames a Category; all of its Tasks see the new title at once.
+     *
+     * @return false if another Category already has the title (nothing is changed then)
+     */
+    public boolean renameCategory(Category category, String title) {
+        lock.writeLock().lock();
+        try {
+            String oldTitle = category.getTitle();
+            if (oldTitle.equals(title)) return true;
+            if (!categories.rename(category, title)) return false;
+            categoriesSnapshot = null;
+            categoryCopies = null;
+            notifyListeners(listener -> listener.categoryUpdated(oldTitle, category));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Category findCategoryByTitle(String title) {
+        lock.readLock().lock();
+        try {
+            return categories.find(title);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Priority Management Methods (canonical like the Categories)
+     */
+
+    /**
+     * Returns all Priorities (immutable).
+     */
+    public List<PriorityLevel> getPriorities() {
+        List<PriorityLevel> snapshot = prioritiesSnapshot;
+        if (snapshot == null) {
+            lock.readLock().lock();
+            try {
+                snapshot = List.copyOf(priorities.entities());
+                prioritiesSnapshot = snapshot;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the priority with the given title, creating it if there is none yet.
+     */
+    public PriorityLevel addPriority(String title) {
+        lock.writeLock().lock();
+        try {
+            PriorityLevel priority = priorities.find(title);
+            if (priority == null) {
+                priority = priorities.create(title);
+                prioritiesSnapshot = null;
+                priorityCopies = null;
+                PriorityLevel added = priority;
+                notifyListeners(listener -> listener.priorityAdded(added));
+            }
+            return priority;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deletePriority(PriorityLevel priority) {
+        lock.writeLock().lock();
+        try {
+            // Find the default priority
+            PriorityLevel defaultPriority = priorities.find("Default");
+
+            // Update all tasks with the deleted priority to the default priority
+            List<Task> reassignedTasks = reassignPriority(priority, defaultPriority);
+
+            // Remove the priority from the registry
+            priorities.remove(priority);
+            prioritiesSnapshot = null;
+            priorityCopies = null;
+            notifyListeners(listener -> listener.priorityDeleted(priority, reassignedTasks));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Renames a priority; all of its Tasks see the new title at once.
+     *
+     * @return false if another priority already has the title (nothing is changed then)
+     */
+    public boolean renamePriority(PriorityLevel priority, String title) {
+        lock.writeLock().lock();
+        try {
+            String oldTitle = priority.getTitle();
+            if (oldTitle.equals(title)) return true;
+            if (!priorities.rename(priority, title)) return false;
+            prioritiesSnapshot = null;
+            priorityCopies = null;
+            notifyListeners(listener -> listener.priorityUpdated(oldTitle, priority));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public PriorityLevel findPriorityByTitle(String title) {
+        lock.readLock().lock();
+        try {
+            return priorities.find(title);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves every Task of one priority to another, touching only the affected Tasks.
+     *
+     * @return the Tasks that were moved
+     */
+    private List<Task> reassignPriority(PriorityLevel from, PriorityLevel to) {
+        TaskBitmap prioritySlots = tasksByPriority.remove(from);
+        if (prioritySlots == null) return List.of();
+
+        int[] slots = prioritySlots.toArray();
+        List<Task> priorityTasks = tasksOf(slots);
+        for (int i = 0; i < slots.length; i++) {
+            priorityTasks.get(i).setPriority(to);
+            updateState(priorityTasks.get(i), slots[i]);
+        }
+        if (to != null) {
+            tasksByPriority.merge(to, prioritySlots, TaskBitmap::or);
+        }
+        return priorityTasks;
+    }
+
     /*
      * Reminder Management Methods
      */
-    
-    /* 
-     * Slightly different from getCategories and getPriorities
+
+    /**
+     * Returns the Reminders of all Tasks sorted by date (immutable).
+     * Each Reminder knows its Task through {@link Reminder#getTask()}.
+     * The Reminders are the live instances, so read them on the mutation thread only.
      */
-    public List<Reminder> getReminders() {
-        List<Reminder> reminders = new ArrayList<>();
-        for (Task task : tasks) {
-            if (task.getReminders() != null) {
-                reminders.addAll(task.getReminders());
+    public NavigableSet<Reminder> getReminders() {
+        NavigableSet<Reminder> snapshot = remindersSnapshot;
+        if (snapshot == null) {
+            lock.readLock().lock();
+            try {
+                snapshot = Collections.unmodifiableNavigableSet(new TreeSet<>(remindersByDate));
+                remindersSnapshot = snapshot;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    public void addReminder(Task task, Reminder reminder) {
+        lock.writeLock().lock();
+        try {
+            task.addReminder(reminder);
+            remindersByDate.add(reminder);
+            remindersSnapshot = null;
+            reminderChanged(task);
+            notifyListeners(listener -> listener.reminderAdded(task, reminder));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateReminder(Task task, Reminder reminder, LocalDate date, String message) {
+        lock.writeLock().lock();
+        try {
+            // The date is the sort key, so the Reminder is re-inserted around the change
+            boolean indexed = remindersByDate.remove(reminder);
+            reminder.setDate(date);
+            reminder.setMessage(message);
+            if (indexed) {
+                remindersByDate.add(reminder);
+            }
+            remindersSnapshot = null;
+            reminderChanged(task);
+            notifyListeners(listener -> listener.reminderUpdated(task, reminder));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void deleteReminder(Task task, Reminder reminder) {
+        lock.writeLock().lock();
+        try {
+            int index = task.removeReminder(reminder);
+            if (index != -1) {
+                remindersByDate.remove(reminder);
+                remindersSnapshot = null;
+                reminderChanged(task);
+                notifyListeners(listener -> listener.reminderDeleted(task, reminder, index));
             }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reminders are part of their Task's state.
+     */
+    private void reminderChanged(Task task) {
+        int slot = slotOf(task);
+        if (slot != -1) {
+            updateState(task, slot);
         }
-        return reminders;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package com.medialab.services;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+
+/*
+ * Receives a callback after every mutation made through the TaskManager.
+ * All methods have empty defaults, so implementations only override what they need.
+ *
+ * (!) Cascades are reported once, on the entity that caused them
+ * (e.g. deleting a Category reports the removed Tasks along with it).
+ */
+public interface TaskManagerListener {
+
+    /*
+     * Tasks
+     */
+    default void taskAdded(Task task) {}
+
+    default void taskUpdated(Task task) {}
+
+    default void taskDeleted(Task task) {}
+
+    /*
+     * Bulk changes: a whole batch in one event.
+     * By default, each Task is reported to the single-Task method instead.
+     */
+
+    /**
+     * @param tasks the added Tasks, in list order (they are at the end of the list)
+     */
+    default void tasksAdded(List<Task> tasks) {
+        tasks.forEach(this::taskAdded);
+    }
+
+    /**
+     * @param tasks Tasks whose status, category or priority has changed
+     */
+    default void tasksUpdated(List<Task> tasks) {
+        tasks.forEach(this::taskUpdated);
+    }
+
+    /**
+     * A bulk edit that also deleted Reminders of the edited Tasks (see {@link TaskManager#editTasks}).
+     * By default, each Reminder is reported to reminderDeleted first, then the Tasks to tasksUpdated.
+     *
+     * @param tasks            Tasks whose status, category or priority has changed
+     * @param removedReminders the Reminders deleted from them, in the order they were deleted
+     */
+    default void tasksUpdated(List<Task> tasks, List<RemovedReminder> removedReminders) {
+        removedReminders.forEach(removed -> reminderDeleted(removed.task(), removed.reminder(), removed.index()));
+        tasksUpdated(tasks);
+    }
+
+    /**
+     * @param tasks the deleted Tasks, in list order
+     */
+    default void tasksDeleted(List<Task> tasks) {
+        tasks.forEach(this::taskDeleted);
+    }
+
+    /**
+     * A Reminder deleted by a bulk change: the Task it belonged to (it no longer knows it itself),
+     * and the position it had in that Task's reminder list when it was removed.
+     */
+    record RemovedReminder(Task task, Reminder reminder, int index) {}
+
+    /*
+     * Categories
+     */
+    default void categoryAdded(Category category) {}
+
+    default void categoryUpdated(String oldTitle, Category updatedCategory) {}
+
+    default void categoryDeleted(Category category, Collection<Task> deletedTasks) {}
+
+    /*
+     * Priorities
+     */
+    default void priorityAdded(PriorityLevel priority) {}
+
+    default void priorityUpdated(String oldTitle, PriorityLevel updatedPriority) {}
+
+    default void priorityDeleted(PriorityLevel priority, Collection<Task> reassignedTasks) {}
+
+    /*
+     * Reminders
+     */
+    default void reminderAdded(Task task, Reminder reminder) {}
+
+    default void reminderUpdated(Task task, Reminder reminder) {}
+
+    /**
+     * @param index the position the Reminder had in the Task's reminder list before it was removed
+     */
+    default void reminderDeleted(Task task, Reminder reminder, int index) {}
+
+    /**
+     * @param reminders the added Reminders (each knows its Task)
+     */
+    default void remindersAdded(List<Reminder> reminders) {
+        reminders.forEach(reminder -> reminderAdded(reminder.getTask(), reminder));
+    }
+}
@@ -0,0 +1,78 @@
+package com.medialab.services;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+/**
+ * The queries that the UI and the API run over all Tasks: paged lists, counts, and looking up one
+ * Task to change it.
+ * <p>
+ * The {@link TaskManager} answers them from memory. A store that does not keep every Task in the
+ * TaskManager answers them from where the Tasks are (see {@link TaskStore#queries}), so nothing
+ * has to be loaded as a whole.
+ * <p>
+ * {@link #findTasks}, {@link #findTasksByIds}, {@link #countTasks} and {@link #getDueSoonCount}
+ * may be called from any thread; the Tasks they return are detached copies, so reading one never
+ * brings it into the TaskManager. {@link #getTaskById}, {@link #getTasksByIds} and
+ * {@link #markOverdueTasks} must be called on the thread that mutates the TaskManager;
+ * the first two return the live Tasks to change.
+ */
+public interface TaskQueries {
+
+    /**
+     * One page of a query's results, and the number of results of the whole query.
+     */
+    record Page(List<Task> tasks, int total) {}
+
+    /**
+     * Returns one page of the Tasks whose title or description contains {@code text}, ignoring
+     * case, and that have the given category, priority and status (any of them may be null, to not
+     * filter on it). Ranked like {@link TaskManager#searchTasks}; without text, in list order (id
+     * order in a database). The Tasks are detached copies, with the canonical categories and priorities.
+     */
+    Page findTasks(String text, Category category, PriorityLevel priority, TaskStatus status, int offset, int limit);
+
+    /**
+     * Counts the Tasks that have the given category, priority and status (any of them may be null).
+     */
+    int countTasks(Category category, PriorityLevel priority, TaskStatus status);
+
+    /**
+     * Returns the number of Tasks whose deadline is within the 7 days starting at {@code today}.
+     */
+    int getDueSoonCount(LocalDate today);
+
+    /**
+     * Returns detached copies of the Tasks with the given ids, in the order of the ids. Ids without
+     * a Task are skipped.
+     */
+    List<Task> findTasksByIds(long... ids);
+
+    /**
+     * Returns the live Task with the given id, to change it through the TaskManager, or null if
+     * there is none (anymore).
+     */
+    Task getTaskById(long id);
+
+    /**
+     * Like {@link #getTaskById} for several ids (e.g. a selection), in the order of the ids; a store
+     * reads the ones the TaskManager does not have with one query.
+     */
+    List<Task> getTasksByIds(long... ids);
+
+    /**
+     * Marks every Task whose deadline is before {@code today} and that is neither Completed nor
+     * already Delayed as Delayed. The Tasks in the TaskManager are marked before this returns; a
+     * store marks the other stored Tasks in the background, without reading them, and the caller
+     * never waits for it.
+     *
+     * @return completes with the ids of the Tasks that have just been marked Delayed
+     */
+    CompletableFuture<long[]> markOverdueTasks(LocalDate today);
+}
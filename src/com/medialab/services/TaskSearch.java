@@ -0,0 +1,93 @@
+package com.medialab.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.medialab.models.Task;
+
+/**
+ * A text search over a TaskManager that runs in pages, so it can be spread over time, run on a
+ * background thread, and abandoned half-way.
+ * <p>
+ * The candidate slots (from the trigram index) and the category/priority filter are fixed when the
+ * search is created. Each {@link #nextPage} then checks the next batch of candidates under the
+ * TaskManager's read lock, which is released between pages so mutations are never held up for
+ * long. Tasks changed in between are checked in their current state; Tasks deleted in between
+ * are skipped.
+ * <p>
+ * Results are ranked like {@link TaskManager#searchTasks}: title prefix matches first, then other
+ * title matches, then description-only matches.
+ */
+public class TaskSearch {
+    private final TaskManager taskManager;
+    private final String needle;
+    private final int[] candidates;
+    private int position;
+
+    private final List<Task> prefixMatches = new ArrayList<>();
+    private final List<Task> titleMatches = new ArrayList<>();
+    private final List<Task> descriptionMatches = new ArrayList<>();
+
+    TaskSearch(TaskManager taskManager, String needle, int[] candidates) {
+        this.taskManager = taskManager;
+        this.needle = needle;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Checks up to {@code pageSize} more candidates.
+     *
+     * @return true if there are candidates left to check
+     */
+    public boolean nextPage(int pageSize) {
+        int end = (int) Math.min(candidates.length, (long) position + pageSize);
+        taskManager.checkCandidates(this, candidates, position, end);
+        position = end;
+        return !isDone();
+    }
+
+    public boolean isDone() {
+        return position >= candidates.length;
+    }
+
+    /**
+     * Runs the remaining pages and returns all results.
+     */
+    public List<Task> runToEnd() {
+        while (nextPage(Integer.MAX_VALUE)) {
+            // Nothing to do between pages
+        }
+        return getResults();
+    }
+
+    /**
+     * Returns the results found so far, ranked.
+     */
+    public List<Task> getResults() {
+        List<Task> results = new ArrayList<>(getResultCount());
+        results.addAll(prefixMatches);
+        results.addAll(titleMatches);
+        results.addAll(descriptionMatches);
+        return results;
+    }
+
+    public int getResultCount() {
+        return prefixMatches.size() + titleMatches.size() + descriptionMatches.size();
+    }
+
+    public int getCandidateCount() {
+        return candidates.length;
+    }
+
+    String getNeedle() {
+        return needle;
+    }
+
+    void addMatch(Task task, int rank) {
+        switch (rank) {
+            case 0 -> prefixMatches.add(task);
+            case 1 -> titleMatches.add(task);
+            default -> descriptionMatches.add(task);
+        }
+    }
+}
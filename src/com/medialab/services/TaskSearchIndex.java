@@ -0,0 +1,195 @@
+package com.medialab.services;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.medialab.models.Task;
+
+/**
+ * Inverted trigram index over the title and description of every Task, for substring search.
+ * <p>
+ * Tasks are identified by their dense TaskManager slot (not their persistent id). For every
+ * trigram (three consecutive characters of the lower-cased text) a {@link TaskBitmap} of the slots
+ * containing it is kept, so adding or removing a slot never shifts more than one small container.
+ * Trigrams are mapped to their posting without boxing, through a {@link TaskIdMap} from the
+ * trigram (as a positive long) to the posting's index. A query is answered by intersecting the
+ * postings of its trigrams, smallest first, and checking only the remaining candidates with
+ * {@code contains}. Queries shorter than a trigram fall back to a scan of the (already
+ * lower-cased) texts.
+ * <p>
+ * Changes are applied incrementally: only the trigrams that a Task gains or loses are touched.
+ */
+class TaskSearchIndex {
+    private static final int NGRAM = 3;
+
+    // Trigram -> index in postings; the indexes of emptied postings are reused
+    private final TaskIdMap postingIndexes = new TaskIdMap();
+    private TaskBitmap[] postings = new TaskBitmap[16];
+    private int[] freeIndexes = new int[16];
+    private int freeCount;
+    private int postingLimit;
+
+    // Per id: the lower-cased title and description (null for ids that are not indexed)
+    private String[] titles = new String[16];
+    private String[] descriptions = new String[16];
+    private int idLimit; // all indexed ids are below this
+
+    void add(int id, Task task) {
+        if (id >= titles.length) {
+            int length = Math.max(id + 1, titles.length * 2);
+            titles = Arrays.copyOf(titles, length);
+            descriptions = Arrays.copyOf(descriptions, length);
+        }
+        if (titles[id] != null) return;
+
+        idLimit = Math.max(idLimit, id + 1);
+        titles[id] = normalize(task.getTitle());
+        descriptions[id] = normalize(task.getDescription());
+
+        for (long trigram : trigrams(titles[id], descriptions[id])) {
+            addPosting(trigram, id);
+        }
+    }
+
+    /**
+     * Re-indexes the title and description of a Task, touching only the trigrams that changed.
+     */
+    void update(int id, Task task) {
+        if (id >= titles.length || titles[id] == null) {
+            add(id, task);
+            return;
+        }
+
+        String title = normalize(task.getTitle());
+        String description = normalize(task.getDescription());
+        if (title.equals(titles[id]) && description.equals(descriptions[id])) return;
+
+        long[] before = trigrams(titles[id], descriptions[id]);
+        long[] after = trigrams(title, description);
+        for (long trigram : before) {
+            if (Arrays.binarySearch(after, trigram) < 0) removePosting(trigram, id);
+        }
+        for (long trigram : after) {
+            if (Arrays.binarySearch(before, trigram) < 0) addPosting(trigram, id);
+        }
+        titles[id] = title;
+        descriptions[id] = description;
+    }
+
+    void remove(int id) {
+        if (id >= titles.length || titles[id] == null) return;
+
+        for (long trigram : trigrams(titles[id], descriptions[id])) {
+            removePosting(trigram, id);
+        }
+        titles[id] = null;
+        descriptions[id] = null;
+    }
+
+    /**
+     * Returns the ids that may contain {@code needle}: those having all its trigrams, or every
+     * indexed id if the needle is too short to use the index.
+     */
+    int[] candidates(String needle) {
+        int[] candidates = intersectPostings(needle);
+        return candidates != null ? candidates : allIds();
+    }
+
+    /**
+     * Ranks how an id matches {@code needle}: 0 if its title starts with it, 1 if its title
+     * contains it, 2 if only its description does, and -1 if it does not match (or is not indexed).
+     */
+    int matchRank(int id, String needle) {
+        if (id >= titles.length || titles[id] == null) return -1;
+        if (titles[id].startsWith(needle)) return 0;
+        if (titles[id].contains(needle)) return 1;
+        if (descriptions[id].contains(needle)) return 2;
+        return -1;
+    }
+
+    private int[] allIds() {
+        int[] ids = new int[idLimit];
+        for (int id = 0; id < idLimit; id++) ids[id] = id;
+        return ids;
+    }
+
+    /**
+     * Intersects the posting lists of the query's trigrams.
+     *
+     * @return the candidate ids, or null if the query is too short to use the index
+     */
+    private int[] intersectPostings(String needle) {
+        if (needle.length() < NGRAM) return null;
+
+        long[] queryTrigrams = trigrams(needle);
+        TaskBitmap[] lists = new TaskBitmap[queryTrigrams.length];
+        for (int i = 0; i < queryTrigrams.length; i++) {
+            int index = postingIndexes.get(queryTrigrams[i]);
+            if (index < 0) return new int[0];
+            lists[i] = postings[index];
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+
+        TaskBitmap result = lists[0];
+        for (int i = 1; i < lists.length && !result.isEmpty(); i++) {
+            result = TaskBitmap.and(result, lists[i]);
+        }
+        return result.toArray();
+    }
+
+    private void addPosting(long trigram, int id) {
+        int index = postingIndexes.get(trigram);
+        if (index < 0) {
+            if (freeCount > 0) {
+                index = freeIndexes[--freeCount];
+            } else {
+                if (postingLimit == postings.length) postings = Arrays.copyOf(postings, postingLimit * 2);
+                index = postingLimit++;
+            }
+            postings[index] = new TaskBitmap();
+            postingIndexes.put(trigram, index);
+        }
+        postings[index].add(id);
+    }
+
+    private void removePosting(long trigram, int id) {
+        int index = postingIndexes.get(trigram);
+        if (index < 0) return;
+        postings[index].remove(id);
+        if (postings[index].isEmpty()) {
+            postingIndexes.remove(trigram);
+            postings[index] = null;
+            if (freeCount == freeIndexes.length) freeIndexes = Arrays.copyOf(freeIndexes, freeCount * 2);
+            freeIndexes[freeCount++] = index;
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of the given texts, sorted. Trigrams never span two texts.
+     * Each is its three characters packed into the low 48 bits, with bit 48 set so that it is a
+     * valid (positive) {@link TaskIdMap} key.
+     */
+    private static long[] trigrams(String... texts) {
+        int total = 0;
+        for (String text : texts) total += Math.max(0, text.length() - NGRAM + 1);
+
+        long[] trigrams = new long[total];
+        int count = 0;
+        for (String text : texts) {
+            for (int i = 0; i + NGRAM <= text.length(); i++) {
+                trigrams[count++] = (1L << 48) | ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+            }
+        }
+
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) trigrams[distinct++] = trigrams[i];
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    static String normalize(String text) {
+        return text != null ? text.toLowerCase(Locale.ROOT) : "";
+    }
+}
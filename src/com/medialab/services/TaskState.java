@@ -0,0 +1,44 @@
+package com.medialab.services;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+/**
+ * Immutable copy of a Task's fields, as the TaskManager keeps it for its snapshots.
+ * <p>
+ * The category and priority are the TaskManager's own (canonical, renamable) instances, so that a
+ * rename does not have to touch any state; a Snapshot swaps in its copies of them, made when it
+ * was taken, when it turns the states back into Tasks.
+ */
+record TaskState(long id, String title, String description, Category category, PriorityLevel priority,
+                 LocalDate deadline, TaskStatus status, List<ReminderState> reminders) {
+
+    record ReminderState(long id, LocalDate date, String message) {}
+
+    static TaskState of(Task task) {
+        List<ReminderState> reminders = task.getReminders().isEmpty() ? List.of()
+                : task.getReminders().stream().map(reminder -> new ReminderState(reminder.getId(), reminder.getDate(), reminder.getMessage())).toList();
+        return new TaskState(task.getId(), task.getTitle(), task.getDescription(), task.getCategory(), task.getPriority(),
+                task.getDeadline(), task.getStatus(), reminders);
+    }
+
+    /**
+     * Creates a new Task (with new Reminders, which keep their ids) from this state.
+     */
+    Task toTask(Function<Category, Category> categoryCopy, Function<PriorityLevel, PriorityLevel> priorityCopy) {
+        Task task = new Task(title, description, category != null ? categoryCopy.apply(category) : null,
+                priority != null ? priorityCopy.apply(priority) : null, deadline, status);
+        task.setId(id);
+        for (ReminderState reminder : reminders) {
+            task.addReminder(new Reminder(reminder.id(), reminder.date(), reminder.message()));
+        }
+        return task;
+    }
+}
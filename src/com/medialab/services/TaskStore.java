@@ -0,0 +1,89 @@
+package com.medialab.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Where the TaskManager's data is kept between runs.
+ * <p>
+ * A store is used in this order: one of the load methods fills the (empty) TaskManager,
+ * {@link #open} starts persisting its changes, and {@link #close} writes whatever is still
+ * unsaved when the app stops. All of them must be called on the thread that mutates the TaskManager,
+ * except for {@link #loadDataInBatches}, which hands its work over to that thread.
+ * <p>
+ * Implementations: the {@link DataManager} (a JSON or binary snapshot file, or shards, plus a
+ * journal) and the {@link H2TaskStore} (an embedded database that is updated row by row).
+ * {@link #configured()} picks one by the {@value #STORE_PROPERTY} system property.
+ */
+public interface TaskStore {
+    String STORE_PROPERTY = "medialab.store";
+
+    /**
+     * Returns the store selected by the {@value #STORE_PROPERTY} system property:
+     * an {@link H2TaskStore} for {@code h2}, the {@link DataManager} otherwise.
+     */
+    static TaskStore configured() {
+        return "h2".equalsIgnoreCase(System.getProperty(STORE_PROPERTY)) ? new H2TaskStore() : new DataManager();
+    }
+
+    /**
+     * Loads the stored data into the TaskManager.
+     *
+     * @throws IllegalStateException if the data cannot be loaded completely; the TaskManager then
+     *                               only holds part of it, and the store will not save over it
+     */
+    void loadData(TaskManager taskManager);
+
+    /**
+     * Loads like {@link #loadData}, but without blocking the calling thread: the data is read on a
+     * background thread and added to the TaskManager in batches of {@code batchSize} through
+     * {@code mutationExecutor}, which must run tasks on the thread that mutates the TaskManager.
+     *
+     * @param progress called on the mutation thread after each batch, with the number of Tasks loaded so far
+     * @return completed on the mutation thread, when the data is fully loaded, or completed
+     *         exceptionally if it cannot be loaded (see {@link #loadData})
+     */
+    CompletableFuture<Void> loadDataInBatches(TaskManager taskManager, Executor mutationExecutor,
+                                              int batchSize, IntConsumer progress);
+
+    /**
+     * Starts persisting every change of the (loaded) TaskManager.
+     *
+     * @param saveInterval     how often changes are saved at most, for stores that save in the background
+     * @param mutationExecutor runs tasks on the thread that mutates the TaskManager
+     */
+    void open(TaskManager taskManager, Duration saveInterval, Executor mutationExecutor);
+
+    /**
+     * Writes any unsaved changes, waiting at most {@code timeout}, and stops persisting.
+     *
+     * @return true if all changes were written within the timeout
+     */
+    boolean close(Duration timeout);
+
+    /**
+     * Returns what answers the list, filter and count queries over all stored Tasks: the
+     * TaskManager itself, for stores that load every Task into it. Call it once the store is open.
+     */
+    default TaskQueries queries(TaskManager taskManager) {
+        return taskManager;
+    }
+
+    /**
+     * Sets what is told, on a background thread, when the store can no longer save the changes
+     * (e.g. a database write failed). Stores that report their failures otherwise ignore it.
+     */
+    default void setFailureListener(Consumer<? super Exception> listener) {}
+
+    /**
+     * Returns the last date whose Reminders have been fired by the {@link ReminderScheduler},
+     * or null if none have been fired yet.
+     */
+    LocalDate loadReminderWatermark();
+
+    void saveReminderWatermark(LocalDate firedThrough);
+}
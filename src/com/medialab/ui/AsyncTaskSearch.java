@@ -0,0 +1,129 @@
+package com.medialab.ui;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Task;
+import com.medialab.services.TaskManager;
+import com.medialab.services.TaskSearch;
+
+/**
+ * Runs Task searches on a background thread, so typing in the search field never blocks the UI.
+ * <p>
+ * Searches requested while typing are debounced: only the last one of a quick burst is started.
+ * A new search (or {@link #cancel()}) supersedes the previous one, which stops at its next page;
+ * results of a superseded search are never delivered. Large searches deliver their first results
+ * as soon as they are found, and then the growing result list at most every
+ * {@link #PUBLISH_INTERVAL_MILLIS}, until the complete results.
+ */
+class AsyncTaskSearch {
+    private static final long DEBOUNCE_MILLIS = 200;
+    private static final long PUBLISH_INTERVAL_MILLIS = 100;
+    // Candidates checked per read lock of the TaskManager
+    private static final int PAGE_SIZE = 20_000;
+
+    private final TaskManager taskManager;
+    private final Executor resultExecutor;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Incremented by every new search and cancel; a search only runs while it is the current one
+    private final AtomicLong generation = new AtomicLong();
+
+    // Guarded by this
+    private ScheduledFuture<?> pendingSearch;
+
+    /**
+     * @param resultExecutor runs the result callbacks (e.g. {@code Platform::runLater})
+     */
+    AsyncTaskSearch(TaskManager taskManager, Executor resultExecutor) {
+        this.taskManager = taskManager;
+        this.resultExecutor = resultExecutor;
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts a search after a short pause, unless another one is requested in the meantime.
+     */
+    void searchLater(String text, Category category, PriorityLevel priority, Consumer<List<Task>> onResults) {
+        schedule(text, category, priority, onResults, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Starts a search right away.
+     */
+    void search(String text, Category category, PriorityLevel priority, Consumer<List<Task>> onResults) {
+        schedule(text, category, priority, onResults, 0);
+    }
+
+    /**
+     * Abandons the current search; none of its (remaining) results will be delivered.
+     */
+    synchronized void cancel() {
+        generation.incrementAndGet();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+    }
+
+    void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private synchronized void schedule(String text, Category category, PriorityLevel priority,
+            Consumer<List<Task>> onResults, long delayMillis) {
+        cancel();
+        long searchGeneration = generation.get();
+        pendingSearch = executor.schedule(() -> run(searchGeneration, text, category, priority, onResults),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Runs on the search thread.
+     */
+    private void run(long searchGeneration, String text, Category category, PriorityLevel priority,
+            Consumer<List<Task>> onResults) {
+        try {
+            TaskSearch search = taskManager.newSearch(text, category, priority);
+            long lastPublish = 0;
+            int published = 0;
+            while (search.nextPage(PAGE_SIZE)) {
+                if (generation.get() != searchGeneration) return;
+
+                long now = System.nanoTime();
+                boolean firstResults = published == 0 && search.getResultCount() > 0;
+                boolean intervalPassed = published > 0 && now - lastPublish >= TimeUnit.MILLISECONDS.toNanos(PUBLISH_INTERVAL_MILLIS);
+                if ((firstResults || intervalPassed) && search.getResultCount() != published) {
+                    published = search.getResultCount();
+                    lastPublish = now;
+                    publish(searchGeneration, search.getResults(), onResults);
+                }
+            }
+            publish(searchGeneration, search.getResults(), onResults);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void publish(long searchGeneration, List<Task> results, Consumer<List<Task>> onResults) {
+        if (generation.get() != searchGeneration) return;
+        resultExecutor.execute(() -> {
+            // Checked again on delivery, in case a newer search was started in the meantime
+            if (generation.get() == searchGeneration) onResults.accept(results);
+        });
+    }
+}
@@ -1,54 +1,141 @@
 package com.medialab.ui;
 
-import com.medialab.services.DataManager;
-
-import com.medialab.models.Task;
-import com.medialab.models.Category;
-import com.medialab.models.PriorityLevel;
+import com.medialab.services.DeadlineScheduler;
+import com.medialab.services.ReminderScheduler;
+import com.medialab.services.TaskQueries;
+import com.medialab.services.TaskStore;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import java.util.List;
+import java.time.Clock;
+import java.time.Duration;
 
 public class Main extends Application {
-    private DataManager dataManager = new DataManager();
+    // Startup timings and refresh counts are logged at DEBUG (java.util.logging: FINE) level
+    private static final System.Logger LOGGER = System.getLogger(Main.class.getName());
+
+    private static final String TITLE = "MediaLab Assistant";
+    // Number of Tasks added to the TaskManager per frame while loading
+    private static final int LOAD_BATCH_SIZE = 5_000;
+    // How often unsaved changes are written to data.json in the background
+    private static final Duration AUTOSAVE_INTERVAL = Duration.ofSeconds(10);
+    // How long closing the app may wait for the last background save
+    private static final Duration CLOSE_SAVE_TIMEOUT = Duration.ofSeconds(5);
+
+    // data.json by default, or the H2 database with -Dmedialab.store=h2
+    private TaskStore taskStore = TaskStore.configured();
     private MainController mainController;
+    private DeadlineScheduler deadlineScheduler;
+    private ReminderScheduler reminderScheduler;
 
     @Override
     public void start(Stage primaryStage) throws Exception {
+        long startNanos = System.nanoTime();
+
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/main.fxml"));
         Scene scene = new Scene(loader.load());
-        primaryStage.setTitle("MediaLab Assistant");
+        primaryStage.setTitle(TITLE + " - Loading...");
         primaryStage.setScene(scene);
-        
-        // Get the controller and set initial data
         mainController = loader.getController();
-        dataManager.loadData(mainController.getTaskManager());
+
+        // Record when the first frame is laid out
+        Runnable firstFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                LOGGER.log(System.Logger.Level.DEBUG, () -> "Startup: first frame after " + millisSince(startNanos) + " ms");
+            }
+        };
+        scene.addPostLayoutPulseListener(firstFrame);
+
+        // Show the window right away; the data is loaded in the background and appears batch by batch
+        mainController.onLoadStarted();
+        primaryStage.setOnCloseRequest(_ -> onAppClose());
+        primaryStage.show();
+
+        // Warn the user once the store can no longer save the changes
+        taskStore.setFailureListener(e -> Platform.runLater(() -> mainController.onStoreFailed(e)));
+
+        taskStore.loadDataInBatches(mainController.getTaskManager(), Platform::runLater, LOAD_BATCH_SIZE,
+                loadedTasks -> {
+                    primaryStage.setTitle(TITLE + " - Loading... (" + loadedTasks + " tasks)");
+                    mainController.onLoadProgress();
+                })
+                .whenComplete((_, failure) -> {
+                    primaryStage.setTitle(TITLE);
+                    if (failure != null) {
+                        // Nothing is started on partly loaded data, so nothing is saved over the stored data
+                        failure.printStackTrace();
+                        mainController.onLoadFailed(failure);
+                        return;
+                    }
+                    LOGGER.log(System.Logger.Level.DEBUG, () -> "Startup: fully loaded after " + millisSince(startNanos)
+                            + " ms (" + mainController.getTaskManager().getTaskCount() + " tasks, "
+                            + refreshCounts() + ")");
+                    onDataLoaded();
+                })
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                });
+    }
+
+    /*
+     * Runs on the JavaFX application thread, once the data has been loaded.
+     */
+    private void onDataLoaded() {
+        // From now on, every change is saved as it happens (to the journal, or to the database)
+        taskStore.open(mainController.getTaskManager(), AUTOSAVE_INTERVAL, Platform::runLater);
         
-        // Force UI Update After Loading Data
-        mainController.updateUI();
+        // Lists, searches and counters are answered by the store (the H2 database has more Tasks than the TaskManager)
+        TaskQueries queries = taskStore.queries(mainController.getTaskManager());
+
+        // Enable the UI; the lists already follow every change
+        mainController.onDataLoaded(queries);
         
         /*
          *  First, Update Tasks whose deadlines have passed -> to Delayed
          *  Then, show Popup with the number of currently Delayed Tasks.
          */
         mainController.checkAndUpdateDelayedTasks();
-        
-        // Save tasks and categories when the application closes
-        primaryStage.setOnCloseRequest(_ -> onAppClose());
-        primaryStage.show();
+
+        // Repeat the Delayed check at every midnight while the app keeps running
+        deadlineScheduler = new DeadlineScheduler(queries, Platform::runLater,
+                mainController::onDayRollover, Clock.systemDefaultZone());
+        deadlineScheduler.start();
+
+        // Fire Reminders on their date (the ones missed while the app was closed, right away)
+        reminderScheduler = new ReminderScheduler(mainController.getTaskManager(), Clock.systemDefaultZone(),
+                taskStore.loadReminderWatermark(), Platform::runLater,
+                mainController::onRemindersDue, taskStore::saveReminderWatermark);
+        reminderScheduler.start();
     }
 
     private void onAppClose() {
-        if (mainController != null) {
-            List<Task> tasksToSave = mainController.getTasks();
-            List<Category> categoriesToSave = mainController.getCategories();
-            List<PriorityLevel> prioritiesToSave = mainController.getPriorities();
-            dataManager.saveData(tasksToSave, categoriesToSave, prioritiesToSave);
-        }
+        mainController.stopSearch();
+        LOGGER.log(System.Logger.Level.DEBUG, () -> "Closing: " + refreshCounts());
+
+        // Closed while still loading: nothing has been started, and nothing changed yet
+        if (deadlineScheduler == null) return;
+        deadlineScheduler.stop();
+        reminderScheduler.stop();
+
+        // Unsaved changes that miss the timeout are still safe in the journal
+        taskStore.close(CLOSE_SAVE_TIMEOUT);
+    }
+
+    private String refreshCounts() {
+        RefreshScheduler refreshScheduler = mainController.getRefreshScheduler();
+        return refreshScheduler.getRefreshCount() + " UI refreshes, " + refreshScheduler.getMergedCount()
+                + " refresh requests merged into them";
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
     }
 
     public static void main(String[] args) {
@@ -4,16 +4,28 @@ import com.medialab.models.Task;
 import com.medialab.models.Category;
 import com.medialab.models.PriorityLevel;
 import com.medialab.models.Reminder;
+import com.medialab.models.TaskStatus;
 
+import com.medialab.services.ReminderScheduler.FiredReminder;
 import com.medialab.services.TaskManager;
+import com.medialab.services.TaskQueries;
 
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class MainController {
 	// List Views for Tasks, Categories, Priorities, Reminders.
@@ -26,6 +38,10 @@ public class MainController {
     @FXML private TextField searchTitleField;
     @FXML private ComboBox<Category> searchCategoryComboBox;
     @FXML private ComboBox<PriorityLevel> searchPriorityComboBox;
+
+    // Paging (only shown when the store pages the Tasks)
+    @FXML private HBox pagingBox;
+    @FXML private Label pageLabel;
     
     // Task Inputs
     @FXML private TextField taskTitleField;
@@ -33,7 +49,7 @@ public class MainController {
     @FXML private ComboBox<Category> taskCategoryComboBox;
     @FXML private ComboBox<PriorityLevel> taskPriorityComboBox;
     @FXML private DatePicker taskDeadlinePicker;
-    @FXML private ComboBox<String> taskStatusComboBox;
+    @FXML private ComboBox<TaskStatus> taskStatusComboBox;
     
     // Category Inputs
     @FXML private TextField categoryTitleField;
@@ -52,7 +68,26 @@ public class MainController {
     @FXML private Label delayedTasksLabel;
     @FXML private Label dueSoonTasksLabel;
 
+    // Titles listed at most in a confirmation or an alert (followed by the number of the others)
+    private static final int MAX_LISTED_TITLES = 20;
+
     private TaskManager taskManager;
+    private TaskManagerLists lists;
+
+    // Answers the lists and counters: the TaskManager, or a store that keeps the Tasks elsewhere
+    private TaskQueries queries;
+    // The Task list, when the queries are not answered by the TaskManager (null otherwise)
+    private PagedTaskList pagedTasks;
+
+    // At most one refresh of each part of the UI per frame
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler();
+    private RefreshScheduler.View summaryView;
+
+    // Searches run in the background, while typing
+    private AsyncTaskSearch taskSearch;
+
+    // Several Tasks are selected: an empty priority or status field leaves that field unchanged
+    private boolean bulkEdit;
 
     public void initialize() {
     	
@@ -62,15 +97,13 @@ public class MainController {
          * Ensure the default priority exists.
          * On the first ever load of the app, the "Default" Priority is added. 
          */
-        PriorityLevel defaultPriority = new PriorityLevel("Default");
-        if (!taskManager.getPriorities().contains(defaultPriority)) {
-            taskManager.addPriority(defaultPriority);
-        }
+        taskManager.addPriority("Default");
+        queries = taskManager;
 
         // Populate the ComboBox with valid status options
-        taskStatusComboBox.getItems().addAll("Open", "In Progress", "Postponed", "Completed", "Delayed");
+        taskStatusComboBox.getItems().addAll(TaskStatus.values());
         // Set the default Status to "Open".
-        taskStatusComboBox.setValue("Open");
+        taskStatusComboBox.setValue(TaskStatus.OPEN);
 
         // Populate the Reminder ComboBox with reminder types
         reminderDateComboBox.getItems().addAll(
@@ -79,59 +112,241 @@ public class MainController {
             "One month before deadline",
             "Specific date"
         );
+
+        /*
+         * Bind the List Views and ComboBoxes to the observable lists once.
+         * From then on, every change of the TaskManager only updates the affected rows.
+         */
+        lists = new TaskManagerLists(taskManager, refreshScheduler);
+        summaryView = refreshScheduler.register("summary", this::updateSummary);
+        tasksListView.setItems(lists.getTasks());
+        tasksListView.setCellFactory(_ -> new TaskCell(lists::getTaskText));
+        // Several Tasks can be selected, to delete them or change them all at once
+        tasksListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        tasksListView.getSelectionModel().getSelectedItems()
+                .addListener((ListChangeListener<Task>) _ -> updateBulkEditFields());
+        categoryListView.setItems(lists.getCategories());
+        priorityListView.setItems(lists.getPriorities());
+        reminderListView.setItems(lists.getReminders());
+        taskCategoryComboBox.setItems(lists.getCategories());
+        taskPriorityComboBox.setItems(lists.getPriorities());
+        searchCategoryComboBox.setItems(lists.getCategories());
+        searchPriorityComboBox.setItems(lists.getPriorities());
+
+        /* Set custom button cells for all ComboBoxes;
+         * apart from Select Priority, because that should be set to "Default".
+         */ 
+        setComboBoxPlaceholder(taskCategoryComboBox, "Select Category");
+        setComboBoxPlaceholder(searchCategoryComboBox, "Search by Category");
+        setComboBoxPlaceholder(searchPriorityComboBox, "Search by Priority");
+        // These two are only empty during a bulk edit
+        setComboBoxPlaceholder(taskPriorityComboBox, "Unchanged");
+        setComboBoxPlaceholder(taskStatusComboBox, "Unchanged");
+
+        // Search as the criteria change; the search itself runs off the application thread
+        taskSearch = new AsyncTaskSearch(taskManager, Platform::runLater);
+        searchTitleField.textProperty().addListener(_ -> scheduleSearch(true));
+        searchCategoryComboBox.valueProperty().addListener(_ -> scheduleSearch(true));
+        searchPriorityComboBox.valueProperty().addListener(_ -> scheduleSearch(true));
     }
 
+    /**
+     * Called before the data is loaded in the background. The List Views follow the TaskManager
+     * from now on, so the loaded Tasks appear batch by batch; until the load has finished,
+     * the controls are disabled.
+     */
+    public void onLoadStarted() {
+        lists.attach();
+        tasksListView.getScene().getRoot().setDisable(true);
+        tasksListView.setPlaceholder(new Label("Loading tasks..."));
+    }
+
+    /**
+     * Called after every loaded batch.
+     */
+    public void onLoadProgress() {
+        summaryView.markDirty();
+    }
+
+    /**
+     * Called once the data (including the journal) has been loaded and the store is open.
+     *
+     * @param queries the store's queries (see {@code TaskStore.queries}); unless that is the
+     *                TaskManager itself, the Task list shows one page of the stored Tasks at a time
+     */
+    public void onDataLoaded(TaskQueries queries) {
+        this.queries = queries;
+        if (queries != taskManager) {
+            // The TaskManager only has some of the Tasks: page through the store's copies instead
+            pagedTasks = new PagedTaskList(queries, Platform::runLater, this::showPage);
+            tasksListView.setCellFactory(_ -> new TaskCell(TaskCell.Text::of));
+            tasksListView.setItems(FXCollections.observableArrayList());
+            pagingBox.setVisible(true);
+            pagingBox.setManaged(true);
+        }
+        tasksListView.setPlaceholder(null);
+        tasksListView.getScene().getRoot().setDisable(false);
+        updateUI();
+    }
+
+    /**
+     * Called after every action. The lists already follow the TaskManager,
+     * so this only goes back from search results to all tasks and refreshes the summary.
+     * A paged list shows its current page again instead, as the store has it now.
+     */
     public void updateUI() {
-        // Update the List Views
-        tasksListView.getItems().setAll(taskManager.getTasks());
-        categoryListView.getItems().setAll(taskManager.getCategories());
-        priorityListView.getItems().setAll(taskManager.getPriorities());
-        reminderListView.getItems().setAll(taskManager.getReminders());
+        if (pagedTasks != null) {
+            pagedTasks.refresh();
+        } else if (tasksListView.getItems() != lists.getTasks()) {
+            taskSearch.cancel();
+            tasksListView.setItems(lists.getTasks());
+        }
+        summaryView.markDirty();
+    }
 
-        // Update the summary
-        updateSummary();
+    /**
+     * Stops the background search thread.
+     */
+    public void stopSearch() {
+        taskSearch.shutdown();
+        if (pagedTasks != null) pagedTasks.shutdown();
+    }
 
-        // Update the Task ComboBoxes
-        taskCategoryComboBox.getItems().setAll(taskManager.getCategories());
-        taskPriorityComboBox.getItems().setAll(taskManager.getPriorities());
+    /*
+     * Shows a page of Task copies, keeping the selection (by id) of the Tasks that are still on it.
+     */
+    private void showPage(PagedTaskList.Shown shown) {
+        Set<Long> selectedIds = new HashSet<>();
+        for (Task task : tasksListView.getSelectionModel().getSelectedItems()) {
+            selectedIds.add(task.getId());
+        }
 
-        // Update the Search ComboBoxes
-        searchCategoryComboBox.getItems().setAll(taskManager.getCategories());
-        searchPriorityComboBox.getItems().setAll(taskManager.getPriorities());
+        List<Task> tasks = shown.page().tasks();
+        tasksListView.getItems().setAll(tasks);
+        for (int i = 0; i < tasks.size(); i++) {
+            if (selectedIds.contains(tasks.get(i).getId())) tasksListView.getSelectionModel().select(i);
+        }
 
-        /* Set custom cell factories and button cells for all ComboBoxes;
-         * apart from Select Priority, because that should be set to "Default".
-         */ 
-        setComboBoxPlaceholder(taskCategoryComboBox, "Select Category");
-        setComboBoxPlaceholder(searchCategoryComboBox, "Search by Category");
-        setComboBoxPlaceholder(searchPriorityComboBox, "Search by Priority");
+        int total = shown.page().total();
+        pageLabel.setText(total == 0 ? "No tasks"
+                : (shown.offset() + 1) + "-" + (shown.offset() + tasks.size()) + " of " + total);
+    }
+
+    @FXML
+    private void onPreviousPage() {
+        if (pagedTasks != null) pagedTasks.previousPage();
+    }
+
+    @FXML
+    private void onNextPage() {
+        if (pagedTasks != null) pagedTasks.nextPage();
+    }
+
+    /*
+     * The selected Tasks, as the live instances to change through the TaskManager
+     * (a paged list shows copies, whose Tasks the store pages in).
+     */
+    private List<Task> getSelectedTasks() {
+        // One lookup for the whole selection
+        long[] ids = tasksListView.getSelectionModel().getSelectedItems().stream().mapToLong(Task::getId).toArray();
+        return queries.getTasksByIds(ids);
+    }
+
+    /**
+     * The scheduler behind the UI refreshes. Its views can be marked dirty from any thread.
+     */
+    public RefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
     }
     
     /**
      * Checks for tasks that are not "Completed" and have passed their deadlines.
-     * Updates their status to "Delayed" and returns the count of such tasks.
-     *
+     * Updates their status to "Delayed", then shows the count of all delayed tasks.
+     * A database store marks and counts them in the background.
      */
-    public int checkAndUpdateDelayedTasks() {
+    public void checkAndUpdateDelayedTasks() {
         LocalDate today = LocalDate.now();
-        int delayedCount = 0;
-        List<String> delayedTaskTitles = new ArrayList<>();
 
-        for (Task task : taskManager.getTasks()) {
-            if (!"Completed".equals(task.getStatus()) && task.getDeadline() != null && task.getDeadline().isBefore(today)) {
-                task.setStatus("Delayed");
+        // Mark the newly overdue tasks, then report all delayed ones (including those Delayed in a previous run)
+        CompletableFuture<long[]> marked = queries.markOverdueTasks(today);
+        TaskQueries storeQueries = queries;
+        inBackground(() -> {
+            marked.join();
+            return storeQueries.findTasks("", null, null, TaskStatus.DELAYED, 0, MAX_LISTED_TITLES);
+        }, delayedTasks -> {
+            // A database store may have marked its Tasks after the first page was read
+            if (pagedTasks != null) updateUI();
+            List<String> delayedTaskTitles = new ArrayList<>();
+            for (Task task : delayedTasks.tasks()) {
                 delayedTaskTitles.add(task.getTitle()); // Collect delayed task titles
-                delayedCount++;
             }
-        }
+            if (delayedTasks.total() > 0) {
+                showDelayedTasksAlert(delayedTasks.total(), delayedTaskTitles);
+            }
+        });
+    }
 
-        if (delayedCount > 0) {
-            showDelayedTasksAlert(delayedCount, delayedTaskTitles);
-        }
+    /**
+     * Called once after every midnight with the ids of the tasks that have just become "Delayed".
+     * Refreshes the UI (the summary depends on the date) and notifies the user about them.
+     */
+    public void onDayRollover(long[] newlyDelayedIds) {
+        updateUI();
 
-        return delayedCount;
+        if (newlyDelayedIds.length > 0) {
+            long[] listed = Arrays.copyOf(newlyDelayedIds, Math.min(newlyDelayedIds.length, MAX_LISTED_TITLES));
+            TaskQueries storeQueries = queries;
+            inBackground(() -> storeQueries.findTasksByIds(listed), delayedTasks -> {
+                List<String> delayedTaskTitles = new ArrayList<>();
+                for (Task task : delayedTasks) {
+                    delayedTaskTitles.add(task.getTitle());
+                }
+                showDelayedTasksAlert(newlyDelayedIds.length, delayedTaskTitles);
+            });
+        }
     }
     
+    /**
+     * Called with every batch of Reminders that have become due
+     * (including the ones missed while the app was closed).
+     */
+    public void onRemindersDue(List<FiredReminder> dueReminders) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Reminders");
+        alert.setHeaderText("You have " + dueReminders.size() + " due reminder(s).");
+
+        StringBuilder reminderList = new StringBuilder();
+        for (FiredReminder dueReminder : dueReminders) {
+            reminderList.append(dueReminder.task().getTitle()).append(": ")
+                        .append(dueReminder.reminder()).append("\n");
+        }
+        alert.setContentText(reminderList.toString());
+
+        alert.showAndWait();
+    }
+
+    /**
+     * Called instead of {@link #onDataLoaded} if the data could not be loaded completely: the UI
+     * stays disabled, and the part that was loaded is not shown, since nothing may be changed or saved.
+     */
+    public void onLoadFailed(Throwable failure) {
+        tasksListView.setItems(FXCollections.observableArrayList());
+        tasksListView.setPlaceholder(new Label("The tasks could not be loaded."));
+        showAlert("Tasks Could Not Be Loaded",
+                "The stored data could not be read completely. To keep it from being overwritten, nothing can be changed.\n\n"
+                + failure.getMessage());
+    }
+
+    /**
+     * Called once if the store can no longer save the changes (e.g. a database write failed):
+     * changes made from now on are lost when the app is closed.
+     */
+    public void onStoreFailed(Exception failure) {
+        showAlert("Changes Are Not Saved",
+                "Saving the data failed, so changes made from now on will be lost when the app is closed.\n\n"
+                + failure.getMessage());
+    }
+
     /**
      * Displays a popup alert to notify the user about the number of delayed tasks.
      *
@@ -142,7 +357,7 @@ public class MainController {
         alert.setHeaderText("You have " + delayedTasksCount + " delayed task(s).");
 
         // Format the task titles for display
-        String taskList = String.join("\n", delayedTaskTitles);
+        String taskList = String.join("\n", delayedTaskTitles) + andOthers(delayedTasksCount, delayedTaskTitles.size());
         alert.setContentText("Please review these tasks:\n" + taskList);
 
         alert.showAndWait();
@@ -181,6 +396,13 @@ public class MainController {
         });
     }
 
+    /*
+     * The line that follows a shortened list of titles.
+     */
+    private static String andOthers(int total, int listed) {
+        return total > listed ? "\n... and " + (total - listed) + " more" : "";
+    }
+
     private void showAlert(String title, String content) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -192,23 +414,40 @@ public class MainController {
         return taskManager;
     }
     
+    private record Summary(int totalTasks, int completedTasks, int delayedTasks, int dueSoonTasks) {
+
+        // Read the counters kept by the TaskManager (no scan over the tasks), or counted by the store
+        static Summary of(TaskQueries queries) {
+            return new Summary(queries.countTasks(null, null, null),
+                    queries.countTasks(null, null, TaskStatus.COMPLETED),
+                    queries.countTasks(null, null, TaskStatus.DELAYED),
+                    queries.getDueSoonCount(LocalDate.now()));
+        }
+    }
+
     private void updateSummary() {
-        List<Task> tasks = taskManager.getTasks();
-        
-        int totalTasks = tasks.size();
-        int completedTasks = (int) tasks.stream().filter(t -> "Completed".equals(t.getStatus())).count();
-        int delayedTasks = (int) tasks.stream().filter(t -> "Delayed".equals(t.getStatus())).count();
-        
-        LocalDate today = LocalDate.now();
-        int dueSoonTasks = (int) tasks.stream()
-            .filter(t -> t.getDeadline() != null && !t.getDeadline().isBefore(today) && t.getDeadline().isBefore(today.plusDays(7)))
-            .count();
+        TaskQueries storeQueries = queries;
+        inBackground(() -> Summary.of(storeQueries), this::showSummary);
+    }
+
+    /*
+     * Runs the query in the background when the store pages its Tasks (its queries may block),
+     * and hands the result to the consumer on the FX thread; otherwise runs both right away.
+     */
+    private <T> void inBackground(Supplier<T> query, Consumer<T> onResult) {
+        if (pagedTasks != null) {
+            pagedTasks.supply(query, onResult);
+        } else {
+            onResult.accept(query.get());
+        }
+    }
 
+    private void showSummary(Summary summary) {
         // Update of Labels
-        totalTasksLabel.setText(String.valueOf(totalTasks));
-        completedTasksLabel.setText(String.valueOf(completedTasks));
-        delayedTasksLabel.setText(String.valueOf(delayedTasks));
-        dueSoonTasksLabel.setText(String.valueOf(dueSoonTasks));
+        totalTasksLabel.setText(String.valueOf(summary.totalTasks()));
+        completedTasksLabel.setText(String.valueOf(summary.completedTasks()));
+        delayedTasksLabel.setText(String.valueOf(summary.delayedTasks()));
+        dueSoonTasksLabel.setText(String.valueOf(summary.dueSoonTasks()));
     }
     
     /*
@@ -230,13 +469,17 @@ public class MainController {
         Category category = taskCategoryComboBox.getValue(); // Use Category object
         PriorityLevel priority = taskPriorityComboBox.getValue(); // Use PriorityLevel object
         LocalDate deadline = taskDeadlinePicker.getValue();
-        String status = taskStatusComboBox.getValue();
+        TaskStatus status = taskStatusComboBox.getValue();
 
         if (title.isEmpty()) {
             showAlert("Error", "Title cannot be empty!");
             return;
         }
 
+        // The fields may still be "Unchanged" from a bulk edit
+        if (priority == null) priority = taskManager.findPriorityByTitle("Default");
+        if (status == null) status = TaskStatus.OPEN;
+
         Task newTask = new Task(title, description, category, priority, deadline, status);
         taskManager.addTask(newTask);
         updateUI();
@@ -245,57 +488,70 @@ public class MainController {
 
     @FXML
     private void onDeleteTask() {
-        Task selectedTask = tasksListView.getSelectionModel().getSelectedItem();
-        if (selectedTask == null) {
+        List<Task> selectedTasks = getSelectedTasks();
+        if (selectedTasks.isEmpty()) {
             showAlert("Error", "Please select a task to delete.");
             return;
         }
 
-        taskManager.deleteTask(selectedTask);
+        // One bulk call, so the list and the store are updated once
+        taskManager.deleteTasks(selectedTasks);
         updateUI();
     }
 
     @FXML
     private void onUpdateTask() {
-        Task selectedTask = tasksListView.getSelectionModel().getSelectedItem();
+        List<Task> selectedTasks = getSelectedTasks();
+        if (selectedTasks.size() > 1) {
+            updateSelectedTasks(selectedTasks);
+            return;
+        }
+
+        Task selectedTask = selectedTasks.isEmpty() ? null : selectedTasks.get(0);
         if (selectedTask == null) {
             showAlert("Error", "Please select a task to update.");
             return;
         }
 
         // Update title if the text field is not blank
+        String title = selectedTask.getTitle();
         if (!taskTitleField.getText().isEmpty()) {
-            selectedTask.setTitle(taskTitleField.getText());
+            title = taskTitleField.getText();
         }
 
         // Update description if the text field is not blank
+        String description = selectedTask.getDescription();
         if (!taskDescriptionField.getText().isEmpty()) {
-            selectedTask.setDescription(taskDescriptionField.getText());
+            description = taskDescriptionField.getText();
         }
 
         // Update category if a category is selected
+        Category category = selectedTask.getCategory();
         Category selectedCategory = taskCategoryComboBox.getValue();
         if (selectedCategory != null) {
-            selectedTask.setCategory(selectedCategory);
+            category = selectedCategory;
         }
 
         // Update priority if a priority is selected
+        PriorityLevel priority = selectedTask.getPriority();
         PriorityLevel selectedPriority = taskPriorityComboBox.getValue();
         if (selectedPriority != null) {
-            selectedTask.setPriority(selectedPriority);
+            priority = selectedPriority;
         }
 
         // Update deadline if a deadline is selected
+        LocalDate deadline = selectedTask.getDeadline();
         LocalDate selectedDeadline = taskDeadlinePicker.getValue();
         if (selectedDeadline != null) {
-            selectedTask.setDeadline(selectedDeadline);
+            deadline = selectedDeadline;
         }
 
         // Update status if a status is selected
-        String selectedStatus = taskStatusComboBox.getValue();
+        TaskStatus status = selectedTask.getStatus();
+        TaskStatus selectedStatus = taskStatusComboBox.getValue();
         if (selectedStatus != null) {
             // If the new status is "Completed," show a confirmation dialog
-            if (selectedStatus.equals("Completed") && !selectedTask.getReminders().isEmpty()) {
+            if (selectedStatus == TaskStatus.COMPLETED && !selectedTask.getReminders().isEmpty()) {
                 // Create a confirmation dialog
                 Alert confirmationDialog = new Alert(Alert.AlertType.CONFIRMATION);
                 confirmationDialog.setTitle("Delete Reminders");
@@ -318,35 +574,103 @@ public class MainController {
                 }
 
                 // If the user clicks "OK," delete the reminders
-                selectedTask.getReminders().clear();
+                for (Reminder reminder : new ArrayList<>(selectedTask.getReminders())) {
+                    taskManager.deleteReminder(selectedTask, reminder);
+                }
             }
 
             // Update the task's status
-            selectedTask.setStatus(selectedStatus);
+            status = selectedStatus;
         }
 
+        // Apply the changes through the TaskManager, so its indexes stay in sync
+        taskManager.updateTask(selectedTask, title, description, category, priority, deadline, status);
+
+        updateUI();
+        clearTaskInputFields();
+    }
+
+    /**
+     * Bulk edit: applies the category, priority and status the user set to several Tasks at once.
+     * Empty fields are left unchanged, and the whole edit is one call of the TaskManager
+     * (one list refresh, one journal record and one store transaction).
+     */
+    private void updateSelectedTasks(List<Task> selectedTasks) {
+        if (!taskTitleField.getText().isEmpty() || !taskDescriptionField.getText().isEmpty()
+                || taskDeadlinePicker.getValue() != null) {
+            showAlert("Error", "Only the category, priority and status of several tasks can be updated at once.");
+            return;
+        }
+
+        Category selectedCategory = taskCategoryComboBox.getValue();
+        PriorityLevel selectedPriority = taskPriorityComboBox.getValue();
+        TaskStatus selectedStatus = taskStatusComboBox.getValue();
+        if (selectedCategory == null && selectedPriority == null && selectedStatus == null) {
+            showAlert("Error", "Please select a category, priority or status to apply to the selected tasks.");
+            return;
+        }
+
+        if (selectedStatus == TaskStatus.COMPLETED) {
+            List<Reminder> reminders = new ArrayList<>();
+            for (Task task : selectedTasks) {
+                if (task.getStatus() != TaskStatus.COMPLETED) reminders.addAll(task.getReminders());
+            }
+            if (!reminders.isEmpty()) {
+                Alert confirmationDialog = new Alert(Alert.AlertType.CONFIRMATION);
+                confirmationDialog.setTitle("Delete Reminders");
+                confirmationDialog.setHeaderText("This action will also delete the reminders of the selected tasks.");
+                confirmationDialog.setContentText(reminders.size() + " reminder(s) will be deleted.\nAre you sure you want to proceed?");
+                if (confirmationDialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+                    return;
+                }
+            }
+        }
+
+        // Completing a Task deletes its reminders as part of the same edit
+        taskManager.editTasks(selectedTasks, selectedCategory, selectedPriority, selectedStatus);
+
         updateUI();
         clearTaskInputFields();
     }
     
     @FXML
     private void onSearchTasks() {
-        String searchTitle = searchTitleField.getText().trim().toLowerCase();
+        scheduleSearch(false);
+    }
+
+    /*
+     * Starts a background search with the current criteria (debounced while typing).
+     * Text matches (title or description) come from the search index, title prefix matches first,
+     * and the category and priority filters are intersected with it.
+     */
+    private void scheduleSearch(boolean debounce) {
+        String searchText = searchTitleField.getText().trim();
         Category searchCategory = searchCategoryComboBox.getValue();
         PriorityLevel searchPriority = searchPriorityComboBox.getValue();
 
-        // Filter tasks based on search criteria
-        List<Task> filteredTasks = taskManager.getTasks().stream()
-                .filter(task -> {
-                    boolean matchesTitle = searchTitle.isEmpty() || task.getTitle().toLowerCase().contains(searchTitle);
-                    boolean matchesCategory = searchCategory == null || searchCategory.equals(task.getCategory());
-                    boolean matchesPriority = searchPriority == null || searchPriority.equals(task.getPriority());
-                    return matchesTitle && matchesCategory && matchesPriority;
-                })
-                .collect(Collectors.toList());
+        // A paged list runs the search in the store
+        if (pagedTasks != null) {
+            pagedTasks.query(searchText, searchCategory, searchPriority, debounce);
+            return;
+        }
 
-        // Update the tasksListView with the filtered tasks
-        tasksListView.getItems().setAll(filteredTasks);
+        // No criteria: show all tasks
+        if (searchText.isEmpty() && searchCategory == null && searchPriority == null) {
+            taskSearch.cancel();
+            tasksListView.setItems(lists.getTasks());
+            return;
+        }
+
+        // Update the tasksListView with the filtered tasks, as they are found
+        if (debounce) {
+            taskSearch.searchLater(searchText, searchCategory, searchPriority, this::showSearchResults);
+        } else {
+            taskSearch.search(searchText, searchCategory, searchPriority, this::showSearchResults);
+        }
+    }
+
+    private void showSearchResults(List<Task> filteredTasks) {
+        tasksListView.setItems(FXCollections.observableArrayList(filteredTasks));
     }
 
     @FXML
@@ -357,7 +681,12 @@ public class MainController {
         searchPriorityComboBox.setValue(null);
 
         // Reset the tasksListView to show all tasks
-        tasksListView.getItems().setAll(taskManager.getTasks());
+        if (pagedTasks != null) {
+            pagedTasks.query("", null, null, false);
+            return;
+        }
+        taskSearch.cancel();
+        tasksListView.setItems(lists.getTasks());
     }
     
     @FXML
@@ -365,9 +694,22 @@ public class MainController {
         taskTitleField.clear();
         taskDescriptionField.clear();
         taskCategoryComboBox.setValue(null);
-        taskPriorityComboBox.setValue(taskManager.findPriorityByTitle("Default"));
+        taskPriorityComboBox.setValue(bulkEdit ? null : taskManager.findPriorityByTitle("Default"));
         taskDeadlinePicker.setValue(null);
-        taskStatusComboBox.setValue("Open");
+        taskStatusComboBox.setValue(bulkEdit ? null : TaskStatus.OPEN);
+    }
+
+    /*
+     * Entering or leaving a bulk edit: with several Tasks selected, the priority and status
+     * start out "Unchanged" instead of "Default" and "Open".
+     */
+    private void updateBulkEditFields() {
+        boolean several = tasksListView.getSelectionModel().getSelectedItems().size() > 1;
+        if (several == bulkEdit) return;
+
+        bulkEdit = several;
+        taskPriorityComboBox.setValue(bulkEdit ? null : taskManager.findPriorityByTitle("Default"));
+        taskStatusComboBox.setValue(bulkEdit ? null : TaskStatus.OPEN);
     }
     
     /*
@@ -389,8 +731,7 @@ public class MainController {
             return;
         }
 
-        Category newCategory = new Category(title);
-        taskManager.addCategory(newCategory);
+        taskManager.addCategory(title);
         updateUI();
         clearCategoryInputFields();
     }
@@ -403,13 +744,11 @@ public class MainController {
             return;
         }
 
-        // Get all tasks associated with the selected category
-        List<Task> tasksToDelete = taskManager.getTasks().stream()
-                .filter(task -> selectedCategory.equals(task.getCategory()))
-                .collect(Collectors.toList());
+        // Get the tasks associated with the selected category (the first ones, and how many there are)
+        TaskQueries.Page tasksToDelete = queries.findTasks("", selectedCategory, null, null, 0, MAX_LISTED_TITLES);
 
         // If there are tasks associated with the category, show a confirmation dialog
-        if (!tasksToDelete.isEmpty()) {
+        if (tasksToDelete.total() > 0) {
             // Create a confirmation dialog
             Alert confirmationDialog = new Alert(Alert.AlertType.CONFIRMATION);
             confirmationDialog.setTitle("Delete Category");
@@ -417,9 +756,10 @@ public class MainController {
 
             // List all tasks in the dialog
             StringBuilder tasksList = new StringBuilder();
-            for (Task task : tasksToDelete) {
+            for (Task task : tasksToDelete.tasks()) {
                 tasksList.append("- ").append(task.getTitle()).append("\n");
             }
+            tasksList.append(andOthers(tasksToDelete.total(), tasksToDelete.tasks().size()).strip());
 
             confirmationDialog.setContentText(tasksList.toString() + "\nAre you sure you want to proceed?");
 
@@ -451,11 +791,11 @@ public class MainController {
             return;
         }
 
-        // Create a new category with the updated title
-        Category updatedCategory = new Category(updatedTitle);
-
-        // Update tasks with the old category title to the new category title
-        taskManager.updateCategory(selectedCategory, updatedCategory);
+        // Rename the category in place (its tasks share the same instance)
+        if (!taskManager.renameCategory(selectedCategory, updatedTitle)) {
+            showAlert("Error", "A category with this title already exists.");
+            return;
+        }
         updateUI();
     }
     
@@ -483,8 +823,7 @@ public class MainController {
             return;
         }
 
-        PriorityLevel newPriority = new PriorityLevel(priorityTitle);
-        taskManager.addPriority(newPriority);
+        taskManager.addPriority(priorityTitle);
         updateUI();
         clearPriorityInputFields();
     }
@@ -503,22 +842,21 @@ public class MainController {
             return;
         }
 
-        // Get all tasks that have the selected priority
-        List<Task> affectedTasks = taskManager.getTasks().stream()
-                .filter(task -> selectedPriority.equals(task.getPriority()))
-                .collect(Collectors.toList());
+        // Get the tasks that have the selected priority (the first ones, and how many there are)
+        TaskQueries.Page affectedTasks = queries.findTasks("", null, selectedPriority, null, 0, MAX_LISTED_TITLES);
 
         // If there are tasks affected, show a confirmation dialog
-        if (!affectedTasks.isEmpty()) {
+        if (affectedTasks.total() > 0) {
             Alert confirmationDialog = new Alert(Alert.AlertType.CONFIRMATION);
             confirmationDialog.setTitle("Delete Priority");
             confirmationDialog.setHeaderText("This action will change the priority of the following tasks to 'Default':");
 
             // List affected tasks in the dialog
             StringBuilder taskList = new StringBuilder();
-            for (Task task : affectedTasks) {
+            for (Task task : affectedTasks.tasks()) {
                 taskList.append("- ").append(task.getTitle()).append("\n");
             }
+            taskList.append(andOthers(affectedTasks.total(), affectedTasks.tasks().size()).strip());
 
             confirmationDialog.setContentText(taskList.toString() + "\nAre you sure you want to proceed?");
 
@@ -557,8 +895,10 @@ public class MainController {
             return;
         }
 
-        PriorityLevel updatedPriority = new PriorityLevel(updatedTitle);
-        taskManager.updatePriority(selectedPriority, updatedPriority);
+        if (!taskManager.renamePriority(selectedPriority, updatedTitle)) {
+            showAlert("Error", "A priority with this title already exists.");
+            return;
+        }
         updateUI();
     }
     
@@ -575,13 +915,19 @@ public class MainController {
      */
     @FXML
     private void onAddReminder() {
-        Task selectedTask = tasksListView.getSelectionModel().getSelectedItem();
-        if (selectedTask == null) {
+        List<Task> selectedTasks = getSelectedTasks();
+        if (selectedTasks.isEmpty()) {
             showAlert("Error", "Please select a task to add a reminder.");
             return;
         }
+        // Reminder messages are unique, so a Reminder belongs to a single Task
+        if (selectedTasks.size() > 1) {
+            showAlert("Error", "Please select a single task to add a reminder.");
+            return;
+        }
+        Task selectedTask = selectedTasks.get(0);
 
-        if (selectedTask.getStatus().equals("Completed")) {
+        if (selectedTask.getStatus() == TaskStatus.COMPLETED) {
             showAlert("Error", "Cannot add reminders to completed tasks.");
             return;
         }
@@ -592,13 +938,11 @@ public class MainController {
             return;
         }
 
-        // Check if the reminder message is unique across all tasks
-        for (Task task : taskManager.getTasks()) {
-            for (Reminder reminder : task.getReminders()) {
-                if (reminder.getMessage().equals(message)) {
-                    showAlert("Error", "Reminder message must be unique.");
-                    return;
-                }
+        // Check if the reminder message is unique across all tasks (every Reminder is in the TaskManager)
+        for (Reminder reminder : taskManager.getReminders()) {
+            if (reminder.getMessage().equals(message)) {
+                showAlert("Error", "Reminder message must be unique.");
+                return;
             }
         }
 
@@ -649,7 +993,7 @@ public class MainController {
         }
 
         Reminder newReminder = new Reminder(reminderDate, message);
-        selectedTask.addReminder(newReminder);
+        taskManager.addReminder(selectedTask, newReminder);
         updateUI();
         clearReminderInputFields();
     }
@@ -663,14 +1007,8 @@ public class MainController {
             return;
         }
 
-        // Find the task that contains the selected reminder
-        Task taskWithReminder = null;
-        for (Task task : taskManager.getTasks()) {
-            if (task.getReminders().contains(selectedReminder)) {
-                taskWithReminder = task;
-                break;
-            }
-        }
+        // The task that contains the selected reminder
+        Task taskWithReminder = selectedReminder.getTask();
 
         if (taskWithReminder == null) {
             showAlert("Error", "No task found containing the selected reminder.");
@@ -678,7 +1016,7 @@ public class MainController {
         }
 
         // Remove the selected reminder from the task
-        taskWithReminder.getReminders().remove(selectedReminder);
+        taskManager.deleteReminder(taskWithReminder, selectedReminder);
         updateUI();
         clearReminderInputFields();
     }
@@ -692,19 +1030,8 @@ public class MainController {
             return;
         }
 
-        // Find the task that contains the selected reminder
-        Task taskWithReminder = null;
-        for (Task task : taskManager.getTasks()) {
-            for (Reminder reminder : task.getReminders()) {
-                if (reminder.getMessage().equals(selectedReminder.getMessage())) {
-                    taskWithReminder = task;
-                    break;
-                }
-            }
-            if (taskWithReminder != null) {
-                break;
-            }
-        }
+        // The task that contains the selected reminder
+        Task taskWithReminder = selectedReminder.getTask();
 
         if (taskWithReminder == null) {
             showAlert("Error", "No task found containing the selected reminder.");
@@ -767,8 +1094,7 @@ public class MainController {
         }
 
         // Update the reminder's message and date
-        selectedReminder.setMessage(message);
-        selectedReminder.setDate(reminderDate);
+        taskManager.updateReminder(taskWithReminder, selectedReminder, reminderDate, message);
 
         // Update the UI
         updateUI();
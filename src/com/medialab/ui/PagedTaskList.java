@@ -0,0 +1,155 @@
+package com.medialab.ui;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.services.TaskQueries;
+
+/**
+ * The Task list for stores that do not keep every Task in the TaskManager: shows one page of a
+ * {@link TaskQueries} query at a time, instead of following the TaskManager's list.
+ * <p>
+ * The queries run on a background thread, so the UI never waits for the database. Like
+ * {@link AsyncTaskSearch}, queries requested while typing are debounced, and a new query
+ * supersedes the previous one, whose page is never delivered. The criteria and the offset are
+ * only touched on the application thread.
+ */
+class PagedTaskList {
+    static final int PAGE_SIZE = 100;
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    /**
+     * A delivered page: the Tasks (detached copies) from {@code offset} on, and the total.
+     */
+    record Shown(int offset, TaskQueries.Page page) {}
+
+    private final TaskQueries queries;
+    private final Executor resultExecutor;
+    private final Consumer<Shown> onPage;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Incremented by every new query; a page is only delivered while its query is the current one
+    private final AtomicLong generation = new AtomicLong();
+
+    // Guarded by this
+    private ScheduledFuture<?> pendingQuery;
+
+    // The current query
+    private String text = "";
+    private Category category;
+    private PriorityLevel priority;
+    private int offset;
+    private int total;
+
+    /**
+     * @param resultExecutor runs the callbacks (e.g. {@code Platform::runLater})
+     * @param onPage         called with every page of the current query
+     */
+    PagedTaskList(TaskQueries queries, Executor resultExecutor, Consumer<Shown> onPage) {
+        this.queries = queries;
+        this.resultExecutor = resultExecutor;
+        this.onPage = onPage;
+
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "task-pages");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Shows the first page of the Tasks that match the criteria (see {@link TaskQueries#findTasks}).
+     *
+     * @param debounce wait for a short pause first, unless another query is requested in the meantime
+     */
+    void query(String text, Category category, PriorityLevel priority, boolean debounce) {
+        this.text = text;
+        this.category = category;
+        this.priority = priority;
+        offset = 0;
+        schedule(debounce ? DEBOUNCE_MILLIS : 0);
+    }
+
+    /**
+     * Runs the current query again (e.g. after a change), on the same page if it still exists.
+     */
+    void refresh() {
+        schedule(0);
+    }
+
+    void nextPage() {
+        if (offset + PAGE_SIZE >= total) return;
+        offset += PAGE_SIZE;
+        schedule(0);
+    }
+
+    void previousPage() {
+        if (offset == 0) return;
+        offset = Math.max(0, offset - PAGE_SIZE);
+        schedule(0);
+    }
+
+    /**
+     * Runs another query (e.g. counters) on the background thread, and hands its result to the
+     * callback on the result executor.
+     */
+    <T> void supply(Supplier<T> query, Consumer<T> onResult) {
+        executor.execute(() -> {
+            try {
+                T result = query.get();
+                resultExecutor.execute(() -> onResult.accept(result));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    void shutdown() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+    }
+
+    private synchronized void schedule(long delayMillis) {
+        long queryGeneration = generation.incrementAndGet();
+        if (pendingQuery != null) pendingQuery.cancel(false);
+        String queryText = text;
+        Category queryCategory = category;
+        PriorityLevel queryPriority = priority;
+        int queryOffset = offset;
+        pendingQuery = executor.schedule(() -> run(queryGeneration, queryText, queryCategory, queryPriority, queryOffset),
+                delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Runs on the background thread.
+     */
+    private void run(long queryGeneration, String text, Category category, PriorityLevel priority, int pageOffset) {
+        try {
+            if (generation.get() != queryGeneration) return;
+            TaskQueries.Page page = queries.findTasks(text, category, priority, null, pageOffset, PAGE_SIZE);
+            if (page.tasks().isEmpty() && pageOffset > 0 && page.total() > 0) {
+                // The page is gone (e.g. its Tasks were deleted): show the last one instead
+                pageOffset = (page.total() - 1) / PAGE_SIZE * PAGE_SIZE;
+                page = queries.findTasks(text, category, priority, null, pageOffset, PAGE_SIZE);
+            }
+            Shown shown = new Shown(pageOffset, page);
+            resultExecutor.execute(() -> {
+                // Checked again on delivery, in case a newer query was started in the meantime
+                if (generation.get() != queryGeneration) return;
+                this.offset = shown.offset();
+                total = shown.page().total();
+                onPage.accept(shown);
+            });
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.medialab.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Coalesces UI refreshes to at most one per JavaFX pulse.
+ * <p>
+ * Each part of the UI that can be refreshed is registered as a {@link View}. Marking a view dirty
+ * is cheap and can be done from any thread; all dirty views are refreshed together on the next
+ * pulse, on the JavaFX application thread. However many times a view is marked dirty before that,
+ * it is refreshed once, and only one {@code Platform.runLater} is issued per batch.
+ * <p>
+ * {@link #getMergedCount()} tells how many requests were absorbed by an already pending refresh.
+ */
+public class RefreshScheduler {
+
+    /**
+     * A part of the UI with its refresh action.
+     */
+    public final class View {
+        private final String name;
+        private final Runnable refresh;
+        private boolean dirty; // Guarded by the RefreshScheduler
+
+        private View(String name, Runnable refresh) {
+            this.name = name;
+            this.refresh = refresh;
+        }
+
+        /**
+         * Schedules a refresh of this view on the next pulse. Can be called from any thread.
+         */
+        public void markDirty() {
+            RefreshScheduler.this.markDirty(this);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Created on first use, on the application thread
+    private AnimationTimer pulse;
+
+    // Guarded by this
+    private final List<View> dirtyViews = new ArrayList<>();
+    private boolean armed;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    public View register(String name, Runnable refresh) {
+        return new View(name, refresh);
+    }
+
+    private void markDirty(View view) {
+        requestCount.incrementAndGet();
+        synchronized (this) {
+            if (view.dirty) return;
+            view.dirty = true;
+            dirtyViews.add(view);
+            if (armed) return;
+            armed = true;
+        }
+
+        // Wait for the next pulse; the timer itself must be started on the application thread
+        if (Platform.isFxApplicationThread()) {
+            startPulse();
+        } else {
+            Platform.runLater(this::startPulse);
+        }
+    }
+
+    private void startPulse() {
+        if (pulse == null) {
+            pulse = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    stop();
+                    flush();
+                }
+            };
+        }
+        pulse.start();
+    }
+
+    /*
+     * Runs on the JavaFX application thread, once per pulse with dirty views.
+     */
+    private void flush() {
+        List<View> views;
+        synchronized (this) {
+            views = new ArrayList<>(dirtyViews);
+            dirtyViews.clear();
+            for (View view : views) {
+                view.dirty = false;
+            }
+            armed = false;
+        }
+
+        // A refresh that marks a view dirty again is picked up on the following pulse
+        for (View view : views) {
+            refreshCount.incrementAndGet();
+            view.refresh.run();
+        }
+    }
+
+    /**
+     * Returns the number of times a view was marked dirty.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of refreshes actually run.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * Returns the number of requests that were merged into an already pending refresh.
+     */
+    public long getMergedCount() {
+        long pending;
+        synchronized (this) {
+            pending = dirtyViews.size();
+        }
+        return requestCount.get() - refreshCount.get() - pending;
+    }
+}
@@ -0,0 +1,79 @@
+package com.medialab.ui;
+
+import java.util.function.Function;
+
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.VBox;
+
+/**
+ * List cell for a Task: its title in bold, with the other fields below it.
+ * <p>
+ * The displayed strings come from a per-task cache ({@link Text}), which is only rebuilt when the
+ * Task changes. Each cell creates its labels once and reuses them, so scrolling over unchanged
+ * Tasks does not build any strings.
+ */
+class TaskCell extends ListCell<Task> {
+
+    /**
+     * The rendered text of a Task.
+     */
+    record Text(String title, String details) {
+
+        static Text of(Task task) {
+            String category = task.getCategory() != null ? task.getCategory().getTitle() : "No Category";
+            String priority = task.getPriority() != null ? task.getPriority().getTitle() : "No Priority";
+            String deadline = task.getDeadline() != null ? task.getDeadline().toString() : "No Deadline";
+            String description = task.getDescription() != null && !task.getDescription().isEmpty()
+                    ? task.getDescription() : "No Description";
+
+            StringBuilder details = new StringBuilder()
+                    .append("Status: ").append(task.getStatus()).append('\n')
+                    .append("Category: ").append(category).append('\n')
+                    .append("Priority: ").append(priority).append('\n')
+                    .append("Deadline: ").append(deadline).append('\n')
+                    .append("Description: ").append(description).append('\n')
+                    .append("Reminders: ");
+            if (task.getReminders().isEmpty()) {
+                details.append("No Reminders");
+            } else {
+                for (int i = 0; i < task.getReminders().size(); i++) {
+                    Reminder reminder = task.getReminders().get(i);
+                    if (i > 0) details.append(", ");
+                    details.append(reminder.getDate()).append(": ").append(reminder.getMessage());
+                }
+            }
+            return new Text(task.getTitle(), details.toString());
+        }
+    }
+
+    private final Function<Task, Text> texts;
+    private final Label titleLabel = new Label();
+    private final Label detailsLabel = new Label();
+    private final VBox layout = new VBox(titleLabel, detailsLabel);
+
+    /**
+     * @param texts returns the (cached) text of a Task
+     */
+    TaskCell(Function<Task, Text> texts) {
+        this.texts = texts;
+        titleLabel.setStyle("-fx-font-weight: bold;");
+    }
+
+    @Override
+    protected void updateItem(Task task, boolean empty) {
+        super.updateItem(task, empty);
+        if (empty || task == null) {
+            setGraphic(null);
+            return;
+        }
+
+        Text text = texts.apply(task);
+        titleLabel.setText(text.title());
+        detailsLabel.setText(text.details());
+        setGraphic(layout);
+    }
+}
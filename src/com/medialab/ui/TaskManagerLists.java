@@ -0,0 +1,337 @@
+package com.medialab.ui;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.services.TaskManager;
+import com.medialab.services.TaskManagerListener;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Observable copies of the TaskManager's lists, for the controls to bind to.
+ * <p>
+ * After {@link #attach()} has filled them once, they follow the TaskManager's change events, so
+ * every mutation only adds, removes or replaces the affected rows instead of resetting whole lists.
+ * A Task row is also replaced when something it displays changes (its reminders, or the title of
+ * its category or priority). Those row refreshes are collected and applied on the next pulse by
+ * the RefreshScheduler, in a single pass, so a bulk change (e.g. many Tasks becoming Delayed)
+ * does not look up each row separately; the bulk events of the TaskManager (e.g. tasksAdded)
+ * are applied as one list change each. The rendered text of each Task row is cached here too,
+ * and dropped whenever the row is marked dirty. The lists must only be changed on the JavaFX
+ * application thread, which is also the thread that mutates the TaskManager.
+ * <p>
+ * Task rows are only ever appended (in the TaskManager's list order) or removed, so each row gets
+ * an increasing order number when it is added, and a Task's row is found by a binary search on
+ * those numbers instead of a scan of the list.
+ */
+class TaskManagerLists implements TaskManagerListener {
+    // Above this many Reminders added at once, the reminder list is rebuilt instead of inserted into
+    private static final int BULK_REMINDER_INSERTS = 64;
+    // Above this many Tasks removed at once, the task list is filtered in one pass instead
+    private static final int BULK_TASK_REMOVALS = 64;
+
+    private final TaskManager taskManager;
+    private final ObservableList<Task> tasks = FXCollections.observableArrayList();
+    private final ObservableList<Category> categories = FXCollections.observableArrayList();
+    private final ObservableList<PriorityLevel> priorities = FXCollections.observableArrayList();
+    private final ObservableList<Reminder> reminders = FXCollections.observableArrayList();
+
+    // Order number of every Task row, increasing along the list
+    private final Map<Task, Long> rowOrder = new IdentityHashMap<>();
+    private long nextRowOrder;
+
+    // Task rows to redraw on the next pulse
+    private final Set<Task> dirtyRows = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Rendered text of the Tasks that have been displayed
+    private final Map<Task, TaskCell.Text> taskTexts = new IdentityHashMap<>();
+    private final RefreshScheduler.View rowsView;
+
+    TaskManagerLists(TaskManager taskManager, RefreshScheduler refreshScheduler) {
+        this.taskManager = taskManager;
+        this.rowsView = refreshScheduler.register("task rows", this::refreshDirtyRows);
+    }
+
+    /**
+     * Copies the current contents of the TaskManager once, then starts following its changes.
+     */
+    void attach() {
+        taskManager.removeListener(this);
+        dirtyRows.clear();
+        taskTexts.clear();
+        rowOrder.clear();
+        List<Task> allTasks = taskManager.getTasks();
+        allTasks.forEach(this::numberRow);
+        tasks.setAll(allTasks);
+        categories.setAll(taskManager.getCategories());
+        priorities.setAll(taskManager.getPriorities());
+        reminders.setAll(taskManager.getReminders());
+        taskManager.addListener(this);
+    }
+
+    ObservableList<Task> getTasks() { return tasks; }
+    ObservableList<Category> getCategories() { return categories; }
+    ObservableList<PriorityLevel> getPriorities() { return priorities; }
+    ObservableList<Reminder> getReminders() { return reminders; }
+
+    /**
+     * Returns the rendered text of a Task, building it only if the Task changed since last time.
+     */
+    TaskCell.Text getTaskText(Task task) {
+        return taskTexts.computeIfAbsent(task, TaskCell.Text::of);
+    }
+
+    /*
+     * Tasks
+     */
+
+    @Override
+    public void taskAdded(Task task) {
+        numberRow(task);
+        tasks.add(task);
+        task.getReminders().forEach(this::insertReminder);
+    }
+
+    @Override
+    public void taskUpdated(Task task) {
+        refreshRow(task);
+    }
+
+    @Override
+    public void taskDeleted(Task task) {
+        removeTasks(List.of(task));
+    }
+
+    @Override
+    public void tasksAdded(List<Task> addedTasks) {
+        addedTasks.forEach(this::numberRow);
+        tasks.addAll(addedTasks);
+        List<Reminder> addedReminders = new ArrayList<>();
+        for (Task task : addedTasks) {
+            addedReminders.addAll(task.getReminders());
+        }
+        insertReminders(addedReminders);
+    }
+
+    @Override
+    public void tasksUpdated(List<Task> updatedTasks) {
+        refreshRows(updatedTasks);
+    }
+
+    @Override
+    public void tasksUpdated(List<Task> updatedTasks, List<RemovedReminder> removedReminders) {
+        if (!removedReminders.isEmpty()) {
+            Set<Reminder> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (RemovedReminder removedReminder : removedReminders) {
+                removed.add(removedReminder.reminder());
+            }
+            reminders.removeIf(removed::contains);
+        }
+        refreshRows(updatedTasks);
+    }
+
+    @Override
+    public void tasksDeleted(List<Task> deletedTasks) {
+        removeTasks(deletedTasks);
+    }
+
+    /*
+     * Categories
+     */
+
+    @Override
+    public void categoryAdded(Category category) {
+        categories.add(category);
+    }
+
+    @Override
+    public void categoryUpdated(String oldTitle, Category updatedCategory) {
+        // Same (renamed) instance; setting it again makes the list show the new title
+        int index = categories.indexOf(updatedCategory);
+        if (index != -1) categories.set(index, updatedCategory);
+        refreshRows(taskManager.getTasksByCategory(updatedCategory));
+    }
+
+    @Override
+    public void categoryDeleted(Category category, Collection<Task> deletedTasks) {
+        removeInstance(categories, category);
+        removeTasks(deletedTasks);
+    }
+
+    /*
+     * Priorities
+     */
+
+    @Override
+    public void priorityAdded(PriorityLevel priority) {
+        priorities.add(priority);
+    }
+
+    @Override
+    public void priorityUpdated(String oldTitle, PriorityLevel updatedPriority) {
+        int index = priorities.indexOf(updatedPriority);
+        if (index != -1) priorities.set(index, updatedPriority);
+        refreshRows(taskManager.getTasksByPriority(updatedPriority));
+    }
+
+    @Override
+    public void priorityDeleted(PriorityLevel priority, Collection<Task> reassignedTasks) {
+        removeInstance(priorities, priority);
+        refreshRows(reassignedTasks);
+    }
+
+    /*
+     * Reminders (kept in date order, like TaskManager.getReminders())
+     */
+
+    @Override
+    public void reminderAdded(Task task, Reminder reminder) {
+        insertReminder(reminder);
+        refreshRow(task);
+    }
+
+    @Override
+    public void reminderUpdated(Task task, Reminder reminder) {
+        // Its date (the sort key) may have changed, so it is moved to its new position
+        reminders.remove(reminder);
+        insertReminder(reminder);
+        refreshRow(task);
+    }
+
+    @Override
+    public void reminderDeleted(Task task, Reminder reminder, int index) {
+        reminders.remove(reminder);
+        refreshRow(task);
+    }
+
+    @Override
+    public void remindersAdded(List<Reminder> addedReminders) {
+        insertReminders(addedReminders);
+        List<Task> changedTasks = new ArrayList<>(addedReminders.size());
+        for (Reminder reminder : addedReminders) {
+            changedTasks.add(reminder.getTask());
+        }
+        refreshRows(changedTasks);
+    }
+
+    /**
+     * Inserts a few Reminders one by one, or replaces the whole list when there are many
+     * (one change instead of many shifting inserts).
+     */
+    private void insertReminders(List<Reminder> addedReminders) {
+        if (addedReminders.size() > BULK_REMINDER_INSERTS) {
+            reminders.setAll(taskManager.getReminders());
+        } else {
+            addedReminders.forEach(this::insertReminder);
+        }
+    }
+
+    private void insertReminder(Reminder reminder) {
+        int position = Collections.binarySearch(reminders, reminder, TaskManager.REMINDER_ORDER);
+        if (position < 0) reminders.add(-position - 1, reminder);
+    }
+
+    private void removeReminders(Collection<Task> removedTasks) {
+        Set<Reminder> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Task task : removedTasks) {
+            removed.addAll(task.getReminders());
+        }
+        if (!removed.isEmpty()) reminders.removeIf(removed::contains);
+    }
+
+    /*
+     * Row Helpers
+     */
+
+    private void numberRow(Task task) {
+        rowOrder.put(task, nextRowOrder++);
+    }
+
+    /**
+     * Returns the row of the Task, or -1 if it has none.
+     */
+    private int rowOf(Task task) {
+        Long order = rowOrder.get(task);
+        if (order == null) return -1;
+        int index = Collections.binarySearch(tasks, task, Comparator.comparingLong(rowOrder::get));
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Removes Tasks (and their Reminders): a few row by row, many in one pass over the list.
+     */
+    private void removeTasks(Collection<Task> removedTasks) {
+        if (removedTasks.isEmpty()) return;
+
+        if (removedTasks.size() > BULK_TASK_REMOVALS) {
+            Set<Task> removed = identitySet(removedTasks);
+            tasks.removeIf(removed::contains);
+        } else {
+            for (Task task : removedTasks) {
+                int index = rowOf(task);
+                if (index != -1) tasks.remove(index);
+            }
+        }
+        for (Task task : removedTasks) {
+            rowOrder.remove(task);
+            taskTexts.remove(task);
+        }
+        removeReminders(removedTasks);
+    }
+
+    private void refreshRow(Task task) {
+        taskTexts.remove(task);
+        dirtyRows.add(task);
+        rowsView.markDirty();
+    }
+
+    private void refreshRows(Collection<Task> changedTasks) {
+        if (changedTasks.isEmpty()) return;
+        for (Task task : changedTasks) {
+            taskTexts.remove(task);
+        }
+        dirtyRows.addAll(changedTasks);
+        rowsView.markDirty();
+    }
+
+    /**
+     * Replaces every dirty Task row with itself, so its cell is redrawn.
+     * Tasks that have been removed in the meantime have no row anymore and are skipped.
+     */
+    void refreshDirtyRows() {
+        if (dirtyRows.isEmpty()) return;
+        for (Task task : dirtyRows) {
+            int index = rowOf(task);
+            if (index != -1) tasks.set(index, task);
+        }
+        dirtyRows.clear();
+    }
+
+    // Only used for the short category and priority lists
+    private static <T> void removeInstance(List<T> list, T item) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == item) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+
+    private static Set<Task> identitySet(Collection<Task> tasks) {
+        Set<Task> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(tasks);
+        return set;
+    }
+}
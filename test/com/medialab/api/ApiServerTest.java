@@ -0,0 +1,147 @@
+package com.medialab.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.medialab.services.TaskManager;
+
+class ApiServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ExecutorService mutations;
+    private ApiServer server;
+
+    /**
+     * A status and its JSON body.
+     */
+    private record Reply(int status, JsonElement json) {
+        JsonObject object() {
+            return json.getAsJsonObject();
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws Exception {
+        mutations = Executors.newSingleThreadExecutor();
+        TaskManager taskManager = new TaskManager();
+        mutations.submit(() -> taskManager.addPriority("Default")).get();
+        server = new ApiServer(taskManager, taskManager, mutations,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        mutations.shutdown();
+    }
+
+    private Reply send(String method, String path, String body) throws IOException, InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .method(method, body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Reply(response.statusCode(), JsonParser.parseString(response.body()));
+    }
+
+    private static List<String> titles(JsonArray tasks) {
+        return tasks.asList().stream().map(task -> task.getAsJsonObject().get("title").getAsString()).toList();
+    }
+
+    @Test
+    void tasksAreCreatedListedAndChanged() throws Exception {
+        assertEquals(201, send("POST", "/categories", "{\"title\":\"Work\"}").status());
+        Reply created = send("POST", "/tasks", "{\"title\":\"Write report\",\"category\":\"Work\",\"deadline\":\"2030-01-31\"}");
+        assertEquals(201, created.status());
+        long id = created.object().get("id").getAsLong();
+        assertEquals("Open", created.object().get("status").getAsString());
+        assertEquals("Default", created.object().get("priority").getAsString());
+        send("POST", "/tasks", "{\"title\":\"Call the bank\"}");
+        send("POST", "/tasks", "{\"title\":\"Report again\",\"status\":\"In Progress\"}");
+
+        JsonObject page = send("GET", "/tasks?q=report&limit=1", null).object();
+        assertEquals(2, page.get("total").getAsInt());
+        // A title prefix ranks before a match further into the title
+        assertEquals(List.of("Report again"), titles(page.getAsJsonArray("tasks")));
+        page = send("GET", "/tasks?q=report&offset=1", null).object();
+        assertEquals(List.of("Write report"), titles(page.getAsJsonArray("tasks")));
+        page = send("GET", "/tasks?category=Work", null).object();
+        assertEquals(List.of("Write report"), titles(page.getAsJsonArray("tasks")));
+        page = send("GET", "/tasks?status=In%20Progress", null).object();
+        assertEquals(List.of("Report again"), titles(page.getAsJsonArray("tasks")));
+
+        // Only the fields in the body change
+        Reply updated = send("PATCH", "/tasks/" + id, "{\"description\":\"for March\"}");
+        assertEquals(200, updated.status());
+        assertEquals("Write report", updated.object().get("title").getAsString());
+        assertEquals("for March", updated.object().get("description").getAsString());
+        assertEquals("Work", send("GET", "/tasks/" + id, null).object().get("category").getAsString());
+
+        assertEquals(200, send("DELETE", "/tasks/" + id, null).status());
+        assertEquals(404, send("GET", "/tasks/" + id, null).status());
+
+        JsonObject summary = send("GET", "/summary", null).object();
+        assertEquals(2, summary.get("total").getAsInt());
+    }
+
+    @Test
+    void remindersBelongToTheirTaskAndGoWhenItIsCompleted() throws Exception {
+        long id = send("POST", "/tasks", "{\"title\":\"Task\",\"deadline\":\"2030-01-31\"}").object().get("id").getAsLong();
+
+        Reply reminder = send("POST", "/tasks/" + id + "/reminders", "{\"date\":\"2030-01-30\",\"message\":\"soon\"}");
+        assertEquals(201, reminder.status());
+        long reminderId = reminder.object().get("id").getAsLong();
+        assertEquals(400, send("POST", "/tasks/" + id + "/reminders", "{\"date\":\"2030-02-01\",\"message\":\"late\"}").status());
+
+        assertEquals(200, send("PUT", "/tasks/" + id + "/reminders/" + reminderId, "{\"message\":\"sooner\"}").status());
+        JsonArray reminders = send("GET", "/reminders", null).json().getAsJsonArray();
+        assertEquals(1, reminders.size());
+        assertEquals("sooner", reminders.get(0).getAsJsonObject().get("message").getAsString());
+
+        Reply completed = send("PATCH", "/tasks/" + id, "{\"status\":\"Completed\"}");
+        assertEquals(0, completed.object().getAsJsonArray("reminders").size());
+        assertEquals(0, send("GET", "/reminders", null).json().getAsJsonArray().size());
+        assertEquals(409, send("POST", "/tasks/" + id + "/reminders", "{\"date\":\"2030-01-30\",\"message\":\"x\"}").status());
+    }
+
+    @Test
+    void badRequestsAreAnsweredWithErrors() throws Exception {
+        assertEquals(400, send("POST", "/tasks", "{\"title\":\"\"}").status());
+        assertEquals(400, send("POST", "/tasks", "not json").status());
+        assertEquals(400, send("POST", "/tasks", "{\"title\":\"x\",\"deadline\":\"tomorrow\"}").status());
+        assertEquals(400, send("GET", "/tasks?status=Unknown", null).status());
+        assertEquals(404, send("GET", "/tasks/42", null).status());
+        assertEquals(404, send("GET", "/tasks?category=Missing", null).status());
+        assertEquals(405, send("DELETE", "/tasks", null).status());
+        assertEquals(409, send("DELETE", "/priorities/Default", null).status());
+        assertEquals("Task 42 not found", send("GET", "/tasks/42", null).object().get("error").getAsString());
+    }
+
+    @Test
+    void changesAreRefusedOnceTheStoreFailed() throws Exception {
+        send("POST", "/tasks", "{\"title\":\"kept\"}");
+        server.refuseChanges("the store failed");
+
+        assertEquals(503, send("POST", "/tasks", "{\"title\":\"refused\"}").status());
+        assertEquals(503, send("DELETE", "/tasks/1", null).status());
+        assertEquals(List.of("kept"), titles(send("GET", "/tasks", null).object().getAsJsonArray("tasks")));
+    }
+}
@@ -0,0 +1,160 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class BinarySnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private static TaskManager taskManager() {
+        TaskManager taskManager = new TaskManager();
+        PriorityLevel defaultPriority = taskManager.addPriority("Default");
+        PriorityLevel high = taskManager.addPriority("High");
+        Category work = taskManager.addCategory("Work");
+        taskManager.addCategory("Ελληνικά");
+
+        Task first = new Task("first", "line one\nline two", work, high, LocalDate.of(2030, 1, 31), TaskStatus.OPEN);
+        taskManager.addTask(first);
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2030, 1, 1), "one"));
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2030, 1, 30), null));
+        taskManager.addTask(new Task("second", null, null, defaultPriority, null, TaskStatus.COMPLETED));
+        taskManager.addTask(new Task("", "", null, null, LocalDate.of(1969, 12, 31), null));
+        // Leaves a gap in the ids
+        taskManager.deleteTask(taskManager.getTasks().get(1));
+        taskManager.addTask(new Task("fourth", "x".repeat(1_000), work, high, null, TaskStatus.DELAYED));
+        return taskManager;
+    }
+
+    private Path write(TaskManager taskManager) throws IOException {
+        Path path = directory.resolve("data.bin");
+        DataManager.writeFile(path, DataManager.SnapshotFormat.BINARY, taskManager.getTasks(),
+                taskManager.getCategories(), taskManager.getPriorities(), false);
+        return path;
+    }
+
+    private static TaskManager load(Path path) throws IOException {
+        TaskManager loaded = new TaskManager();
+        BinarySnapshot.load(path, loaded);
+        return loaded;
+    }
+
+    @Test
+    void aWrittenSnapshotLoadsBackTheSame() throws IOException {
+        TaskManager taskManager = taskManager();
+        Path path = write(taskManager);
+
+        assertTrue(BinarySnapshot.isBinarySnapshot(path));
+        assertEquals(BinarySnapshot.VERSION, ByteBuffer.wrap(Files.readAllBytes(path), BinarySnapshot.MAGIC.length, 4).getInt());
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(load(path)));
+    }
+
+    @Test
+    void anEmptyStoreRoundTrips() throws IOException {
+        TaskManager empty = new TaskManager();
+        assertEquals(TaskManagerContents.describe(empty), TaskManagerContents.describe(load(write(empty))));
+    }
+
+    /**
+     * Writes a version 1 snapshot of two Tasks with a reminder each, with the given longs after each record's reminders.
+     */
+    private Path writeVersion1(long[]... trailingIds) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(BinarySnapshot.MAGIC);
+        out.writeInt(1);
+        out.writeInt(2);
+        writeString(out, "Work");
+        writeString(out, "Open");
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(2);
+        for (int i = 0; i < 2; i++) {
+            String title = i == 0 ? "first" : "second";
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            writeString(recordOut, title);
+            writeString(recordOut, null);
+            recordOut.writeInt(1);
+            recordOut.writeInt(0);
+            recordOut.writeInt(-1);
+            recordOut.writeInt((int) LocalDate.of(2030, 1, 1).toEpochDay());
+            recordOut.writeInt(1);
+            recordOut.writeInt((int) LocalDate.of(2029, 12, 1).toEpochDay());
+            writeString(recordOut, "reminder of " + title);
+            for (long id : trailingIds[i]) {
+                recordOut.writeLong(id);
+            }
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        Path path = directory.resolve("old.bin");
+        Files.write(path, bytes.toByteArray());
+        return path;
+    }
+
+    @Test
+    void version1RecordsWithoutIdsGetNewOnes() throws IOException {
+        TaskManager loaded = load(writeVersion1(new long[0], new long[0]));
+        assertEquals(List.of(1L, 2L), loaded.getTasks().stream().map(Task::getId).toList());
+        Task first = loaded.getTaskById(1);
+        assertEquals("Work", first.getCategory().getTitle());
+        assertEquals(TaskStatus.OPEN, first.getStatus());
+        assertEquals("reminder of first", first.getReminders().get(0).getMessage());
+        assertNotEquals(0, first.getReminders().get(0).getId());
+        assertNotEquals(first.getReminders().get(0).getId(), loaded.getTaskById(2).getReminders().get(0).getId());
+    }
+
+    @Test
+    void version1RecordsKeepTheIdsAppendedToThem() throws IOException {
+        // The first record has its task id and reminder id, the second only its task id
+        TaskManager loaded = load(writeVersion1(new long[] {5, 50}, new long[] {9}));
+        assertEquals(List.of(5L, 9L), loaded.getTasks().stream().map(Task::getId).toList());
+        assertEquals(50, loaded.getTaskById(5).getReminders().get(0).getId());
+        assertEquals("reminder of second", loaded.getTaskById(9).getReminders().get(0).getMessage());
+        assertNotEquals(0, loaded.getTaskById(9).getReminders().get(0).getId());
+    }
+
+    @Test
+    void otherFilesAreNotBinarySnapshots() throws IOException {
+        Path json = directory.resolve("data.json");
+        Files.writeString(json, "{\"tasks\":[]}");
+        assertFalse(BinarySnapshot.isBinarySnapshot(json));
+        assertFalse(BinarySnapshot.isBinarySnapshot(directory.resolve("missing")));
+        assertThrows(IOException.class, () -> BinarySnapshot.load(json, new TaskManager()));
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,113 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class DataManagerTest {
+
+    private static TaskManager taskManager() {
+        TaskManager taskManager = new TaskManager();
+        PriorityLevel defaultPriority = taskManager.addPriority("Default");
+        PriorityLevel urgent = taskManager.addPriority("Urgent <now> & 'soon'");
+        Category work = taskManager.addCategory("Work = \"office\"");
+        taskManager.addCategory("Ελληνικά   tab\t");
+
+        Task first = new Task("first", "line one\nline two", work, urgent, LocalDate.of(2030, 1, 31), TaskStatus.OPEN);
+        taskManager.addTask(first);
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2030, 1, 1), "check </script>"));
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2030, 1, 30), null));
+        taskManager.addTask(new Task("second", null, null, defaultPriority, null, TaskStatus.COMPLETED));
+        taskManager.addTask(new Task("", "", null, null, null, null));
+        return taskManager;
+    }
+
+    /**
+     * The document the Gson tree serialization (before streaming) built: the same fields, in the same order.
+     */
+    private static JsonObject tree(TaskManager taskManager) {
+        JsonArray tasks = new JsonArray();
+        for (Task task : taskManager.getTasks()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("id", task.getId());
+            object.addProperty("title", task.getTitle());
+            object.addProperty("description", task.getDescription());
+            object.addProperty("status", task.getStatus() != null ? task.getStatus().getLabel() : null);
+            object.addProperty("category", task.getCategory() != null ? task.getCategory().getTitle() : null);
+            object.addProperty("priority", task.getPriority() != null ? task.getPriority().getTitle() : null);
+            object.addProperty("deadline", task.getDeadline() != null ? task.getDeadline().toString() : null);
+            JsonArray reminders = new JsonArray();
+            for (Reminder reminder : task.getReminders()) {
+                JsonObject reminderObject = new JsonObject();
+                reminderObject.addProperty("id", reminder.getId());
+                reminderObject.addProperty("date", reminder.getDate().toString());
+                reminderObject.addProperty("message", reminder.getMessage());
+                reminders.add(reminderObject);
+            }
+            object.add("reminders", reminders);
+            tasks.add(object);
+        }
+        JsonArray categories = new JsonArray();
+        for (Category category : taskManager.getCategories()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("title", category.getTitle());
+            categories.add(object);
+        }
+        JsonArray priorities = new JsonArray();
+        for (PriorityLevel priority : taskManager.getPriorities()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("title", priority.getTitle());
+            priorities.add(object);
+        }
+
+        JsonObject data = new JsonObject();
+        data.add("tasks", tasks);
+        data.add("categories", categories);
+        data.add("priorities", priorities);
+        return data;
+    }
+
+    private static String stream(TaskManager taskManager, boolean prettyPrint) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        DataManager.writeData(writer, taskManager.getTasks(), taskManager.getCategories(),
+                taskManager.getPriorities(), prettyPrint);
+        writer.flush();
+        return out.toString();
+    }
+
+    @Test
+    void prettyOutputIsWhatGsonsPrettyPrinterWrites() throws IOException {
+        TaskManager taskManager = taskManager();
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        assertEquals(gson.toJson(tree(taskManager)), stream(taskManager, true));
+    }
+
+    @Test
+    void compactOutputIsWhatGsonWrites() throws IOException {
+        TaskManager taskManager = taskManager();
+        assertEquals(new Gson().toJson(tree(taskManager)), stream(taskManager, false));
+    }
+
+    @Test
+    void anEmptyStoreIsWrittenLikeGsonDoes() throws IOException {
+        TaskManager empty = new TaskManager();
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        assertEquals(gson.toJson(tree(empty)), stream(empty, true));
+    }
+}
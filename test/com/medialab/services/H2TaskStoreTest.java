@@ -0,0 +1,160 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class H2TaskStoreTest {
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private static TaskManager newTaskManager() {
+        TaskManager taskManager = new TaskManager();
+        taskManager.addPriority("Default");
+        return taskManager;
+    }
+
+    private TaskManager load() {
+        TaskManager loaded = newTaskManager();
+        H2TaskStore store = new H2TaskStore(directory.resolve("tasks"));
+        store.loadAll(loaded);
+        assertTrue(store.close(CLOSE_TIMEOUT));
+        return loaded;
+    }
+
+    @Test
+    void queuedChangesAreWrittenByClose() {
+        TaskManager taskManager = newTaskManager();
+        H2TaskStore store = new H2TaskStore(directory.resolve("tasks"));
+        store.loadData(taskManager);
+        store.open(taskManager, Duration.ZERO, Runnable::run);
+
+        Category work = taskManager.addCategory("Work");
+        PriorityLevel high = taskManager.addPriority("High");
+        Task first = new Task("first", "notes", work, high, LocalDate.of(2030, 1, 1), TaskStatus.OPEN);
+        taskManager.addTask(first);
+        taskManager.addTasks(List.of(
+                new Task("second", null, null, high, null, TaskStatus.IN_PROGRESS),
+                new Task("third", null, work, high, null, TaskStatus.OPEN)));
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2029, 12, 1), "one"));
+        taskManager.updateTask(first, "first (edited)", "", work, high, LocalDate.of(2031, 1, 1), TaskStatus.POSTPONED);
+        taskManager.renameCategory(work, "Office");
+        taskManager.deletePriority(high);
+        taskManager.deleteTasks(List.of(taskManager.getTasks().get(2)));
+        store.saveReminderWatermark(LocalDate.of(2029, 6, 1));
+        assertTrue(store.close(CLOSE_TIMEOUT));
+
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(load()));
+        H2TaskStore reopened = new H2TaskStore(directory.resolve("tasks"));
+        assertEquals(LocalDate.of(2029, 6, 1), reopened.loadReminderWatermark());
+        assertTrue(reopened.close(CLOSE_TIMEOUT));
+    }
+
+    @Test
+    void aFailedWriteStopsTheStoreAndIsReported() {
+        TaskManager taskManager = newTaskManager();
+        H2TaskStore store = new H2TaskStore(directory.resolve("tasks"));
+        store.loadData(taskManager);
+        store.open(taskManager, Duration.ZERO, Runnable::run);
+        taskManager.addTask(new Task("stored", null, null, null, null, TaskStatus.OPEN));
+        assertTrue(store.close(CLOSE_TIMEOUT));
+
+        // Not loaded from the database, so the new Task gets the id of the stored one
+        TaskManager unloaded = newTaskManager();
+        H2TaskStore failing = new H2TaskStore(directory.resolve("tasks"));
+        AtomicReference<Exception> reported = new AtomicReference<>();
+        failing.setFailureListener(reported::set);
+        failing.open(unloaded, Duration.ZERO, Runnable::run);
+        unloaded.addTask(new Task("duplicate", null, null, null, null, TaskStatus.OPEN));
+        unloaded.addCategory("Not written");
+        assertFalse(failing.close(CLOSE_TIMEOUT));
+        assertNotNull(reported.get());
+
+        TaskManager loaded = load();
+        assertEquals(List.of("stored"), loaded.getTasks().stream().map(Task::getTitle).toList());
+        assertEquals(List.of(), loaded.getCategories());
+    }
+
+    @Test
+    void onlyTheWorkingSetIsLoadedAndTheRestIsQueriedAndPagedIn() {
+        TaskManager taskManager = newTaskManager();
+        H2TaskStore store = new H2TaskStore(directory.resolve("tasks"));
+        store.loadData(taskManager);
+        store.open(taskManager, Duration.ZERO, Runnable::run);
+        Category work = taskManager.addCategory("Work");
+        PriorityLevel high = taskManager.addPriority("High");
+        for (int i = 1; i <= 5; i++) {
+            taskManager.addTask(new Task("task " + i, null, work, high, LocalDate.of(2030, 1, i), TaskStatus.OPEN));
+        }
+        taskManager.addReminder(taskManager.getTaskById(2), new Reminder(LocalDate.of(2029, 12, 1), "soon"));
+        assertTrue(store.close(CLOSE_TIMEOUT));
+
+        TaskManager loaded = newTaskManager();
+        H2TaskStore reopened = new H2TaskStore(directory.resolve("tasks"));
+        reopened.loadData(loaded);
+        reopened.open(loaded, Duration.ZERO, Runnable::run);
+        TaskQueries queries = reopened.queries(loaded);
+
+        // Only the Task with a reminder is resident, but every Task is listed and counted
+        assertEquals(List.of(2L), loaded.getTasks().stream().map(Task::getId).toList());
+        Category loadedWork = loaded.findCategoryByTitle("Work");
+        TaskQueries.Page page = queries.findTasks("", loadedWork, null, null, 2, 2);
+        assertEquals(5, page.total());
+        assertEquals(List.of(3L, 4L), page.tasks().stream().map(Task::getId).toList());
+        assertEquals(List.of(5L), queries.findTasks("TASK 5", null, null, null, 0, 10).tasks().stream()
+                .map(Task::getId).toList());
+        assertEquals(5, queries.countTasks(loadedWork, null, TaskStatus.OPEN));
+        assertEquals(2, queries.getDueSoonCount(LocalDate.of(2030, 1, 4)));
+
+        // Detached copies are read without paging the Tasks in
+        int resident = loaded.getTaskCount();
+        assertEquals(List.of("task 5", "task 2"), queries.findTasksByIds(5, 42, 2).stream().map(Task::getTitle).toList());
+        assertEquals(resident, loaded.getTaskCount());
+
+        // A changed Task is paged in (a selection with one query), and new Tasks get ids past the stored ones
+        assertEquals(List.of(3L, 5L), queries.getTasksByIds(3, 5).stream().map(Task::getId).toList());
+        assertEquals(resident + 2, loaded.getTaskCount());
+        Task fourth = queries.getTaskById(4);
+        assertEquals("task 4", fourth.getTitle());
+        loaded.updateTask(fourth, "task 4 (edited)", null, loadedWork, fourth.getPriority(), fourth.getDeadline(),
+                TaskStatus.IN_PROGRESS);
+        PriorityLevel defaultPriority = loaded.findPriorityByTitle("Default");
+        Task added = new Task("task 6", null, null, defaultPriority, null, TaskStatus.OPEN);
+        loaded.addTask(added);
+        assertEquals(6, added.getId());
+        assertNull(queries.getTaskById(42));
+
+        // Overdue and reassigned Tasks are updated in the database too, resident or not
+        assertEquals(List.of(1L, 2L, 3L), Arrays.stream(queries.markOverdueTasks(LocalDate.of(2030, 1, 4)).join())
+                .sorted().boxed().toList());
+        loaded.deletePriority(loaded.findPriorityByTitle("High"));
+        assertEquals(3, queries.countTasks(null, null, TaskStatus.DELAYED));
+        assertEquals(6, queries.countTasks(null, defaultPriority, null));
+        assertTrue(reopened.close(CLOSE_TIMEOUT));
+
+        TaskManager all = load();
+        assertEquals(6, all.getTaskCount());
+        assertEquals("task 4 (edited)", all.getTaskById(4).getTitle());
+        assertTrue(all.getTasks().stream().allMatch(task -> task.getPriority().getTitle().equals("Default")));
+    }
+}
@@ -0,0 +1,191 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+import com.medialab.services.MutationJournal.SnapshotStamp;
+
+class MutationJournalTest {
+    private static final SnapshotStamp SNAPSHOT = new SnapshotStamp(100, 1);
+
+    @TempDir
+    Path directory;
+
+    private static TaskManager newTaskManager() {
+        TaskManager taskManager = new TaskManager();
+        taskManager.addPriority("Default");
+        return taskManager;
+    }
+
+    /*
+     * One of every kind of record
+     */
+    private static void mutate(TaskManager taskManager, int round) {
+        Category work = taskManager.addCategory("Work " + round);
+        PriorityLevel high = taskManager.addPriority("High " + round);
+        PriorityLevel defaultPriority = taskManager.findPriorityByTitle("Default");
+
+        Task first = new Task("first " + round, "notes", work, high, LocalDate.of(2030, 1, 1), TaskStatus.OPEN);
+        taskManager.addTask(first);
+        taskManager.addTasks(List.of(
+                new Task("second " + round, null, null, defaultPriority, null, TaskStatus.IN_PROGRESS),
+                new Task("third " + round, "", work, defaultPriority, LocalDate.of(2030, 2, 1), TaskStatus.OPEN)));
+        Task second = taskManager.getTasks().get(taskManager.getTaskCount() - 2);
+        Task third = taskManager.getTasks().get(taskManager.getTaskCount() - 1);
+
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2029, 12, 1), "one"));
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2029, 12, 2), "two"));
+        taskManager.addReminders(List.of(second, third), task -> new Reminder(LocalDate.of(2029, 11, 1), task.getTitle()));
+        taskManager.updateReminder(first, first.getReminders().get(1), LocalDate.of(2029, 12, 3), "two (moved)");
+        taskManager.deleteReminder(first, first.getReminders().get(0));
+
+        taskManager.updateTask(second, "second (edited) " + round, "more notes", work, high, LocalDate.of(2031, 1, 1), TaskStatus.POSTPONED);
+        taskManager.updateStatus(List.of(first, third), TaskStatus.COMPLETED);
+        taskManager.moveToPriority(List.of(third), high);
+        taskManager.renameCategory(work, "Office " + round);
+        taskManager.deletePriority(high);
+        taskManager.deleteTask(third);
+
+        Task fourth = new Task("fourth " + round, null, null, defaultPriority, null, TaskStatus.OPEN);
+        Task fifth = new Task("fifth " + round, null, null, defaultPriority, null, TaskStatus.OPEN);
+        taskManager.addTasks(List.of(fourth, fifth));
+        taskManager.addReminders(List.of(fourth, fifth), task -> new Reminder(LocalDate.of(2029, 10, 1), task.getTitle()));
+        taskManager.editTasks(List.of(second, fourth), work, null, TaskStatus.COMPLETED);
+        taskManager.deleteTasks(List.of(fifth, second));
+        taskManager.addCategory("Empty " + round);
+        taskManager.deleteCategory(taskManager.findCategoryByTitle("Empty " + round));
+    }
+
+    @Test
+    void replayReproducesTheTaskManager() throws IOException {
+        Path path = directory.resolve("data.journal");
+        TaskManager taskManager = newTaskManager();
+        MutationJournal journal = new MutationJournal(path, taskManager, 1_000, () -> {});
+        journal.open(SNAPSHOT, 0);
+        mutate(taskManager, 1);
+        mutate(taskManager, 2);
+        journal.close();
+
+        TaskManager replayed = newTaskManager();
+        long validLength = MutationJournal.replay(path, SNAPSHOT, replayed);
+        assertEquals(Files.size(path), validLength);
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(replayed));
+    }
+
+    @Test
+    void replayIgnoresTheRecordsOfAnotherSnapshot() throws IOException {
+        Path path = directory.resolve("data.journal");
+        TaskManager taskManager = newTaskManager();
+        MutationJournal journal = new MutationJournal(path, taskManager, 1_000, () -> {});
+        journal.open(SNAPSHOT, 0);
+        mutate(taskManager, 1);
+        journal.close();
+
+        TaskManager replayed = newTaskManager();
+        assertEquals(0, MutationJournal.replay(path, new SnapshotStamp(200, 2), replayed));
+        assertEquals(TaskManagerContents.describe(newTaskManager()), TaskManagerContents.describe(replayed));
+    }
+
+    @Test
+    void replayStopsAtATornRecord() throws IOException {
+        Path path = directory.resolve("data.journal");
+        TaskManager taskManager = newTaskManager();
+        MutationJournal journal = new MutationJournal(path, taskManager, 1_000, () -> {});
+        journal.open(SNAPSHOT, 0);
+        mutate(taskManager, 1);
+        journal.close();
+
+        long completeLength = Files.size(path);
+        Files.write(path, "{\"op\":\"addCategory\",\"tit".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        TaskManager replayed = newTaskManager();
+        assertEquals(completeLength, MutationJournal.replay(path, SNAPSHOT, replayed));
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(replayed));
+
+        // Reopening cuts the torn record off, and appends after the valid part
+        MutationJournal reopened = new MutationJournal(path, replayed, 1_000, () -> {});
+        reopened.open(SNAPSHOT, completeLength);
+        replayed.addCategory("After the crash");
+        reopened.close();
+
+        TaskManager again = newTaskManager();
+        assertEquals(Files.size(path), MutationJournal.replay(path, SNAPSHOT, again));
+        assertEquals(TaskManagerContents.describe(replayed), TaskManagerContents.describe(again));
+    }
+
+    @Test
+    void compactionRunsOnceUntilItHasFinished() throws IOException {
+        Path path = directory.resolve("data.journal");
+        TaskManager taskManager = newTaskManager();
+        AtomicInteger compactions = new AtomicInteger();
+        MutationJournal journal = new MutationJournal(path, taskManager, 10, compactions::incrementAndGet);
+        journal.open(SNAPSHOT, 0);
+
+        for (int i = 0; i < 25; i++) {
+            taskManager.addCategory("c" + i);
+        }
+        assertEquals(1, compactions.get());
+
+        // Still past the threshold (nothing was folded into a snapshot), so the next record starts another one
+        journal.compactionFinished();
+        taskManager.addCategory("one more");
+        assertEquals(2, compactions.get());
+        journal.close();
+    }
+
+    @Test
+    void installingASnapshotKeepsOnlyTheLaterRecords() throws IOException {
+        Path path = directory.resolve("data.journal");
+        TaskManager taskManager = newTaskManager();
+        MutationJournal journal = new MutationJournal(path, taskManager, 1_000, () -> {});
+        journal.open(SNAPSHOT, 0);
+        mutate(taskManager, 1);
+
+        // What the new snapshot holds: everything up to the mark
+        long mark = journal.mark();
+        journal.commit();
+        int recordsPerRound = Files.readAllLines(path).size() - 1;
+        TaskManager atMark = newTaskManager();
+        MutationJournal.replay(path, SNAPSHOT, atMark);
+
+        mutate(taskManager, 2);
+        SnapshotStamp newSnapshot = new SnapshotStamp(300, 3);
+        journal.snapshotWritten(newSnapshot, mark);
+
+        // Between the two steps (a crash before the new snapshot is in place), the old one still gets every record
+        TaskManager beforeInstall = newTaskManager();
+        MutationJournal.replay(path, SNAPSHOT, beforeInstall);
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(beforeInstall));
+
+        journal.snapshotInstalled(newSnapshot, mark);
+        mutate(taskManager, 3);
+        journal.close();
+
+        // One header, then the records of rounds 2 and 3
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(1 + 2 * recordsPerRound, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"snapshotSize\":300"));
+        MutationJournal.replay(path, newSnapshot, atMark);
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(atMark));
+
+        // The records of the old snapshot are gone
+        assertEquals(0, MutationJournal.replay(path, SNAPSHOT, newTaskManager()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class PersistentVectorTest {
+
+    @Test
+    void appendsAcrossTreeLevels() {
+        // 32 fit in the tail, 1024 + 32 in one level, 32768 + 32 in two
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 40_000; i++) {
+            vector = vector.plus(i);
+            assertEquals(i + 1, vector.size());
+        }
+        PersistentVector<Integer> full = vector;
+        for (int i = 0; i < 40_000; i++) {
+            assertEquals(i, full.get(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> full.get(40_000));
+    }
+
+    @Test
+    void iteratesInIndexOrder() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            vector = vector.plus(i * 3);
+            expected.add(i * 3);
+        }
+        List<Integer> iterated = new ArrayList<>();
+        vector.forEach(iterated::add);
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    void olderVersionsNeverChange() {
+        Random random = new Random(1);
+        List<PersistentVector<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> expected = new ArrayList<>();
+
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> model = new ArrayList<>();
+        for (int step = 0; step < 3_000; step++) {
+            if (model.isEmpty() || random.nextInt(3) == 0) {
+                vector = vector.plus(step);
+                model.add(step);
+            } else {
+                int index = random.nextInt(model.size());
+                vector = vector.with(index, -step);
+                model.set(index, -step);
+            }
+            if (step % 100 == 0) {
+                versions.add(vector);
+                expected.add(List.copyOf(model));
+            }
+        }
+
+        for (int v = 0; v < versions.size(); v++) {
+            List<Integer> contents = new ArrayList<>();
+            versions.get(v).forEach(contents::add);
+            assertEquals(expected.get(v), contents, "version " + v);
+        }
+    }
+
+    @Test
+    void keepsNullElements() {
+        PersistentVector<String> vector = PersistentVector.<String>empty().plus("a").plus("b").plus("c");
+        PersistentVector<String> emptied = vector.with(1, null);
+        assertEquals(null, emptied.get(1));
+        assertEquals("b", vector.get(1));
+    }
+
+    @Test
+    void forEachChangeReportsExactlyTheChangedIndexes() {
+        PersistentVector<Integer> older = PersistentVector.empty();
+        for (int i = 0; i < 10_000; i++) {
+            older = older.plus(i);
+        }
+
+        PersistentVector<Integer> newer = older;
+        TreeSet<Integer> changed = new TreeSet<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 50; i++) {
+            int index = random.nextInt(newer.size());
+            newer = newer.with(index, -1);
+            changed.add(index);
+        }
+        for (int i = 0; i < 70; i++) {
+            newer = newer.plus(i);
+            changed.add(newer.size() - 1);
+        }
+
+        TreeSet<Integer> reported = new TreeSet<>();
+        newer.forEachChange(older, reported::add);
+        assertEquals(changed, reported);
+
+        // Past the end of the shorter vector, indexes count as null on that side
+        TreeSet<Integer> reversed = new TreeSet<>();
+        older.forEachChange(newer, reversed::add);
+        assertEquals(changed, reversed);
+    }
+
+    @Test
+    void forEachChangeComparesByIdentity() {
+        PersistentVector<String> older = PersistentVector.<String>empty().plus("a");
+        PersistentVector<String> newer = older.with(0, new String("a"));
+
+        List<Integer> reported = new ArrayList<>();
+        newer.forEachChange(older, reported::add);
+        assertEquals(List.of(0), reported);
+
+        reported.clear();
+        older.forEachChange(older, reported::add);
+        assertEquals(List.of(), reported);
+    }
+}
@@ -0,0 +1,162 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class ReminderSchedulerTest {
+
+    /**
+     * A clock the test moves by hand.
+     */
+    private static final class MovableClock extends Clock {
+        private volatile LocalDate today;
+
+        MovableClock(LocalDate today) {
+            this.today = today;
+        }
+
+        void set(LocalDate today) {
+            this.today = today;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return today.atTime(12, 0).toInstant(ZoneOffset.UTC);
+        }
+    }
+
+    private final TaskManager taskManager = new TaskManager();
+    private final MovableClock clock = new MovableClock(LocalDate.of(2030, 1, 7));
+    private final List<List<String>> fired = new ArrayList<>();
+    private final BlockingQueue<LocalDate> watermarks = new LinkedBlockingQueue<>();
+    private ReminderScheduler scheduler;
+
+    @AfterEach
+    void stopScheduler() {
+        if (scheduler != null) scheduler.stop();
+    }
+
+    private Task taskWithReminders(String title, LocalDate... dates) {
+        Task task = new Task(title, null, null, null, null, TaskStatus.OPEN);
+        taskManager.addTask(task);
+        for (LocalDate date : dates) {
+            taskManager.addReminder(task, new Reminder(date, title + " " + date));
+        }
+        return task;
+    }
+
+    /**
+     * Starts the scheduler, and waits for its first check.
+     */
+    private void start(LocalDate firedThrough) throws InterruptedException {
+        // The listeners run on the scheduler thread; the test only reads what they recorded after they ran
+        scheduler = new ReminderScheduler(taskManager, clock, firedThrough, Runnable::run,
+                due -> {
+                    synchronized (fired) {
+                        fired.add(due.stream().map(reminder -> reminder.reminder().getMessage()).sorted().toList());
+                    }
+                },
+                watermarks::add);
+        scheduler.start();
+        assertEquals(LocalDate.of(2030, 1, 7), watermarks.poll(10, TimeUnit.SECONDS));
+    }
+
+    private List<List<String>> fired() {
+        synchronized (fired) {
+            return List.copyOf(fired);
+        }
+    }
+
+    @Test
+    void remindersMissedWhileClosedFireAtStartInOneBatch() throws InterruptedException {
+        taskWithReminders("a", LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 5));
+        taskWithReminders("b", LocalDate.of(2030, 1, 3), LocalDate.of(2030, 1, 10));
+
+        // The reminder of January 1st was fired by the previous run
+        start(LocalDate.of(2030, 1, 2));
+
+        assertEquals(List.of(List.of("a 2030-01-05", "b 2030-01-03")), fired());
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    @Test
+    void movingTheClockForwardFiresEveryDayInBetween() throws InterruptedException {
+        taskWithReminders("a", LocalDate.of(2030, 1, 10), LocalDate.of(2030, 1, 12), LocalDate.of(2030, 2, 1));
+        start(null);
+        assertEquals(List.of(), fired());
+
+        clock.set(LocalDate.of(2030, 1, 20));
+        scheduler.fireDue();
+        assertEquals(List.of(List.of("a 2030-01-10", "a 2030-01-12")), fired());
+        assertEquals(LocalDate.of(2030, 1, 20), watermarks.poll());
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    @Test
+    void movingTheClockBackDoesNotFireTheSameDaysAgain() throws InterruptedException {
+        Task task = taskWithReminders("a", LocalDate.of(2030, 1, 5));
+        start(null);
+        assertEquals(List.of(List.of("a 2030-01-05")), fired());
+
+        clock.set(LocalDate.of(2030, 1, 3));
+        scheduler.fireDue();
+        assertEquals(1, fired().size());
+        assertNull(watermarks.poll());
+
+        // Moved to a day that has already been fired: not fired again
+        taskManager.updateReminder(task, task.getReminders().get(0), LocalDate.of(2030, 1, 6), "a moved");
+        assertEquals(0, scheduler.getPendingCount());
+
+        // A new reminder still fires on its day, even before the watermark
+        taskManager.addReminder(task, new Reminder(LocalDate.of(2030, 1, 4), "a new"));
+        clock.set(LocalDate.of(2030, 1, 4));
+        scheduler.fireDue();
+        assertEquals(List.of(List.of("a 2030-01-05"), List.of("a new")), fired());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void deletedAndRemovedRemindersDoNotFire() throws InterruptedException {
+        Task deleted = taskWithReminders("deleted", LocalDate.of(2030, 1, 10));
+        Task completed = taskWithReminders("completed", LocalDate.of(2030, 1, 10));
+        Task kept = taskWithReminders("kept", LocalDate.of(2030, 1, 10), LocalDate.of(2030, 1, 11));
+        start(null);
+
+        taskManager.deleteTask(deleted);
+        taskManager.editTasks(List.of(completed), null, null, TaskStatus.COMPLETED);
+        taskManager.deleteReminder(kept, kept.getReminders().get(1));
+        assertEquals(1, scheduler.getPendingCount());
+
+        clock.set(LocalDate.of(2030, 1, 11));
+        scheduler.fireDue();
+        assertEquals(List.of(List.of("kept 2030-01-10")), fired());
+    }
+}
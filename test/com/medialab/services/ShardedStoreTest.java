@@ -0,0 +1,161 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class ShardedStoreTest {
+    // Ids 1 to 10000: shards 0, 1 and 2
+    private static final int TASKS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    private TaskManager taskManager;
+    private ShardedStore store;
+
+    @BeforeEach
+    void fillTaskManager() {
+        taskManager = new TaskManager();
+        PriorityLevel defaultPriority = taskManager.addPriority("Default");
+        Category early = taskManager.addCategory("Early");
+        Category late = taskManager.addCategory("Late");
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task("task " + i, "notes " + i, i < 100 ? early : i >= 9_000 ? late : null,
+                    defaultPriority, LocalDate.of(2030, 1, 1).plusDays(i % 365), TaskStatus.OPEN);
+            if (i % 10 == 0) task.addReminder(new Reminder(LocalDate.of(2029, 1, 1), "reminder " + i));
+            taskManager.addTask(task);
+        }
+        store = new ShardedStore(directory);
+    }
+
+    private void save() throws IOException {
+        Path manifest = store.prepare(taskManager.snapshot());
+        Files.move(manifest, store.manifestPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        store.installed();
+    }
+
+    private Set<String> shardFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.startsWith("tasks-"))
+                        .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+
+    private TaskManager load() throws IOException {
+        TaskManager loaded = new TaskManager();
+        BatchLoader loader = BatchLoader.direct(loaded);
+        new ShardedStore(directory).load(loader);
+        loader.flush();
+        loader.awaitApplied();
+        return loaded;
+    }
+
+    @Test
+    void firstSaveWritesEveryShard() throws IOException {
+        save();
+        assertEquals(Set.of("tasks-0-1.json", "tasks-1-1.json", "tasks-2-1.json"), shardFiles());
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(load()));
+    }
+
+    @Test
+    void onlyChangedShardsAreRewritten() throws IOException {
+        save();
+
+        Task task = taskManager.getTaskById(5_000);
+        taskManager.updateTask(task, "edited", task.getDescription(), task.getCategory(), task.getPriority(),
+                task.getDeadline(), TaskStatus.COMPLETED);
+        save();
+        assertEquals(Set.of("tasks-0-1.json", "tasks-1-2.json", "tasks-2-1.json"), shardFiles());
+
+        taskManager.deleteTask(taskManager.getTaskById(10));
+        save();
+        assertEquals(Set.of("tasks-0-3.json", "tasks-1-2.json", "tasks-2-1.json"), shardFiles());
+
+        Task reminded = taskManager.getTaskById(9_999);
+        taskManager.addReminder(reminded, new Reminder(LocalDate.of(2029, 6, 1), "new"));
+        save();
+        assertEquals(Set.of("tasks-0-3.json", "tasks-1-2.json", "tasks-2-4.json"), shardFiles());
+
+        // Nothing changed: only the manifest is written
+        save();
+        assertEquals(Set.of("tasks-0-3.json", "tasks-1-2.json", "tasks-2-4.json"), shardFiles());
+
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(load()));
+    }
+
+    @Test
+    void renamingRewritesTheShardsThatUseTheTitle() throws IOException {
+        save();
+
+        // Only Tasks 9001 to 10000 (shard 2) are in "Late"
+        taskManager.renameCategory(taskManager.findCategoryByTitle("Late"), "Later");
+        save();
+        assertEquals(Set.of("tasks-0-1.json", "tasks-1-1.json", "tasks-2-2.json"), shardFiles());
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(load()));
+    }
+
+    @Test
+    void newTasksGoToTheShardOfTheirId() throws IOException {
+        save();
+
+        taskManager.addTasks(List.of(
+                new Task("new 1", null, null, taskManager.findPriorityByTitle("Default"), null, TaskStatus.OPEN),
+                new Task("new 2", null, null, taskManager.findPriorityByTitle("Default"), null, TaskStatus.OPEN)));
+        save();
+        assertEquals(Set.of("tasks-0-1.json", "tasks-1-1.json", "tasks-2-2.json"), shardFiles());
+        assertEquals(TaskManagerContents.describe(taskManager), TaskManagerContents.describe(load()));
+    }
+
+    @Test
+    void nothingIsWrittenOrDeletedAfterAFailedLoad() throws IOException {
+        save();
+        Files.delete(directory.resolve("tasks-1-1.json"));
+
+        ShardedStore failed = new ShardedStore(directory);
+        TaskManager partial = new TaskManager();
+        BatchLoader loader = BatchLoader.direct(partial);
+        assertThrows(IOException.class, () -> failed.load(loader));
+        loader.flush();
+
+        assertThrows(IOException.class, () -> failed.prepare(partial.snapshot()));
+        failed.delete();
+        assertEquals(Set.of("tasks-0-1.json", "tasks-2-1.json"), shardFiles());
+        assertTrue(Files.exists(store.manifestPath()));
+    }
+
+    @Test
+    void onlyReadAndUncommittedFilesAreDeleted() throws IOException {
+        save();
+        // Left by an interrupted save, and by something this store never read
+        Files.writeString(directory.resolve("tasks-7-2.json"), "{}");
+        Files.writeString(directory.resolve("tasks-8-2.json.tmp"), "{}");
+        Files.writeString(directory.resolve("tasks-9-0.json"), "{}");
+
+        taskManager.deleteTask(taskManager.getTaskById(10));
+        save();
+        assertEquals(Set.of("tasks-0-2.json", "tasks-1-1.json", "tasks-2-1.json", "tasks-9-0.json"), shardFiles());
+    }
+}
@@ -0,0 +1,119 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class TaskBitmapTest {
+
+    private static int[] toArray(TreeSet<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void assertSameIds(TreeSet<Integer> expected, TaskBitmap bitmap) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertEquals(expected.isEmpty(), bitmap.isEmpty());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+    }
+
+    @Test
+    void addAndRemoveReportChanges() {
+        TaskBitmap bitmap = new TaskBitmap();
+        assertTrue(bitmap.add(5));
+        assertFalse(bitmap.add(5));
+        assertTrue(bitmap.contains(5));
+        assertTrue(bitmap.remove(5));
+        assertFalse(bitmap.remove(5));
+        assertFalse(bitmap.contains(5));
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    void switchesContainerKindBothWays() {
+        // One high part: past 4096 values the array container becomes a bitmap, and back again
+        TaskBitmap bitmap = new TaskBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int id = 0; id < 10_000; id += 2) {
+            bitmap.add(id);
+            expected.add(id);
+        }
+        assertSameIds(expected, bitmap);
+
+        for (int id = 0; id < 10_000; id += 4) {
+            assertTrue(bitmap.remove(id));
+            expected.remove(id);
+        }
+        assertSameIds(expected, bitmap);
+        for (int id = 0; id < 10_000; id++) {
+            assertEquals(expected.contains(id), bitmap.contains(id), "id " + id);
+        }
+    }
+
+    @Test
+    void forEachVisitsIdsInAscendingOrder() {
+        TaskBitmap bitmap = new TaskBitmap();
+        int[] ids = {1 << 20, 3, 70_000, 65_535, 65_536, 0};
+        for (int id : ids) bitmap.add(id);
+
+        List<Integer> visited = new ArrayList<>();
+        bitmap.forEach(visited::add);
+        assertEquals(List.of(0, 3, 65_535, 65_536, 70_000, 1 << 20), visited);
+    }
+
+    @Test
+    void agreesWithTreeSetUnderRandomChanges() {
+        Random random = new Random(4);
+        TaskBitmap bitmap = new TaskBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int step = 0; step < 300_000; step++) {
+            // Dense in the first containers, sparse further out
+            int id = random.nextBoolean() ? random.nextInt(3 << 16) : random.nextInt(1 << 24);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), bitmap.remove(id));
+            } else {
+                assertEquals(expected.add(id), bitmap.add(id));
+            }
+        }
+        assertSameIds(expected, bitmap);
+    }
+
+    @Test
+    void setOperationsMatchTreeSets() {
+        Random random = new Random(5);
+        TaskBitmap a = new TaskBitmap();
+        TaskBitmap b = new TaskBitmap();
+        TreeSet<Integer> inA = new TreeSet<>();
+        TreeSet<Integer> inB = new TreeSet<>();
+        for (int i = 0; i < 60_000; i++) {
+            int id = random.nextInt(4 << 16);
+            a.add(id);
+            inA.add(id);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            int id = (2 << 16) + random.nextInt(4 << 16);
+            b.add(id);
+            inB.add(id);
+        }
+
+        TreeSet<Integer> intersection = new TreeSet<>(inA);
+        intersection.retainAll(inB);
+        TreeSet<Integer> union = new TreeSet<>(inA);
+        union.addAll(inB);
+
+        assertSameIds(intersection, TaskBitmap.and(a, b));
+        assertEquals(intersection.size(), TaskBitmap.andCardinality(a, b));
+        assertSameIds(union, TaskBitmap.or(a, b));
+
+        // The operands are left alone
+        assertSameIds(inA, a);
+        assertSameIds(inB, b);
+    }
+}
@@ -0,0 +1,73 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TaskIdMapTest {
+
+    @Test
+    void missingIdsHaveNoSlot() {
+        TaskIdMap map = new TaskIdMap();
+        assertEquals(-1, map.get(1));
+        assertEquals(-1, map.remove(1));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void putReplacesTheSlot() {
+        TaskIdMap map = new TaskIdMap();
+        map.put(7, 1);
+        map.put(7, 2);
+        assertEquals(2, map.get(7));
+        assertEquals(1, map.size());
+        assertEquals(2, map.remove(7));
+        assertEquals(-1, map.get(7));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        TaskIdMap map = new TaskIdMap(4);
+        for (int slot = 0; slot < 100_000; slot++) {
+            map.put(slot + 1L, slot);
+        }
+        assertEquals(100_000, map.size());
+        for (int slot = 0; slot < 100_000; slot++) {
+            assertEquals(slot, map.get(slot + 1L));
+        }
+    }
+
+    @Test
+    void agreesWithHashMapUnderRandomChanges() {
+        // Few distinct ids, so probe runs collide and removals have entries to shift back
+        Random random = new Random(3);
+        TaskIdMap map = new TaskIdMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            ids.add(1 + (long) random.nextInt(Integer.MAX_VALUE) * 1024);
+        }
+
+        for (int step = 0; step < 200_000; step++) {
+            long id = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(id, -1), map.remove(id));
+                expected.remove(id);
+            } else {
+                map.put(id, step);
+                expected.put(id, step);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long id : ids) {
+            assertEquals(expected.getOrDefault(id, -1), map.get(id), "id " + id);
+        }
+    }
+}
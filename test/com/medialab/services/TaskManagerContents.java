@@ -0,0 +1,28 @@
+package com.medialab.services;
+
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+
+/**
+ * Describes everything a TaskManager holds as one string, so tests can compare two of them
+ * (e.g. the original and the one a journal was replayed into).
+ */
+final class TaskManagerContents {
+
+    private TaskManagerContents() {}
+
+    static String describe(TaskManager taskManager) {
+        StringBuilder contents = new StringBuilder();
+        for (Task task : taskManager.getTasks()) {
+            contents.append(task.getId()).append('|').append(task.getTitle()).append('|').append(task.getDescription())
+                    .append('|').append(task.getCategory()).append('|').append(task.getPriority())
+                    .append('|').append(task.getDeadline()).append('|').append(task.getStatus());
+            for (Reminder reminder : task.getReminders()) {
+                contents.append('|').append(reminder.getId()).append(':').append(reminder);
+            }
+            contents.append('\n');
+        }
+        contents.append(taskManager.getCategories()).append('\n').append(taskManager.getPriorities());
+        return contents.toString();
+    }
+}
@@ -0,0 +1,242 @@
+package com.medialab.services;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+/**
+ * Multi-threaded stress run of a TaskManager, to measure lock contention.
+ * <p>
+ * Writer threads add, update and delete their own Tasks and Reminders, while reader threads query
+ * (counts, searches, snapshots) the same TaskManager. The read latencies are measured once with the
+ * readers alone and once with the writers running, so the difference is the cost of contention.
+ * Afterwards, the indexes are checked against the Tasks.
+ * <p>
+ * As a test, it runs a short round with a few threads; for measurements, run it as a program:
+ * {@code TaskManagerStress [writers] [readers] [seconds] [initialTasks]}
+ */
+public class TaskManagerStress {
+    private static final String[] WORDS = {"report", "meeting", "budget", "review", "deploy", "design"};
+
+    /**
+     * Latencies of one kind of operation, in power-of-two nanosecond buckets.
+     */
+    private static final class Latencies {
+        private final long[] buckets = new long[64];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            buckets[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < buckets.length; i++) buckets[i] += other.buckets[i];
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * Returns the upper bound (in microseconds) of the bucket holding the given percentile.
+         */
+        double percentileMicros(double percentile) {
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return (2L << i) / 1000.0;
+            }
+            return max / 1000.0;
+        }
+
+        String describe(String name, double seconds) {
+            return String.format("%-8s %10d ops %12.0f ops/s   p50 <= %8.1f us   p99 <= %8.1f us   max %10.1f us",
+                    name, count, count / seconds, percentileMicros(50), percentileMicros(99), max / 1000.0);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int initialTasks = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        System.out.printf("%d tasks, %d writer(s), %d reader(s), %d s per phase%n", initialTasks, writers, readers, seconds);
+        stress(writers, readers, seconds, initialTasks);
+    }
+
+    @Test
+    void indexesStayConsistentUnderContention() throws InterruptedException {
+        stress(3, 3, 1, 10_000);
+    }
+
+    private static void stress(int writers, int readers, int seconds, int initialTasks) throws InterruptedException {
+        TaskManager taskManager = new TaskManager();
+        List<Category> categories = new ArrayList<>();
+        for (String word : WORDS) {
+            categories.add(taskManager.addCategory(word));
+        }
+        PriorityLevel defaultPriority = taskManager.addPriority("Default");
+
+        Random random = new Random(1);
+        for (int i = 0; i < initialTasks; i++) {
+            taskManager.addTask(newTask(random, categories, defaultPriority, i));
+        }
+
+        System.out.println("Readers alone:");
+        run(taskManager, categories, defaultPriority, 0, readers, seconds);
+        System.out.println("Readers and writers:");
+        run(taskManager, categories, defaultPriority, writers, readers, seconds);
+
+        check(taskManager);
+    }
+
+    private static void run(TaskManager taskManager, List<Category> categories, PriorityLevel defaultPriority,
+                            int writers, int readers, int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(writers + readers);
+        Latencies[] writeLatencies = new Latencies[writers];
+        Latencies[][] readLatencies = new Latencies[readers][];
+
+        for (int w = 0; w < writers; w++) {
+            Latencies latencies = writeLatencies[w] = new Latencies();
+            long seed = w;
+            start("stress-writer-" + w, done, failure, () -> write(taskManager, categories, defaultPriority,
+                    new Random(seed), running, latencies));
+        }
+        for (int r = 0; r < readers; r++) {
+            Latencies[] latencies = readLatencies[r] = new Latencies[] {new Latencies(), new Latencies(), new Latencies()};
+            long seed = 100 + r;
+            start("stress-reader-" + r, done, failure, () -> read(taskManager, categories, new Random(seed), running, latencies));
+        }
+
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        if (failure.get() != null) {
+            throw new IllegalStateException("Stress run failed", failure.get());
+        }
+
+        String[] readNames = {"count", "search", "getTasks"};
+        for (int kind = 0; kind < readNames.length; kind++) {
+            Latencies total = new Latencies();
+            for (Latencies[] latencies : readLatencies) total.addAll(latencies[kind]);
+            System.out.println("  " + total.describe(readNames[kind], seconds));
+        }
+        if (writers > 0) {
+            Latencies total = new Latencies();
+            for (Latencies latencies : writeLatencies) total.addAll(latencies);
+            System.out.println("  " + total.describe("write", seconds));
+        }
+    }
+
+    private static void start(String name, CountDownLatch done, AtomicReference<Throwable> failure, Runnable work) {
+        Thread thread = new Thread(() -> {
+            try {
+                work.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                done.countDown();
+            }
+        }, name);
+        thread.start();
+    }
+
+    /*
+     * Each writer only changes the Tasks it added itself, like independent clients would.
+     */
+    private static void write(TaskManager taskManager, List<Category> categories, PriorityLevel defaultPriority,
+                              Random random, AtomicBoolean running, Latencies latencies) {
+        List<Task> ownTasks = new ArrayList<>();
+        int counter = 0;
+        while (running.get()) {
+            int operation = random.nextInt(10);
+            long start = System.nanoTime();
+            if (ownTasks.isEmpty() || operation < 4) {
+                Task task = newTask(random, categories, defaultPriority, counter++);
+                taskManager.addTask(task);
+                ownTasks.add(task);
+            } else if (operation < 7) {
+                Task task = ownTasks.get(random.nextInt(ownTasks.size()));
+                taskManager.updateTask(task, task.getTitle() + " (edited)", task.getDescription(),
+                        categories.get(random.nextInt(categories.size())), defaultPriority, task.getDeadline(),
+                        TaskStatus.values()[random.nextInt(TaskStatus.values().length)]);
+            } else if (operation < 8) {
+                Task task = ownTasks.get(random.nextInt(ownTasks.size()));
+                taskManager.addReminder(task, new Reminder(LocalDate.of(2030, 1, 1).plusDays(random.nextInt(365)), "r" + counter++));
+            } else {
+                taskManager.deleteTask(ownTasks.remove(random.nextInt(ownTasks.size())));
+            }
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    private static void read(TaskManager taskManager, List<Category> categories, Random random,
+                             AtomicBoolean running, Latencies[] latencies) {
+        while (running.get()) {
+            int operation = random.nextInt(10);
+            long start = System.nanoTime();
+            int kind;
+            if (operation < 6) {
+                taskManager.countTasks(categories.get(random.nextInt(categories.size())), null,
+                        TaskStatus.values()[random.nextInt(TaskStatus.values().length)]);
+                taskManager.getDueSoonCount(LocalDate.of(2030, 1, 1));
+                kind = 0;
+            } else if (operation < 9) {
+                taskManager.searchTasks(WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(100), null, null);
+                kind = 1;
+            } else {
+                taskManager.getTasks().size();
+                kind = 2;
+            }
+            latencies[kind].record(System.nanoTime() - start);
+        }
+    }
+
+    private static Task newTask(Random random, List<Category> categories, PriorityLevel priority, int number) {
+        return new Task(WORDS[random.nextInt(WORDS.length)] + " " + number, "notes " + number,
+                categories.get(random.nextInt(categories.size())), priority,
+                LocalDate.of(2030, 1, 1).plusDays(random.nextInt(365)), TaskStatus.OPEN);
+    }
+
+    /*
+     * The counters and indexes must agree with the Tasks themselves.
+     */
+    private static void check(TaskManager taskManager) {
+        List<Task> tasks = taskManager.getTasks();
+        int statusTotal = 0;
+        for (TaskStatus status : TaskStatus.values()) {
+            int count = taskManager.getStatusCount(status);
+            long actual = tasks.stream().filter(task -> task.getStatus() == status).count();
+            if (count != actual) throw new IllegalStateException(status + ": counted " + count + ", actual " + actual);
+            statusTotal += count;
+        }
+        if (statusTotal != tasks.size() || taskManager.getTaskCount() != tasks.size()) {
+            throw new IllegalStateException("Task counts disagree: " + statusTotal + " / " + tasks.size());
+        }
+        // Ids need not be in list order, but must be unique: a shared id would look up the other Task
+        for (int i = 0; i < tasks.size(); i += Math.max(1, tasks.size() / 1000)) {
+            if (taskManager.getTaskById(tasks.get(i).getId()) != tasks.get(i)) throw new IllegalStateException("Wrong id lookup for task " + i);
+        }
+        long reminders = tasks.stream().mapToLong(task -> task.getReminders().size()).sum();
+        if (reminders != taskManager.getReminders().size()) {
+            throw new IllegalStateException("Reminder index disagrees: " + taskManager.getReminders().size() + " / " + reminders);
+        }
+        System.out.println("Consistent: " + tasks.size() + " tasks, " + reminders + " reminders");
+    }
+}
@@ -0,0 +1,118 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.medialab.models.Category;
+import com.medialab.models.PriorityLevel;
+import com.medialab.models.Reminder;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class TaskManagerTest {
+
+    private static Task task(String title, long id) {
+        Task task = new Task(title, null, null, null, null, TaskStatus.OPEN);
+        task.setId(id);
+        return task;
+    }
+
+    @Test
+    void loadedTasksKeepTheirIdsInAnyOrder() {
+        TaskManager taskManager = new TaskManager();
+        taskManager.addTasks(List.of(task("a", 7), task("b", 3), task("c", 5)));
+
+        assertEquals(List.of(7L, 3L, 5L), taskManager.getTasks().stream().map(Task::getId).toList());
+        assertSame(taskManager.getTasks().get(1), taskManager.getTaskById(3));
+
+        // New Tasks get one past the largest id so far
+        Task added = task("d", 0);
+        taskManager.addTask(added);
+        assertEquals(8, added.getId());
+    }
+
+    @Test
+    void onlyCollidingIdsAreReassigned() {
+        TaskManager taskManager = new TaskManager();
+        taskManager.addTask(task("a", 4));
+        Task collision = task("b", 4);
+        taskManager.addTask(collision);
+        assertEquals(5, collision.getId());
+
+        // The id of a deleted Task is free again
+        taskManager.deleteTask(taskManager.getTaskById(4));
+        Task reused = task("c", 4);
+        taskManager.addTask(reused);
+        assertEquals(4, reused.getId());
+        assertSame(reused, taskManager.getTaskById(4));
+        assertSame(collision, taskManager.getTaskById(5));
+    }
+
+    @Test
+    void countsMatchAScanForEveryCombinationOfCriteria() {
+        TaskManager taskManager = new TaskManager();
+        List<Category> categories = List.of(taskManager.addCategory("a"), taskManager.addCategory("b"));
+        List<PriorityLevel> priorities = List.of(taskManager.addPriority("Default"), taskManager.addPriority("High"));
+        Random random = new Random(7);
+        // Enough Tasks to fill more than one bitmap container
+        for (int i = 0; i < 70_000; i++) {
+            taskManager.addTask(new Task("t", null,
+                    random.nextInt(3) == 0 ? null : categories.get(random.nextInt(2)),
+                    priorities.get(random.nextInt(2)), null,
+                    TaskStatus.values()[random.nextInt(TaskStatus.values().length)]));
+        }
+
+        List<Category> anyCategory = Arrays.asList(null, categories.get(0), categories.get(1));
+        List<PriorityLevel> anyPriority = Arrays.asList(null, priorities.get(0), priorities.get(1));
+        List<TaskStatus> anyStatus = Arrays.asList(null, TaskStatus.OPEN, TaskStatus.COMPLETED);
+        for (Category category : anyCategory) {
+            for (PriorityLevel priority : anyPriority) {
+                for (TaskStatus status : anyStatus) {
+                    long scanned = taskManager.getTasks().stream()
+                            .filter(task -> category == null || task.getCategory() == category)
+                            .filter(task -> priority == null || task.getPriority() == priority)
+                            .filter(task -> status == null || task.getStatus() == status)
+                            .count();
+                    assertEquals(scanned, taskManager.countTasks(category, priority, status),
+                            category + " " + priority + " " + status);
+                }
+            }
+        }
+    }
+
+    @Test
+    void completingByStatusRemovesTheRemindersInOneChange() {
+        TaskManager taskManager = new TaskManager();
+        Task first = task("first", 0);
+        Task second = task("second", 0);
+        taskManager.addTasks(List.of(first, second));
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2030, 1, 1), "a"));
+        taskManager.addReminder(first, new Reminder(LocalDate.of(2030, 1, 2), "b"));
+        taskManager.addReminder(second, new Reminder(LocalDate.of(2030, 1, 3), "c"));
+
+        List<String> events = new ArrayList<>();
+        taskManager.addListener(new TaskManagerListener() {
+            @Override
+            public void tasksUpdated(List<Task> tasks, List<RemovedReminder> removedReminders) {
+                events.add(tasks.size() + " tasks, " + removedReminders.size() + " reminders");
+            }
+        });
+
+        assertEquals(List.of(first), taskManager.updateStatus(List.of(first), TaskStatus.COMPLETED));
+        assertTrue(first.getReminders().isEmpty());
+        assertEquals(List.of("c"), taskManager.getReminders().stream().map(Reminder::getMessage).toList());
+
+        taskManager.updateStatusWhere(task -> task == second, TaskStatus.COMPLETED);
+        assertTrue(taskManager.getReminders().isEmpty());
+        assertEquals(List.of("1 tasks, 2 reminders", "1 tasks, 1 reminders"), events);
+    }
+}
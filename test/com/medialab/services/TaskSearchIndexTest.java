@@ -0,0 +1,118 @@
+package com.medialab.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.medialab.models.Category;
+import com.medialab.models.Task;
+import com.medialab.models.TaskStatus;
+
+class TaskSearchIndexTest {
+
+    private static List<String> titles(List<Task> tasks) {
+        return tasks.stream().map(Task::getTitle).toList();
+    }
+
+    private static Task add(TaskManager taskManager, String title, String description) {
+        Task task = new Task(title, description, null, null, null, TaskStatus.OPEN);
+        taskManager.addTask(task);
+        return task;
+    }
+
+    @Test
+    void titlePrefixesRankFirstThenTitlesThenDescriptions() {
+        TaskManager taskManager = new TaskManager();
+        add(taskManager, "Notes on the report", null);
+        add(taskManager, "Report for March", "draft");
+        add(taskManager, "Call the bank", "about the REPORT");
+        add(taskManager, "report again", "");
+        add(taskManager, "Unrelated", "nothing here");
+
+        assertEquals(List.of("Report for March", "report again", "Notes on the report", "Call the bank"),
+                titles(taskManager.searchTasks("rEpOrT", null, null)));
+        // Shorter than a trigram: scanned instead of looked up
+        assertEquals(List.of("Notes on the report", "Report for March", "report again", "Call the bank"),
+                titles(taskManager.searchTasks("RT", null, null)));
+        assertEquals(List.of(), taskManager.searchTasks("reports", null, null));
+    }
+
+    @Test
+    void editsAndDeletionsUpdateTheIndex() {
+        TaskManager taskManager = new TaskManager();
+        Category work = taskManager.addCategory("Work");
+        Task task = add(taskManager, "old title", "old notes");
+        Task other = add(taskManager, "other", "title in notes");
+
+        taskManager.updateTask(task, "new heading", "old notes", work, null, null, TaskStatus.OPEN);
+        assertEquals(List.of("other"), titles(taskManager.searchTasks("title", null, null)));
+        assertEquals(List.of("new heading"), titles(taskManager.searchTasks("heading", null, null)));
+        assertEquals(List.of("new heading"), titles(taskManager.searchTasks("old", work, null)));
+
+        taskManager.deleteTask(other);
+        assertEquals(List.of(), taskManager.searchTasks("title", null, null));
+
+        // A new Task may reuse the deleted Task's slot
+        add(taskManager, "title again", null);
+        assertEquals(List.of("title again"), titles(taskManager.searchTasks("title", null, null)));
+        assertEquals(List.of(), taskManager.searchTasks("other", null, null));
+    }
+
+    @Test
+    void matchesWhatAScanFinds() {
+        TaskManager taskManager = new TaskManager();
+        Random random = new Random(42);
+        String[] words = {"alpha", "beta", "gamma", "delta", "report", "call", "ab", "ΕΛΛΑΔΑ"};
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            tasks.add(add(taskManager, sentence(random, words), random.nextInt(4) == 0 ? null : sentence(random, words)));
+        }
+        for (int round = 0; round < 500; round++) {
+            Task task = tasks.get(random.nextInt(tasks.size()));
+            if (random.nextInt(5) == 0 && taskManager.getTaskById(task.getId()) != null) {
+                taskManager.deleteTask(task);
+                tasks.set(tasks.indexOf(task), add(taskManager, sentence(random, words), null));
+            } else if (taskManager.getTaskById(task.getId()) != null) {
+                taskManager.updateTask(task, sentence(random, words), sentence(random, words), null, null, null,
+                        TaskStatus.OPEN);
+            }
+        }
+
+        for (String query : List.of("alp", "a b", "report call", "ta", "lta del", "ελλ", "zzz", "gamma")) {
+            String needle = query.toLowerCase(Locale.ROOT);
+            List<Task> found = taskManager.searchTasks(query, null, null);
+            List<Integer> ranks = found.stream().map(task -> rank(task, needle)).toList();
+            // Ranked like a scan, and the same Tasks as a scan finds
+            assertEquals(ranks.stream().sorted().toList(), ranks, query);
+            List<Long> scanned = taskManager.getTasks().stream()
+                    .filter(task -> rank(task, needle) >= 0).map(Task::getId).sorted().toList();
+            assertEquals(scanned, found.stream().map(Task::getId).sorted().toList(), query);
+        }
+    }
+
+    private static String sentence(Random random, String[] words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            sentence.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return sentence.toString().strip();
+    }
+
+    /**
+     * How a scan ranks the Task: 0 for a title prefix, 1 for a title match, 2 for a description
+     * match, -1 for none.
+     */
+    private static int rank(Task task, String needle) {
+        String title = task.getTitle().toLowerCase(Locale.ROOT);
+        String description = task.getDescription() != null ? task.getDescription().toLowerCase(Locale.ROOT) : "";
+        if (title.startsWith(needle)) return 0;
+        if (title.contains(needle)) return 1;
+        if (description.contains(needle)) return 2;
+        return -1;
+    }
+}